@@ -0,0 +1,74 @@
+package com.itemflowmonitor.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Расчёт rate по буферу событий без Minecraft: размер истории от хоппера за минуту до часа плотного потока.
+ * События — хоппер с шагом 8 тиков, четыре вида предметов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowRateBenchmark {
+	private static final long PERIOD_TICKS = 1200;
+
+	@Param({"10", "1000", "10000", "100000"})
+	public int historySize;
+
+	private record Event(long tick, int itemId, int count) implements FlowEvent {}
+
+	private final List<Event> events = new ArrayList<>();
+	private final EmaSmoother smoothing = new EmaSmoother();
+	private long currentTick;
+
+	@Setup(Level.Trial)
+	public void fillHistory() {
+		long tick = 0;
+		for (int i = 0; i < historySize; i++) {
+			tick += 8;
+			events.add(new Event(tick, 1 + i % 4, 1));
+		}
+		currentTick = tick;
+	}
+
+	@Benchmark
+	public double average() {
+		return FlowRate.average(events, FlowRate.ANY_ITEM, 0, PERIOD_TICKS, currentTick);
+	}
+
+	@Benchmark
+	public double actual() {
+		return FlowRate.actual(events, 1, PERIOD_TICKS, currentTick);
+	}
+
+	/** Прогноз со сглаживанием, каждый вызов — следующий тик */
+	@Benchmark
+	public double predicted() {
+		currentTick++;
+		return smoothing.apply(FlowRate.predictedRaw(events, FlowRate.ANY_ITEM, PERIOD_TICKS, currentTick),
+				currentTick, true);
+	}
+
+	@Benchmark
+	public long nextWindowExit() {
+		return FlowRate.nextWindowExit(events, PERIOD_TICKS, currentTick);
+	}
+}
@@ -0,0 +1,83 @@
+package com.itemflowmonitor.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Снимок и сравнение слотов без Minecraft: хоппер (5), сундук (27), двойной сундук (54), максимум (256).
+ * Половина слотов занята.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotDiffBenchmark {
+	@Param({"5", "27", "54", "256"})
+	public int slots;
+
+	private int[] itemIds;
+	private int[] counts;
+	private SlotSource source;
+	private SlotSnapshot previous;
+
+	@Setup(Level.Iteration)
+	public void fill() {
+		itemIds = new int[slots];
+		counts = new int[slots];
+		for (int i = 0; i < slots; i += 2) {
+			itemIds[i] = i % 4 == 0 ? 1 : 2;
+			counts[i] = 16;
+		}
+		source = new SlotSource() {
+			@Override
+			public int size() {
+				return itemIds.length;
+			}
+
+			@Override
+			public int itemId(int slot) {
+				return itemIds[slot];
+			}
+
+			@Override
+			public int count(int slot) {
+				return counts[slot];
+			}
+		};
+		previous = SlotSnapshot.capture(source);
+	}
+
+	/** Ничего не изменилось — самый частый случай */
+	@Benchmark
+	public int unchanged(Blackhole blackhole) {
+		SlotSnapshot current = SlotSnapshot.capture(source);
+		int changed = SlotDiff.diff(previous, current, (itemId, count) -> blackhole.consume(count));
+		previous = current;
+		return changed;
+	}
+
+	/** Хоппер положил предмет в первый слот */
+	@Benchmark
+	public int oneSlotChanged(Blackhole blackhole) {
+		counts[0] = counts[0] == 64 ? 1 : counts[0] + 1;
+		SlotSnapshot current = SlotSnapshot.capture(source);
+		int changed = SlotDiff.diff(previous, current, (itemId, count) -> blackhole.consume(count));
+		previous = current;
+		return changed;
+	}
+}
@@ -0,0 +1,76 @@
+package com.itemflowmonitor.core;
+
+/**
+ * EMA-сглаживание прогноза: убирает дребезг из-за границ окна.
+ * Шаг на каждый прошедший тик — результат не зависит от частоты вызовов.
+ */
+public final class EmaSmoother {
+	/** Коэффициент сглаживания (0.05 ≈ плавное, ~1 сек до стабилизации) */
+	private static final double ALPHA = 0.05;
+
+	/** Ограничение числа шагов за вызов — после долгого перерыва значение всё равно сходится к сырому */
+	private static final long MAX_STEPS = 1000;
+
+	/** Расстояние до сырого значения, при котором EMA считается сошедшейся (меньше шага округления) */
+	private static final double SETTLE_EPSILON = 0.005;
+
+	/** Сглаженное значение; -1 — не инициализировано */
+	private double value = -1;
+	/** Тик последнего шага */
+	private long lastTick = -1;
+	/** Сошлась к сырому значению — дальше меняется только вместе с окном */
+	private boolean settled;
+
+	/**
+	 * Шагнуть к сырому значению до текущего тика.
+	 * @param advance false — только посчитать, не меняя состояние (экспорт метрик)
+	 * @return сглаженное значение, округлённое до 1 знака
+	 */
+	public double apply(double raw, long currentTick, boolean advance) {
+		double smoothed = value;
+		if (smoothed < 0) {
+			smoothed = raw;
+		} else if (currentTick > lastTick) {
+			long steps = Math.min(currentTick - lastTick, MAX_STEPS);
+			smoothed = raw + (smoothed - raw) * Math.pow(1 - ALPHA, steps);
+		}
+		// Почти сошлась — фиксируем, дальше rate меняется только по событиям окна
+		boolean nowSettled = Math.abs(smoothed - raw) < SETTLE_EPSILON;
+		if (nowSettled) {
+			smoothed = raw;
+		}
+		if (advance) {
+			value = smoothed;
+			lastTick = currentTick;
+			settled = nowSettled;
+		}
+		return FlowRate.round1(smoothed);
+	}
+
+	/** Сбросить: следующее значение начнётся с сырого без «раскачки» */
+	public void reset() {
+		value = -1;
+	}
+
+	/**
+	 * Восстановить значение из сохранения (-1 — не инициализировано).
+	 * @param tick тик, на который значение актуально — следующий apply шагает от него, а не от нуля
+	 */
+	public void restore(double smoothed, long tick) {
+		value = smoothed;
+		lastTick = tick;
+		settled = false;
+	}
+
+	public double get() {
+		return value;
+	}
+
+	public long getLastTick() {
+		return lastTick;
+	}
+
+	public boolean isSettled() {
+		return settled;
+	}
+}
@@ -0,0 +1,13 @@
+package com.itemflowmonitor.core;
+
+/**
+ * Событие поступления предметов: тик, числовой id предмета, количество.
+ * Буфер событий трекера отсортирован по tick.
+ */
+public interface FlowEvent {
+	long tick();
+
+	int itemId();
+
+	int count();
+}
@@ -0,0 +1,123 @@
+package com.itemflowmonitor.core;
+
+/**
+ * Расчёт rate по буферу событий — без зависимостей от Minecraft.
+ * Фильтр предметов — числовой id, ANY_ITEM или NO_ITEM.
+ * Все функции чистые; состояние EMA для прогноза хранит {@link EmaSmoother}.
+ */
+public final class FlowRate {
+	/** Фильтр: считать все предметы */
+	public static final int ANY_ITEM = -1;
+	/** Фильтр: не считать ничего (отслеживаемый предмет ещё не выбран) */
+	public static final int NO_ITEM = -2;
+
+	/** Порог тишины для перехода к затуханию AVERAGE (5 секунд) */
+	public static final long AVG_DECAY_THRESHOLD = 100;
+
+	/** Интервал пересчёта AVERAGE в фазе затухания (1 секунда) — значение меняется медленно */
+	public static final long AVG_DECAY_RECHECK_TICKS = 20;
+
+	/** Доля периода для окна выборки прогноза (25%) */
+	private static final double PREDICT_WINDOW_RATIO = 0.25;
+
+	/** Минимальное окно выборки прогноза (10 секунд) */
+	private static final long MIN_PREDICT_WINDOW = 200;
+
+	private FlowRate() {}
+
+	public static boolean counts(int filter, int itemId) {
+		return filter == ANY_ITEM || filter == itemId;
+	}
+
+	/**
+	 * Среднее с начала отслеживания, предметов за период.
+	 * Между событиями знаменатель — время до последнего события (стабильно);
+	 * если поток остановился дольше AVG_DECAY_THRESHOLD — до текущего тика (затухание).
+	 */
+	public static double average(Iterable<? extends FlowEvent> events, int filter,
+								 long startTick, long periodTicks, long currentTick) {
+		if (filter == NO_ITEM || startTick < 0 || currentTick <= startTick) return 0;
+		int total = 0;
+		long lastMatchTick = startTick;
+		for (FlowEvent event : events) {
+			if (counts(filter, event.itemId())) {
+				total += event.count();
+				lastMatchTick = event.tick();
+			}
+		}
+		if (total <= 0) return 0;
+
+		long elapsed = (currentTick - lastMatchTick > AVG_DECAY_THRESHOLD)
+				? currentTick - startTick
+				: lastMatchTick - startTick;
+		if (elapsed <= 0) return 0;
+
+		return round1((double) total / elapsed * periodTicks);
+	}
+
+	/** Сумма количеств событий в окне [windowStart, currentTick] */
+	public static int windowTotal(Iterable<? extends FlowEvent> events, int filter, long windowStart, long currentTick) {
+		if (filter == NO_ITEM) return 0;
+		int total = 0;
+		for (FlowEvent event : events) {
+			if (event.tick() < windowStart) continue;
+			if (event.tick() > currentTick) break;
+			if (counts(filter, event.itemId())) {
+				total += event.count();
+			}
+		}
+		return total;
+	}
+
+	/** Фактическое число предметов за последний полный период */
+	public static double actual(Iterable<? extends FlowEvent> events, int filter, long periodTicks, long currentTick) {
+		return windowTotal(events, filter, currentTick - periodTicks, currentTick);
+	}
+
+	/** Сырой прогноз: экстраполяция короткого окна на период (до сглаживания) */
+	public static double predictedRaw(Iterable<? extends FlowEvent> events, int filter, long periodTicks, long currentTick) {
+		long window = predictWindow(periodTicks);
+		return (double) windowTotal(events, filter, currentTick - window, currentTick) / window * periodTicks;
+	}
+
+	/** Окно выборки прогноза: 25% периода, но не меньше 10 секунд */
+	public static long predictWindow(long periodTicks) {
+		return Math.max(MIN_PREDICT_WINDOW, (long) (periodTicks * PREDICT_WINDOW_RATIO));
+	}
+
+	/**
+	 * Ближайший тик изменения AVERAGE без новых событий: начало затухания и далее раз в секунду.
+	 * Long.MAX_VALUE — событий нет, до нового ничего не изменится.
+	 */
+	public static long nextAverageChange(Iterable<? extends FlowEvent> events, int filter, long currentTick) {
+		if (filter == NO_ITEM) return Long.MAX_VALUE;
+		long lastMatchTick = -1;
+		for (FlowEvent event : events) {
+			if (counts(filter, event.itemId())) {
+				lastMatchTick = event.tick();
+			}
+		}
+		if (lastMatchTick < 0) return Long.MAX_VALUE;
+		long decayStart = lastMatchTick + AVG_DECAY_THRESHOLD + 1;
+		return currentTick < decayStart ? decayStart : currentTick + AVG_DECAY_RECHECK_TICKS;
+	}
+
+	/**
+	 * Ближайший тик, на котором самое старое событие окна его покинет.
+	 * События отсортированы по tick — первое попавшее в окно покинет его раньше всех.
+	 */
+	public static long nextWindowExit(Iterable<? extends FlowEvent> events, long windowTicks, long currentTick) {
+		long windowStart = currentTick - windowTicks;
+		for (FlowEvent event : events) {
+			if (event.tick() >= windowStart) {
+				return event.tick() + windowTicks + 1;
+			}
+		}
+		return Long.MAX_VALUE;
+	}
+
+	/** Округление до 1 знака — убирает микро-колебания */
+	public static double round1(double value) {
+		return Math.round(value * 10.0) / 10.0;
+	}
+}
@@ -0,0 +1,55 @@
+package com.itemflowmonitor.core;
+
+/**
+ * Сравнение двух снимков контейнера: положительные дельты — поступившие предметы.
+ * Убыль не считается поступлением, но учитывается как изменение (меняется заполненность).
+ */
+public final class SlotDiff {
+
+	/** Получатель поступлений */
+	@FunctionalInterface
+	public interface Listener {
+		void onAdded(int itemId, int count);
+	}
+
+	private SlotDiff() {}
+
+	/**
+	 * Сравнить снимки и сообщить о поступлениях.
+	 * @return число изменившихся слотов (включая появившиеся и исчезнувшие при смене размера)
+	 */
+	public static int diff(SlotSnapshot previous, SlotSnapshot current, Listener listener) {
+		// Размер контейнера мог измениться (двойной сундук → одинарный)
+		int minSize = Math.min(previous.size(), current.size());
+		int changed = Math.abs(previous.size() - current.size());
+
+		for (int i = 0; i < minSize; i++) {
+			int prevId = previous.itemId(i);
+			int prevCount = previous.count(i);
+			int curId = current.itemId(i);
+			int curCount = current.count(i);
+
+			if (prevId != curId || prevCount != curCount) {
+				changed++;
+			}
+
+			if (curCount <= 0) continue;
+
+			if (prevCount <= 0 || prevId != curId) {
+				// Слот был пуст или предмет сменился — весь стек новый
+				listener.onAdded(curId, curCount);
+			} else if (curCount > prevCount) {
+				// Тот же предмет — считаем дельту
+				listener.onAdded(curId, curCount - prevCount);
+			}
+		}
+
+		// Новые слоты (контейнер стал больше — двойной сундук)
+		for (int i = minSize; i < current.size(); i++) {
+			if (current.count(i) > 0) {
+				listener.onAdded(current.itemId(i), current.count(i));
+			}
+		}
+		return changed;
+	}
+}
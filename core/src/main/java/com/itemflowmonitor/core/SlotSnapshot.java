@@ -0,0 +1,57 @@
+package com.itemflowmonitor.core;
+
+/**
+ * Неизменяемый снимок содержимого контейнера: параллельные массивы id и количеств.
+ * У пустого слота id и количество — 0.
+ */
+public final class SlotSnapshot implements SlotSource {
+	private final int[] itemIds;
+	private final int[] counts;
+
+	private SlotSnapshot(int[] itemIds, int[] counts) {
+		this.itemIds = itemIds;
+		this.counts = counts;
+	}
+
+	/** Снять содержимое источника */
+	public static SlotSnapshot capture(SlotSource source) {
+		int size = source.size();
+		int[] itemIds = new int[size];
+		int[] counts = new int[size];
+		for (int i = 0; i < size; i++) {
+			int count = source.count(i);
+			if (count > 0) {
+				itemIds[i] = source.itemId(i);
+				counts[i] = count;
+			}
+		}
+		return new SlotSnapshot(itemIds, counts);
+	}
+
+	/** Снимок из готовых массивов (восстановление из сохранения); массивы не копируются */
+	public static SlotSnapshot of(int[] itemIds, int[] counts) {
+		if (itemIds.length != counts.length) {
+			throw new IllegalArgumentException("размеры массивов id и количеств различаются");
+		}
+		return new SlotSnapshot(itemIds, counts);
+	}
+
+	@Override
+	public int size() {
+		return itemIds.length;
+	}
+
+	@Override
+	public int itemId(int slot) {
+		return itemIds[slot];
+	}
+
+	@Override
+	public int count(int slot) {
+		return counts[slot];
+	}
+
+	public boolean isEmpty(int slot) {
+		return counts[slot] <= 0;
+	}
+}
@@ -0,0 +1,13 @@
+package com.itemflowmonitor.core;
+
+/**
+ * Содержимое контейнера в числовом виде: id предмета и количество по слотам.
+ * Пустой слот — количество 0 (id не важен).
+ */
+public interface SlotSource {
+	int size();
+
+	int itemId(int slot);
+
+	int count(int slot);
+}
@@ -0,0 +1,72 @@
+package com.itemflowmonitor.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Пространственный индекс ключей по чанкам (16×16 блоков по X/Z, высота не учитывается).
+ * Запрос по прямоугольнику обходит только чанки, которые он покрывает, — стоимость пропорциональна
+ * площади запроса, а не общему числу ключей. Для прямоугольника больше занятых чанков обходятся
+ * сами занятые чанки. Точную проверку координат (Y, радиус, измерение) делает вызывающий. Только один поток.
+ */
+public class SpatialIndex<K> {
+	private static final int CHUNK_SHIFT = 4;
+
+	/** Ключи по упакованной координате чанка */
+	private final Map<Long, List<K>> chunks = new HashMap<>();
+
+	public void add(K key, int x, int z) {
+		chunks.computeIfAbsent(chunkKey(x >> CHUNK_SHIFT, z >> CHUNK_SHIFT), k -> new ArrayList<>(4)).add(key);
+	}
+
+	public void remove(K key, int x, int z) {
+		long chunk = chunkKey(x >> CHUNK_SHIFT, z >> CHUNK_SHIFT);
+		List<K> keys = chunks.get(chunk);
+		if (keys == null) return;
+		keys.remove(key);
+		if (keys.isEmpty()) {
+			chunks.remove(chunk);
+		}
+	}
+
+	/** Ключи из чанков, пересекающих прямоугольник [minX..maxX]×[minZ..maxZ] (границы включительно) */
+	public void query(int minX, int minZ, int maxX, int maxZ, Consumer<K> action) {
+		int minChunkX = minX >> CHUNK_SHIFT;
+		int minChunkZ = minZ >> CHUNK_SHIFT;
+		int maxChunkX = maxX >> CHUNK_SHIFT;
+		int maxChunkZ = maxZ >> CHUNK_SHIFT;
+		long area = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+
+		if (area > chunks.size()) {
+			// Область шире занятых чанков — дешевле пройти по ним
+			for (var entry : chunks.entrySet()) {
+				int chunkX = (int) (entry.getKey() >> 32);
+				int chunkZ = (int) (long) entry.getKey();
+				if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+					entry.getValue().forEach(action);
+				}
+			}
+			return;
+		}
+
+		for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+			for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+				List<K> keys = chunks.get(chunkKey(chunkX, chunkZ));
+				if (keys != null) {
+					keys.forEach(action);
+				}
+			}
+		}
+	}
+
+	public void clear() {
+		chunks.clear();
+	}
+
+	private static long chunkKey(int chunkX, int chunkZ) {
+		return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+	}
+}
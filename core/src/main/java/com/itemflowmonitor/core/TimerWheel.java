@@ -0,0 +1,234 @@
+package com.itemflowmonitor.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров с тиковой гранулярностью.
+ * Уровень l — 256 корзин по 256^l тиков: ближние дедлайны лежат в нижнем уровне, дальние — в верхних
+ * и спускаются вниз (каскад), когда до них остаётся меньше оборота нижнего уровня.
+ * Каждый ключ запланирован не более чем на один тик; повторное планирование заменяет дедлайн.
+ * Стоимость advance пропорциональна числу сработавших и спускаемых записей, а не общему числу ключей —
+ * далёкий дедлайн (минуты, часы) не перебирается каждый оборот.
+ */
+public class TimerWheel<K> {
+	/** Бит на уровень: 256 корзин */
+	private static final int BITS = 8;
+	private static final int WHEEL_SIZE = 1 << BITS;
+	private static final int MASK = WHEEL_SIZE - 1;
+	/** Четыре уровня покрывают 2^32 тиков (~6.8 лет); дальше — круги в верхнем уровне */
+	private static final int LEVELS = 4;
+
+	/** Запись в корзине; устаревшие (перепланированные или отменённые) отбрасываются при обходе */
+	private record Timer<K>(K key, long deadline) {}
+
+	private final List<List<List<Timer<K>>>> levels = new ArrayList<>(LEVELS);
+	/** Актуальный дедлайн каждого ключа — записи в корзинах без совпадения считаются устаревшими */
+	private final Map<K, Long> deadlines = new HashMap<>();
+	/** Задержки, запланированные до первого advance (текущий тик ещё не известен) */
+	private final Map<K, Long> pendingDelays = new LinkedHashMap<>();
+	/** Дедлайны, запланированные до первого advance — раскладываются по уровням от его тика */
+	private final List<K> unplaced = new ArrayList<>();
+	private final List<K> expired = new ArrayList<>();
+	private long lastTick = -1;
+
+	public TimerWheel() {
+		for (int level = 0; level < LEVELS; level++) {
+			List<List<Timer<K>>> buckets = new ArrayList<>(WHEEL_SIZE);
+			for (int i = 0; i < WHEEL_SIZE; i++) {
+				buckets.add(new ArrayList<>());
+			}
+			levels.add(buckets);
+		}
+	}
+
+	/** Запланировать ключ на тик. Long.MAX_VALUE — снять с расписания */
+	public void schedule(K key, long tick) {
+		if (tick == Long.MAX_VALUE) {
+			cancel(key);
+			return;
+		}
+		pendingDelays.remove(key);
+		// Прошедший тик уже не будет обойдён — переносим на ближайший
+		if (lastTick >= 0 && tick <= lastTick) {
+			tick = lastTick + 1;
+		}
+		Long previous = deadlines.put(key, tick);
+		// Запись с тем же дедлайном уже лежит в колесе
+		if (previous != null && previous == tick) return;
+		if (lastTick < 0) {
+			unplaced.add(key);
+			return;
+		}
+		place(new Timer<>(key, tick), lastTick);
+	}
+
+	/**
+	 * Запланировать ключ через delay тиков от последнего продвижения колеса.
+	 * До первого advance отсчёт начнётся с его тика (например, трекеры, загруженные до первого тика сервера).
+	 */
+	public void scheduleAfter(K key, long delay) {
+		if (lastTick < 0) {
+			deadlines.remove(key);
+			pendingDelays.put(key, Math.max(1, delay));
+			return;
+		}
+		schedule(key, lastTick + Math.max(1, delay));
+	}
+
+	/** Снять ключ с расписания */
+	public void cancel(K key) {
+		deadlines.remove(key);
+		pendingDelays.remove(key);
+	}
+
+	/** Запланирован ли ключ */
+	public boolean isScheduled(K key) {
+		return deadlines.containsKey(key) || pendingDelays.containsKey(key);
+	}
+
+	/**
+	 * Продвинуть колесо до currentTick и вызвать onExpired для каждого истёкшего ключа.
+	 * Колбэк вызывается после обхода корзин — из него можно безопасно перепланировать ключ.
+	 */
+	public void advance(long currentTick, Consumer<K> onExpired) {
+		if (lastTick < 0) {
+			start(currentTick - 1);
+		}
+
+		if (currentTick - lastTick > (long) WHEEL_SIZE * WHEEL_SIZE) {
+			// Большой разрыв (сервер стоял) — дешевле разложить все таймеры заново, чем обходить каждый тик
+			rebuild(currentTick);
+		} else {
+			for (long t = lastTick + 1; t <= currentTick; t++) {
+				step(t);
+			}
+		}
+		lastTick = currentTick;
+
+		if (expired.isEmpty()) return;
+		for (K key : expired) {
+			onExpired.accept(key);
+		}
+		expired.clear();
+	}
+
+	/** Количество запланированных ключей */
+	public int size() {
+		return deadlines.size() + pendingDelays.size();
+	}
+
+	/** Очистить все таймеры (при смене мира) */
+	public void clear() {
+		for (List<List<Timer<K>>> buckets : levels) {
+			for (List<Timer<K>> bucket : buckets) {
+				bucket.clear();
+			}
+		}
+		deadlines.clear();
+		pendingDelays.clear();
+		unplaced.clear();
+		lastTick = -1;
+	}
+
+	/** Первое продвижение: разложить всё, что запланировано до него */
+	private void start(long now) {
+		lastTick = now;
+		for (K key : unplaced) {
+			Long deadline = deadlines.get(key);
+			if (deadline == null) continue;
+			long tick = Math.max(deadline, now + 1);
+			deadlines.put(key, tick);
+			place(new Timer<>(key, tick), now);
+		}
+		unplaced.clear();
+		// Задержка отсчитывается от тика первого продвижения, как после него — от lastTick
+		for (var entry : pendingDelays.entrySet()) {
+			long tick = now + 1 + entry.getValue();
+			deadlines.put(entry.getKey(), tick);
+			place(new Timer<>(entry.getKey(), tick), now);
+		}
+		pendingDelays.clear();
+	}
+
+	/** Один тик: спустить записи верхних уровней, чей блок начинается на этом тике, затем снять сработавшие */
+	private void step(long tick) {
+		for (int level = LEVELS - 1; level >= 1; level--) {
+			int shift = BITS * level;
+			// Начало блока уровня — все младшие разряды нулевые
+			if ((tick & ((1L << shift) - 1)) != 0) continue;
+			List<Timer<K>> bucket = levels.get(level).get((int) ((tick >>> shift) & MASK));
+			if (bucket.isEmpty()) continue;
+			List<Timer<K>> cascade = new ArrayList<>(bucket);
+			bucket.clear();
+			for (Timer<K> timer : cascade) {
+				// Дедлайн внутри блока — запись уходит на нижние уровни (или остаётся на круг в верхнем)
+				if (isCurrent(timer)) {
+					place(timer, tick);
+				}
+			}
+		}
+
+		List<Timer<K>> bucket = levels.get(0).get((int) (tick & MASK));
+		if (bucket.isEmpty()) return;
+		int keep = 0;
+		for (int i = 0; i < bucket.size(); i++) {
+			Timer<K> timer = bucket.get(i);
+			if (!isCurrent(timer)) continue;
+			if (timer.deadline() <= tick) {
+				deadlines.remove(timer.key());
+				expired.add(timer.key());
+			} else {
+				// Защита от записи, попавшей в корзину раньше своего оборота — ждёт следующего
+				bucket.set(keep++, timer);
+			}
+		}
+		bucket.subList(keep, bucket.size()).clear();
+	}
+
+	/** Разложить все актуальные записи заново относительно currentTick; наступившие — сработать */
+	private void rebuild(long currentTick) {
+		List<Timer<K>> timers = new ArrayList<>();
+		for (List<List<Timer<K>>> buckets : levels) {
+			for (List<Timer<K>> bucket : buckets) {
+				for (Timer<K> timer : bucket) {
+					if (isCurrent(timer)) {
+						timers.add(timer);
+					}
+				}
+				bucket.clear();
+			}
+		}
+		for (Timer<K> timer : timers) {
+			if (timer.deadline() <= currentTick) {
+				deadlines.remove(timer.key());
+				expired.add(timer.key());
+			} else {
+				place(timer, currentTick);
+			}
+		}
+	}
+
+	/**
+	 * Положить запись в уровень по расстоянию от now: самый нижний, чей оборот вмещает дедлайн.
+	 * Корзина — разряды дедлайна этого уровня, поэтому запись спустится не позже своего тика.
+	 */
+	private void place(Timer<K> timer, long now) {
+		long delta = timer.deadline() - now;
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+			level++;
+		}
+		int index = (int) ((timer.deadline() >>> (BITS * level)) & MASK);
+		levels.get(level).get(index).add(timer);
+	}
+
+	private boolean isCurrent(Timer<K> timer) {
+		Long deadline = deadlines.get(timer.key());
+		return deadline != null && deadline == timer.deadline();
+	}
+}
@@ -0,0 +1,151 @@
+package com.itemflowmonitor.core;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Реестр трекеров по ключу позиции и зрителей, смотрящих в контейнеры.
+ * Ключ и тип трекера задаёт адаптер (в моде — BlockPos и ContainerTracker). Только один поток.
+ * Вторичные индексы (трекеры владельца, число зрителей позиции) обновляются вместе с основными картами —
+ * проверка лимита и ghost-проверка не обходят всё множество.
+ */
+public class TrackerRegistry<K, T> {
+	private final Map<K, T> trackers = new HashMap<>();
+	/** Игроки, которые сейчас смотрят в контейнер с трекером */
+	private final Map<UUID, K> viewers = new HashMap<>();
+
+	/** Владелец трекера по ключу и обратный индекс: ключи трекеров владельца */
+	private final Map<K, UUID> owners = new HashMap<>();
+	private final Map<UUID, Set<K>> byOwner = new HashMap<>();
+	/** Число зрителей по ключу (только ненулевые) */
+	private final Map<K, Integer> viewerCounts = new HashMap<>();
+
+	public T get(K key) {
+		return trackers.get(key);
+	}
+
+	public T getOrCreate(K key, Function<? super K, ? extends T> factory) {
+		return trackers.computeIfAbsent(key, factory);
+	}
+
+	/** @return удалённый трекер или null */
+	public T remove(K key) {
+		T tracker = trackers.remove(key);
+		if (tracker != null) {
+			setOwner(key, null);
+		}
+		return tracker;
+	}
+
+	/**
+	 * Перенести трекер на другой ключ вместе с владельцем.
+	 * Зрители остаются привязаны к старому ключу — их переподпишет клиент.
+	 * @return перенесённый трекер или null, если на from трекера нет
+	 */
+	public T move(K from, K to) {
+		T tracker = trackers.remove(from);
+		if (tracker == null) return null;
+		UUID owner = owners.get(from);
+		setOwner(from, null);
+		trackers.put(to, tracker);
+		setOwner(to, owner);
+		return tracker;
+	}
+
+	public boolean contains(K key) {
+		return trackers.containsKey(key);
+	}
+
+	public boolean isEmpty() {
+		return trackers.isEmpty();
+	}
+
+	public int size() {
+		return trackers.size();
+	}
+
+	/** Неизменяемое представление всех трекеров */
+	public Map<K, T> all() {
+		return Collections.unmodifiableMap(trackers);
+	}
+
+	public void clear() {
+		trackers.clear();
+		viewers.clear();
+		owners.clear();
+		byOwner.clear();
+		viewerCounts.clear();
+	}
+
+	// --- Владельцы ---
+
+	/** Назначить владельца трекера (null — без владельца) */
+	public void setOwner(K key, UUID owner) {
+		UUID previous = owner != null ? owners.put(key, owner) : owners.remove(key);
+		if (previous != null && !previous.equals(owner)) {
+			Set<K> keys = byOwner.get(previous);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					byOwner.remove(previous);
+				}
+			}
+		}
+		if (owner != null) {
+			byOwner.computeIfAbsent(owner, o -> new HashSet<>()).add(key);
+		}
+	}
+
+	/** Число трекеров владельца — без обхода реестра */
+	public int ownerCount(UUID owner) {
+		Set<K> keys = byOwner.get(owner);
+		return keys != null ? keys.size() : 0;
+	}
+
+	/** Неизменяемое представление ключей трекеров владельца */
+	public Set<K> ownedBy(UUID owner) {
+		Set<K> keys = byOwner.get(owner);
+		return keys != null ? Collections.unmodifiableSet(keys) : Set.of();
+	}
+
+	// --- Зрители ---
+
+	public void setViewer(UUID viewer, K key) {
+		K previous = viewers.put(viewer, key);
+		if (key.equals(previous)) return;
+		if (previous != null) {
+			decrementViewers(previous);
+		}
+		viewerCounts.merge(key, 1, Integer::sum);
+	}
+
+	public void removeViewer(UUID viewer) {
+		K previous = viewers.remove(viewer);
+		if (previous != null) {
+			decrementViewers(previous);
+		}
+	}
+
+	/** Смотрит ли кто-нибудь в контейнер по ключу — без обхода зрителей */
+	public boolean hasViewers(K key) {
+		return viewerCounts.containsKey(key);
+	}
+
+	public int viewerCount(K key) {
+		return viewerCounts.getOrDefault(key, 0);
+	}
+
+	/** Неизменяемое представление зрителей */
+	public Map<UUID, K> viewers() {
+		return Collections.unmodifiableMap(viewers);
+	}
+
+	private void decrementViewers(K key) {
+		viewerCounts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+	}
+}
@@ -0,0 +1,55 @@
+package com.itemflowmonitor.core.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Формат файла трассы (.ifmt): заголовок MAGIC + VERSION, затем поток записей с байтом типа.
+ * Тики — дельта от предыдущего наблюдения (varlong), остальные числа — varint.
+ * <pre>
+ * ITEM        id, имя (UTF)
+ * TRACKER     id трекера, позиция (long), измерение (UTF), фильтр, авто-выбор (byte), период, startTick + 1
+ * SNAPSHOT    id трекера, Δтик, размер, на слот: id предмета, количество
+ * DELTA       id трекера, Δтик, число слотов, на слот: индекс, id предмета, количество
+ * END
+ * </pre>
+ */
+final class TraceFormat {
+	static final int MAGIC = 0x49464D54; // "IFMT"
+	static final int VERSION = 1;
+
+	static final int END = 0;
+	static final int ITEM = 1;
+	static final int TRACKER = 2;
+	static final int SNAPSHOT = 3;
+	static final int DELTA = 4;
+
+	private TraceFormat() {}
+
+	static void writeVarLong(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static void writeVarInt(DataOutput out, int value) throws IOException {
+		writeVarLong(out, value & 0xFFFFFFFFL);
+	}
+
+	static long readVarLong(DataInput in) throws IOException {
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) return result;
+		}
+		throw new IOException("слишком длинный varint в трассе");
+	}
+
+	static int readVarInt(DataInput in) throws IOException {
+		return (int) readVarLong(in);
+	}
+}
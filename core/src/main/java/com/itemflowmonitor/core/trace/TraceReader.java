@@ -0,0 +1,111 @@
+package com.itemflowmonitor.core.trace;
+
+import com.itemflowmonitor.core.SlotSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Чтение трассы, записанной {@link TraceWriter}. Изменения слотов применяются к последнему снимку трекера —
+ * каждое наблюдение отдаётся как полный снимок. Обрыв файла (сервер упал во время записи) — конец трассы.
+ */
+public class TraceReader implements Closeable {
+	private final DataInputStream in;
+	/** Последний снимок каждого трекера */
+	private final Map<Integer, SlotSnapshot> snapshots = new HashMap<>();
+	private long lastTick;
+	private boolean finished;
+
+	public TraceReader(InputStream stream) throws IOException {
+		this.in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+		if (in.readInt() != TraceFormat.MAGIC) {
+			throw new IOException("не файл трассы IFM");
+		}
+		int version = TraceFormat.readVarInt(in);
+		if (version != TraceFormat.VERSION) {
+			throw new IOException("неподдерживаемая версия трассы: " + version);
+		}
+	}
+
+	/** @return следующая запись или null в конце трассы */
+	public TraceRecord next() throws IOException {
+		if (finished) return null;
+		try {
+			int type = in.readUnsignedByte();
+			return switch (type) {
+				case TraceFormat.END -> finish();
+				case TraceFormat.ITEM -> new TraceRecord.ItemDefinition(TraceFormat.readVarInt(in), in.readUTF());
+				case TraceFormat.TRACKER -> new TraceRecord.TrackerDefinition(
+						TraceFormat.readVarInt(in), in.readLong(), in.readUTF(), TraceFormat.readVarInt(in),
+						in.readBoolean(), TraceFormat.readVarInt(in), TraceFormat.readVarLong(in) - 1);
+				case TraceFormat.SNAPSHOT -> readSnapshot();
+				case TraceFormat.DELTA -> readDelta();
+				default -> throw new IOException("неизвестный тип записи трассы: " + type);
+			};
+		} catch (EOFException e) {
+			return finish();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	private TraceRecord finish() {
+		finished = true;
+		return null;
+	}
+
+	private TraceRecord readSnapshot() throws IOException {
+		int trackerId = TraceFormat.readVarInt(in);
+		long tick = readTick();
+		int size = TraceFormat.readVarInt(in);
+		if (size < 0) throw new IOException("отрицательный размер снимка");
+		int[] itemIds = new int[size];
+		int[] counts = new int[size];
+		for (int i = 0; i < size; i++) {
+			itemIds[i] = TraceFormat.readVarInt(in);
+			counts[i] = TraceFormat.readVarInt(in);
+		}
+		return observation(trackerId, tick, SlotSnapshot.of(itemIds, counts));
+	}
+
+	private TraceRecord readDelta() throws IOException {
+		int trackerId = TraceFormat.readVarInt(in);
+		long tick = readTick();
+		SlotSnapshot previous = snapshots.get(trackerId);
+		if (previous == null) throw new IOException("изменения трекера " + trackerId + " до его первого снимка");
+		int size = previous.size();
+		int[] itemIds = new int[size];
+		int[] counts = new int[size];
+		for (int i = 0; i < size; i++) {
+			itemIds[i] = previous.itemId(i);
+			counts[i] = previous.count(i);
+		}
+		int changed = TraceFormat.readVarInt(in);
+		for (int n = 0; n < changed; n++) {
+			int slot = TraceFormat.readVarInt(in);
+			if (slot < 0 || slot >= size) throw new IOException("слот " + slot + " вне контейнера трекера " + trackerId);
+			itemIds[slot] = TraceFormat.readVarInt(in);
+			counts[slot] = TraceFormat.readVarInt(in);
+		}
+		return observation(trackerId, tick, SlotSnapshot.of(itemIds, counts));
+	}
+
+	private long readTick() throws IOException {
+		lastTick += TraceFormat.readVarLong(in);
+		return lastTick;
+	}
+
+	private TraceRecord observation(int trackerId, long tick, SlotSnapshot snapshot) {
+		snapshots.put(trackerId, snapshot);
+		return new TraceRecord.Observation(trackerId, tick, snapshot);
+	}
+}
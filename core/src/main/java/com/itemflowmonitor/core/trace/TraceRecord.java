@@ -0,0 +1,17 @@
+package com.itemflowmonitor.core.trace;
+
+import com.itemflowmonitor.core.SlotSnapshot;
+
+/** Запись трассы в том виде, в каком её отдаёт {@link TraceReader} */
+public sealed interface TraceRecord {
+
+	/** Имя предмета по id на момент записи */
+	record ItemDefinition(int itemId, String name) implements TraceRecord {}
+
+	/** Трекер и его настройки на момент начала записи */
+	record TrackerDefinition(int trackerId, long pos, String dimension, int itemFilter, boolean autoSelect,
+							 int periodTicks, long startTick) implements TraceRecord {}
+
+	/** Наблюдение: полное содержимое контейнера после применения изменений */
+	record Observation(int trackerId, long tick, SlotSnapshot snapshot) implements TraceRecord {}
+}
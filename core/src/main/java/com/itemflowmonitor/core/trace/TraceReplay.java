@@ -0,0 +1,192 @@
+package com.itemflowmonitor.core.trace;
+
+import com.itemflowmonitor.core.EmaSmoother;
+import com.itemflowmonitor.core.FlowEvent;
+import com.itemflowmonitor.core.FlowRate;
+import com.itemflowmonitor.core.SlotDiff;
+import com.itemflowmonitor.core.SlotSnapshot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Детерминированное воспроизведение трассы без Minecraft и быстрее реального времени:
+ * наблюдения проходят через SlotDiff, события — через FlowRate/EmaSmoother, как в моде.
+ * Через каждые sampleTicks тиков считаются все три режима rate; контрольная сумма по всем выборкам
+ * меняется при любом изменении результата — по ней сравниваются версии движка.
+ * <p>
+ * Запуск: {@code ./gradlew :core:replay -Ptrace=path/to/trace.ifmt [-PreplayArgs="--sample 1 --csv rates.csv"]}
+ */
+public final class TraceReplay {
+	/** Максимальный возраст события в тиках — как в ContainerTracker */
+	private static final long MAX_EVENT_AGE = 72000;
+
+	private static final int DEFAULT_SAMPLE_TICKS = 20;
+
+	/** Итог воспроизведения */
+	public record Result(int trackers, long observations, long events, long firstTick, long lastTick,
+						 long samples, long checksum, long nanos) {
+		/** Во сколько раз быстрее реального времени (20 тиков в секунду) */
+		public double speedup() {
+			double gameSeconds = (lastTick - firstTick) / 20.0;
+			return nanos > 0 ? gameSeconds / (nanos / 1e9) : 0;
+		}
+	}
+
+	/** Событие поступления в воспроизведении */
+	private record Event(long tick, int itemId, int count) implements FlowEvent {}
+
+	/** Состояние одного трекера: буфер событий и сглаживание, как в ContainerTracker */
+	private static final class ReplayTracker {
+		final TraceRecord.TrackerDefinition definition;
+		final ArrayDeque<Event> events = new ArrayDeque<>();
+		final EmaSmoother smoothing = new EmaSmoother();
+		int filter;
+		long startTick;
+		SlotSnapshot previous;
+
+		ReplayTracker(TraceRecord.TrackerDefinition definition) {
+			this.definition = definition;
+			this.filter = definition.itemFilter();
+			this.startTick = definition.startTick();
+		}
+
+		void record(long tick, int itemId, int count) {
+			if (definition.autoSelect() && filter == FlowRate.NO_ITEM) {
+				filter = itemId;
+			}
+			if (startTick < 0) {
+				startTick = tick;
+			}
+			events.add(new Event(tick, itemId, count));
+			long cutoff = tick - MAX_EVENT_AGE;
+			Iterator<Event> it = events.iterator();
+			while (it.hasNext() && it.next().tick() < cutoff) {
+				it.remove();
+			}
+		}
+	}
+
+	private TraceReplay() {}
+
+	/**
+	 * Воспроизвести трассу.
+	 * @param csv куда писать выборки (tick,tracker,average,actual,predicted); null — не писать
+	 */
+	public static Result run(InputStream trace, int sampleTicks, Writer csv) throws IOException {
+		Map<Integer, ReplayTracker> trackers = new LinkedHashMap<>();
+		long observations = 0;
+		long[] events = {0};
+		long firstTick = -1;
+		long lastTick = -1;
+		long nextSample = -1;
+		long samples = 0;
+		long checksum = 17;
+		if (csv != null) {
+			csv.write("tick,tracker,average,actual,predicted\n");
+		}
+
+		long start = System.nanoTime();
+		try (TraceReader reader = new TraceReader(trace)) {
+			TraceRecord record;
+			while ((record = reader.next()) != null) {
+				if (record instanceof TraceRecord.TrackerDefinition definition) {
+					trackers.put(definition.trackerId(), new ReplayTracker(definition));
+				} else if (record instanceof TraceRecord.Observation observation) {
+					ReplayTracker tracker = trackers.get(observation.trackerId());
+					if (tracker == null) continue;
+					long tick = observation.tick();
+					if (firstTick < 0) {
+						firstTick = tick;
+						nextSample = tick;
+					}
+					// Выборки до этого наблюдения — состояние на те тики уже окончательное
+					while (nextSample < tick) {
+						checksum = sample(trackers, nextSample, checksum, csv);
+						samples += trackers.size();
+						nextSample += sampleTicks;
+					}
+					if (tracker.previous != null) {
+						SlotDiff.diff(tracker.previous, observation.snapshot(), (itemId, count) -> {
+							tracker.record(tick, itemId, count);
+							events[0]++;
+						});
+					}
+					tracker.previous = observation.snapshot();
+					observations++;
+					lastTick = tick;
+				}
+			}
+		}
+		if (lastTick >= 0) {
+			while (nextSample <= lastTick) {
+				checksum = sample(trackers, nextSample, checksum, csv);
+				samples += trackers.size();
+				nextSample += sampleTicks;
+			}
+		}
+		long nanos = System.nanoTime() - start;
+		if (csv != null) {
+			csv.flush();
+		}
+		return new Result(trackers.size(), observations, events[0], firstTick, lastTick, samples, checksum, nanos);
+	}
+
+	/** Посчитать все режимы rate для всех трекеров на тике и добавить их в контрольную сумму */
+	private static long sample(Map<Integer, ReplayTracker> trackers, long tick, long checksum, Writer csv) throws IOException {
+		for (ReplayTracker tracker : trackers.values()) {
+			long period = tracker.definition.periodTicks();
+			double average = FlowRate.average(tracker.events, tracker.filter, tracker.startTick, period, tick);
+			double actual = FlowRate.actual(tracker.events, tracker.filter, period, tick);
+			double predicted = tracker.smoothing.apply(
+					FlowRate.predictedRaw(tracker.events, tracker.filter, period, tick), tick, true);
+			checksum = checksum * 31 + Double.doubleToLongBits(average);
+			checksum = checksum * 31 + Double.doubleToLongBits(actual);
+			checksum = checksum * 31 + Double.doubleToLongBits(predicted);
+			if (csv != null) {
+				csv.write(tick + "," + tracker.definition.trackerId() + "," + average + "," + actual + "," + predicted + "\n");
+			}
+		}
+		return checksum;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Path trace = null;
+		Path csvPath = null;
+		int sampleTicks = DEFAULT_SAMPLE_TICKS;
+		for (int i = 0; i < args.length; i++) {
+			switch (args[i]) {
+				case "--sample" -> sampleTicks = Math.max(1, Integer.parseInt(args[++i]));
+				case "--csv" -> csvPath = Path.of(args[++i]);
+				default -> trace = Path.of(args[i]);
+			}
+		}
+		if (trace == null) {
+			System.err.println("Использование: TraceReplay <trace.ifmt> [--sample тиков] [--csv rates.csv]");
+			System.exit(2);
+			return;
+		}
+
+		Result result;
+		try (InputStream in = Files.newInputStream(trace);
+			 BufferedWriter csv = csvPath != null ? Files.newBufferedWriter(csvPath) : null) {
+			result = run(in, sampleTicks, csv);
+		}
+		System.out.printf(Locale.ROOT, "Трекеров: %d, наблюдений: %d, событий: %d%n",
+				result.trackers(), result.observations(), result.events());
+		System.out.printf(Locale.ROOT, "Тики %d..%d, выборок: %d (каждые %d тиков)%n",
+				result.firstTick(), result.lastTick(), result.samples(), sampleTicks);
+		System.out.printf(Locale.ROOT, "Время: %.1f мс, быстрее реального в %.0f раз%n",
+				result.nanos() / 1e6, result.speedup());
+		System.out.printf(Locale.ROOT, "Контрольная сумма: %016x%n", result.checksum());
+	}
+}
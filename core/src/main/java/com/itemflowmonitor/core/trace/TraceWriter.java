@@ -0,0 +1,142 @@
+package com.itemflowmonitor.core.trace;
+
+import com.itemflowmonitor.core.SlotSnapshot;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/**
+ * Запись потока наблюдений за контейнерами в трассу (формат — {@link TraceFormat}).
+ * Пишутся только изменившиеся слоты; наблюдение без изменений не занимает места.
+ * Имена предметов — для чтения трассы человеком и сверки палитры; сам движок работает по id.
+ * Не потокобезопасен.
+ */
+public class TraceWriter implements Closeable {
+	private final DataOutputStream out;
+	private final IntFunction<String> itemNames;
+	/** Предметы, уже описанные записью ITEM */
+	private final BitSet definedItems = new BitSet();
+	private long lastTick;
+	private long observations;
+
+	/**
+	 * @param itemNames имя предмета по id (записывается при первом появлении id в трассе)
+	 */
+	public TraceWriter(OutputStream stream, IntFunction<String> itemNames) throws IOException {
+		this.out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+		this.itemNames = itemNames;
+		out.writeInt(TraceFormat.MAGIC);
+		TraceFormat.writeVarInt(out, TraceFormat.VERSION);
+	}
+
+	/**
+	 * Описать трекер до его первого наблюдения.
+	 * @param itemFilter фильтр FlowRate на момент начала записи
+	 * @param autoSelect фильтр ещё не выбран — первый поступивший предмет станет отслеживаемым
+	 * @param startTick начало отслеживания для AVERAGE (-1 — не задано)
+	 */
+	public void defineTracker(int trackerId, long pos, String dimension, int itemFilter, boolean autoSelect,
+							  int periodTicks, long startTick) throws IOException {
+		out.writeByte(TraceFormat.TRACKER);
+		TraceFormat.writeVarInt(out, trackerId);
+		out.writeLong(pos);
+		out.writeUTF(dimension);
+		TraceFormat.writeVarInt(out, itemFilter);
+		out.writeBoolean(autoSelect);
+		TraceFormat.writeVarInt(out, periodTicks);
+		TraceFormat.writeVarLong(out, startTick + 1);
+	}
+
+	/**
+	 * Записать наблюдение: полный снимок, если предыдущего нет или сменился размер, иначе — изменившиеся слоты.
+	 * Тики наблюдений не убывают.
+	 * @return false — изменений нет, ничего не записано
+	 */
+	public boolean observe(int trackerId, long tick, SlotSnapshot previous, SlotSnapshot current) throws IOException {
+		if (previous == null || previous.size() != current.size()) {
+			defineItems(current, null);
+			out.writeByte(TraceFormat.SNAPSHOT);
+			writeHeader(trackerId, tick);
+			TraceFormat.writeVarInt(out, current.size());
+			for (int i = 0; i < current.size(); i++) {
+				TraceFormat.writeVarInt(out, current.itemId(i));
+				TraceFormat.writeVarInt(out, current.count(i));
+			}
+			observations++;
+			return true;
+		}
+
+		int changed = 0;
+		for (int i = 0; i < current.size(); i++) {
+			if (slotChanged(previous, current, i)) {
+				changed++;
+			}
+		}
+		if (changed == 0) return false;
+
+		defineItems(current, previous);
+		out.writeByte(TraceFormat.DELTA);
+		writeHeader(trackerId, tick);
+		TraceFormat.writeVarInt(out, changed);
+		for (int i = 0; i < current.size(); i++) {
+			if (slotChanged(previous, current, i)) {
+				TraceFormat.writeVarInt(out, i);
+				TraceFormat.writeVarInt(out, current.itemId(i));
+				TraceFormat.writeVarInt(out, current.count(i));
+			}
+		}
+		observations++;
+		return true;
+	}
+
+	/** Записано наблюдений */
+	public long getObservations() {
+		return observations;
+	}
+
+	/** Записано байт (с учётом ещё не сброшенного буфера) */
+	public long getBytes() {
+		return out.size();
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			out.writeByte(TraceFormat.END);
+		} finally {
+			out.close();
+		}
+	}
+
+	private void writeHeader(int trackerId, long tick) throws IOException {
+		TraceFormat.writeVarInt(out, trackerId);
+		TraceFormat.writeVarLong(out, Math.max(0, tick - lastTick));
+		lastTick = Math.max(lastTick, tick);
+	}
+
+	/** Описать ещё не встречавшиеся предметы снимка (только изменившиеся слоты, если previous задан) */
+	private void defineItems(SlotSnapshot current, SlotSnapshot previous) throws IOException {
+		for (int i = 0; i < current.size(); i++) {
+			if (current.isEmpty(i) || (previous != null && !slotChanged(previous, current, i))) continue;
+			int itemId = current.itemId(i);
+			if (definedItems.get(itemId)) continue;
+			definedItems.set(itemId);
+			out.writeByte(TraceFormat.ITEM);
+			TraceFormat.writeVarInt(out, itemId);
+			out.writeUTF(itemNames.apply(itemId));
+		}
+	}
+
+	private static boolean slotChanged(SlotSnapshot previous, SlotSnapshot current, int slot) {
+		return previous.itemId(slot) != current.itemId(slot) || previous.count(slot) != current.count(slot);
+	}
+}
@@ -0,0 +1,68 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmaSmootherTest {
+
+	@Test
+	void firstValueIsRaw() {
+		EmaSmoother smoother = new EmaSmoother();
+		assertEquals(42.0, smoother.apply(42, 0, true));
+		assertTrue(smoother.isSettled());
+	}
+
+	@Test
+	void stepsTowardsRawAndSettles() {
+		EmaSmoother smoother = new EmaSmoother();
+		smoother.apply(0, 0, true);
+		// Один шаг ALPHA = 0.05
+		assertEquals(5.0, smoother.apply(100, 1, true));
+		assertFalse(smoother.isSettled());
+		// Несколько тиков за вызов — столько же шагов
+		assertEquals(FlowRate.round1(100 - 95 * Math.pow(0.95, 9)), smoother.apply(100, 10, true));
+		// После долгого перерыва — ровно сырое значение, EMA сошлась
+		assertEquals(100.0, smoother.apply(100, 1000, true));
+		assertEquals(100.0, smoother.get());
+		assertTrue(smoother.isSettled());
+	}
+
+	@Test
+	void peekDoesNotAdvanceState() {
+		EmaSmoother smoother = new EmaSmoother();
+		smoother.apply(0, 0, true);
+		assertEquals(5.0, smoother.apply(100, 1, false));
+		assertEquals(0.0, smoother.get());
+		assertEquals(5.0, smoother.apply(100, 1, true));
+	}
+
+	@Test
+	void resetStartsFromRaw() {
+		EmaSmoother smoother = new EmaSmoother();
+		smoother.apply(0, 0, true);
+		smoother.reset();
+		assertEquals(100.0, smoother.apply(100, 1, true));
+	}
+
+	@Test
+	void restoreContinuesFromSavedValue() {
+		EmaSmoother smoother = new EmaSmoother();
+		smoother.restore(50, 10);
+		assertEquals(50.0, smoother.get());
+		assertEquals(50.0, smoother.apply(50, 10, true));
+		assertTrue(smoother.isSettled());
+	}
+
+	@Test
+	void restoredValueSurvivesNextApply() {
+		EmaSmoother smoother = new EmaSmoother();
+		smoother.restore(0, 100_000);
+		// Один тик после восстановления — один шаг, а не схождение к сырому за MAX_STEPS
+		assertEquals(5.0, smoother.apply(100, 100_001, true));
+		assertFalse(smoother.isSettled());
+		assertEquals(100_001, smoother.getLastTick());
+	}
+}
@@ -0,0 +1,92 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FlowRateTest {
+	private static final int IRON = 1;
+	private static final int STONE = 2;
+
+	private record Event(long tick, int itemId, int count) implements FlowEvent {}
+
+	private static final List<Event> EVENTS = List.of(
+			new Event(100, IRON, 10),
+			new Event(200, IRON, 10),
+			new Event(300, STONE, 5));
+
+	@Test
+	void averageIsStableUntilDecayThreshold() {
+		List<Event> events = EVENTS.subList(0, 2);
+		// Знаменатель — время до последнего события: 20 предметов за 200 тиков
+		assertEquals(120.0, FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, 250));
+		assertEquals(120.0, FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, 200 + FlowRate.AVG_DECAY_THRESHOLD));
+	}
+
+	@Test
+	void averageDecaysAfterSilence() {
+		List<Event> events = EVENTS.subList(0, 2);
+		// Тишина дольше порога — знаменатель до текущего тика
+		assertEquals(79.7, FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, 201 + FlowRate.AVG_DECAY_THRESHOLD));
+		assertEquals(60.0, FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, 400));
+	}
+
+	@Test
+	void averageRespectsFilterAndStart() {
+		assertEquals(0, FlowRate.average(EVENTS, FlowRate.NO_ITEM, 0, 1200, 250));
+		assertEquals(0, FlowRate.average(EVENTS, FlowRate.ANY_ITEM, -1, 1200, 250));
+		assertEquals(0, FlowRate.average(EVENTS, FlowRate.ANY_ITEM, 250, 1200, 250));
+		// Только STONE: 5 предметов за 300 тиков
+		assertEquals(20.0, FlowRate.average(EVENTS, STONE, 0, 1200, 300));
+	}
+
+	@Test
+	void windowIncludesBothEdges() {
+		assertEquals(25, FlowRate.windowTotal(EVENTS, FlowRate.ANY_ITEM, 100, 300));
+		assertEquals(10, FlowRate.windowTotal(EVENTS, FlowRate.ANY_ITEM, 101, 299));
+		assertEquals(20, FlowRate.windowTotal(EVENTS, IRON, 0, 1000));
+		assertEquals(0, FlowRate.windowTotal(EVENTS, FlowRate.NO_ITEM, 0, 1000));
+		// События после текущего тика не считаются
+		assertEquals(10, FlowRate.windowTotal(EVENTS, FlowRate.ANY_ITEM, 0, 150));
+	}
+
+	@Test
+	void actualCountsFullPeriod() {
+		assertEquals(25, FlowRate.actual(EVENTS, FlowRate.ANY_ITEM, 200, 300));
+		assertEquals(15, FlowRate.actual(EVENTS, FlowRate.ANY_ITEM, 200, 301));
+	}
+
+	@Test
+	void predictedExtrapolatesShortWindow() {
+		assertEquals(300, FlowRate.predictWindow(1200));
+		assertEquals(200, FlowRate.predictWindow(400));
+		// Окно 300 тиков (с 0 по 300): 25 предметов → 100 за период
+		assertEquals(100.0, FlowRate.predictedRaw(EVENTS, FlowRate.ANY_ITEM, 1200, 300));
+	}
+
+	@Test
+	void nextWindowExitIsFirstTickWithoutOldestEvent() {
+		long exit = FlowRate.nextWindowExit(EVENTS, 150, 260);
+		assertEquals(351, exit);
+		assertEquals(15, FlowRate.actual(EVENTS, FlowRate.ANY_ITEM, 150, exit - 1));
+		assertEquals(5, FlowRate.actual(EVENTS, FlowRate.ANY_ITEM, 150, exit));
+		assertEquals(Long.MAX_VALUE, FlowRate.nextWindowExit(EVENTS, 100, 500));
+		assertEquals(Long.MAX_VALUE, FlowRate.nextWindowExit(List.<Event>of(), 100, 500));
+	}
+
+	@Test
+	void nextAverageChangeStartsDecayThenRechecks() {
+		List<Event> events = EVENTS.subList(0, 2);
+		long decayStart = FlowRate.nextAverageChange(events, FlowRate.ANY_ITEM, 250);
+		assertEquals(200 + FlowRate.AVG_DECAY_THRESHOLD + 1, decayStart);
+		// До начала затухания значение не меняется, на нём — меняется
+		assertEquals(FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, 250),
+				FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, decayStart - 1));
+		assertEquals(79.7, FlowRate.average(events, FlowRate.ANY_ITEM, 0, 1200, decayStart));
+		assertEquals(400 + FlowRate.AVG_DECAY_RECHECK_TICKS, FlowRate.nextAverageChange(events, FlowRate.ANY_ITEM, 400));
+		assertEquals(Long.MAX_VALUE, FlowRate.nextAverageChange(events, STONE, 250));
+		assertEquals(Long.MAX_VALUE, FlowRate.nextAverageChange(events, FlowRate.NO_ITEM, 250));
+	}
+}
@@ -0,0 +1,91 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotDiffTest {
+	private static final int IRON = 1;
+	private static final int STONE = 2;
+
+	/** Поступления в порядке сообщения: {itemId, count} */
+	private final List<int[]> added = new ArrayList<>();
+
+	private int diff(SlotSnapshot previous, SlotSnapshot current) {
+		return SlotDiff.diff(previous, current, (itemId, count) -> added.add(new int[]{itemId, count}));
+	}
+
+	private static SlotSnapshot slots(int... idCountPairs) {
+		int[] itemIds = new int[idCountPairs.length / 2];
+		int[] counts = new int[idCountPairs.length / 2];
+		for (int i = 0; i < itemIds.length; i++) {
+			itemIds[i] = idCountPairs[2 * i];
+			counts[i] = idCountPairs[2 * i + 1];
+		}
+		return SlotSnapshot.of(itemIds, counts);
+	}
+
+	private void assertAdded(int... idCountPairs) {
+		assertEquals(idCountPairs.length / 2, added.size());
+		for (int i = 0; i < added.size(); i++) {
+			assertEquals(idCountPairs[2 * i], added.get(i)[0]);
+			assertEquals(idCountPairs[2 * i + 1], added.get(i)[1]);
+		}
+	}
+
+	@Test
+	void unchangedReportsNothing() {
+		assertEquals(0, diff(slots(IRON, 5, 0, 0), slots(IRON, 5, 0, 0)));
+		assertAdded();
+	}
+
+	@Test
+	void itemSwapCountsWholeStack() {
+		assertEquals(1, diff(slots(IRON, 5), slots(STONE, 3)));
+		assertAdded(STONE, 3);
+	}
+
+	@Test
+	void growthCountsDelta() {
+		assertEquals(2, diff(slots(IRON, 5, 0, 0), slots(IRON, 8, STONE, 2)));
+		assertAdded(IRON, 3, STONE, 2);
+	}
+
+	@Test
+	void shrinkIsChangeButNotArrival() {
+		assertEquals(2, diff(slots(IRON, 5, STONE, 2), slots(IRON, 2, 0, 0)));
+		assertAdded();
+	}
+
+	@Test
+	void containerGrowthCountsNewSlots() {
+		// Одинарный сундук стал двойным
+		assertEquals(2, diff(slots(IRON, 5), slots(IRON, 5, STONE, 2, 0, 0)));
+		assertAdded(STONE, 2);
+	}
+
+	@Test
+	void containerShrinkIsNotArrival() {
+		assertEquals(2, diff(slots(IRON, 5, STONE, 2, 0, 0), slots(IRON, 5)));
+		assertAdded();
+	}
+
+	@Test
+	void captureClearsIdOfEmptySlots() {
+		SlotSource source = new SlotSource() {
+			@Override public int size() { return 2; }
+			@Override public int itemId(int slot) { return IRON; }
+			@Override public int count(int slot) { return slot == 0 ? 4 : 0; }
+		};
+		SlotSnapshot snapshot = SlotSnapshot.capture(source);
+		assertEquals(IRON, snapshot.itemId(0));
+		assertEquals(0, snapshot.itemId(1));
+		assertTrue(snapshot.isEmpty(1));
+		assertThrows(IllegalArgumentException.class, () -> SlotSnapshot.of(new int[2], new int[3]));
+	}
+}
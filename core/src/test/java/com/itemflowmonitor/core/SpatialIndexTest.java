@@ -0,0 +1,65 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SpatialIndexTest {
+	private final SpatialIndex<String> index = new SpatialIndex<>();
+
+	@BeforeEach
+	void fill() {
+		// Четыре занятых чанка: (0,0), (1,0), (-1,-1), (6,6)
+		index.add("origin", 0, 0);
+		index.add("edge", 15, 15);
+		index.add("east", 16, 0);
+		index.add("negative", -1, -1);
+		index.add("far", 100, 100);
+	}
+
+	private Set<String> query(int minX, int minZ, int maxX, int maxZ) {
+		Set<String> found = new HashSet<>();
+		index.query(minX, minZ, maxX, maxZ, found::add);
+		return found;
+	}
+
+	@Test
+	void queryWalksCoveredChunks() {
+		// Один чанк — меньше занятых, обход по прямоугольнику
+		assertEquals(Set.of("origin", "edge"), query(0, 0, 15, 15));
+		// Ровно четыре чанка — ещё обход по прямоугольнику, включая отрицательные координаты
+		assertEquals(Set.of("origin", "edge", "negative"), query(-1, -1, 0, 0));
+		assertEquals(Set.of(), query(32, 32, 47, 47));
+	}
+
+	@Test
+	void wideQueryFallsBackToOccupiedChunks() {
+		// Шесть чанков больше четырёх занятых — обход по занятым с проверкой границ
+		assertEquals(Set.of("origin", "edge", "east", "negative"), query(-16, -16, 31, 15));
+		assertEquals(Set.of("origin", "edge", "east", "negative", "far"),
+				query(-30_000_000, -30_000_000, 30_000_000, 30_000_000));
+		assertEquals(Set.of("far"), query(64, 64, 30_000_000, 30_000_000));
+		assertEquals(Set.of("negative"), query(-30_000_000, -30_000_000, -1, -1));
+	}
+
+	@Test
+	void removeDropsKeyAndEmptyChunk() {
+		index.remove("origin", 0, 0);
+		assertEquals(Set.of("edge"), query(0, 0, 15, 15));
+		index.remove("edge", 15, 15);
+		index.remove("missing", 200, 200);
+		assertEquals(Set.of(), query(0, 0, 15, 15));
+		// Занятых чанков стало три — прямоугольник в четыре чанка уходит в обход по занятым
+		assertEquals(Set.of("negative"), query(-1, -1, 0, 0));
+	}
+
+	@Test
+	void clearEmptiesIndex() {
+		index.clear();
+		assertEquals(Set.of(), query(-30_000_000, -30_000_000, 30_000_000, 30_000_000));
+	}
+}
@@ -0,0 +1,121 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+	private final TimerWheel<String> wheel = new TimerWheel<>();
+	/** Тик срабатывания каждого ключа */
+	private final Map<String, Long> fired = new HashMap<>();
+
+	private long lastTick = -1;
+
+	private void advance(long tick) {
+		wheel.advance(tick, key -> assertNull(fired.put(key, tick), "ключ " + key + " сработал повторно"));
+		lastTick = tick;
+	}
+
+	/** Продвигать по одному тику — тик срабатывания точный */
+	private void runTo(long target) {
+		for (long tick = lastTick + 1; tick <= target; tick++) {
+			advance(tick);
+		}
+	}
+
+	@Test
+	void timersCascadeFromUpperLevels() {
+		advance(0);
+		// Уровни 0..3: ближний, дальше оборота нижнего уровня, дальше 256^2 и дальше 256^3 тиков
+		wheel.schedule("near", 5);
+		wheel.schedule("level1", 300);
+		wheel.schedule("level2", 70_000);
+		wheel.schedule("level3", 16_777_300);
+		// Граница блока уровня 1 — спуск и срабатывание на одном тике
+		wheel.schedule("boundary", 512);
+		assertEquals(5, wheel.size());
+
+		runTo(16_777_300);
+		assertEquals(Map.of("near", 5L, "level1", 300L, "level2", 70_000L, "level3", 16_777_300L, "boundary", 512L),
+				fired);
+		assertEquals(0, wheel.size());
+	}
+
+	@Test
+	void rescheduleReplacesDeadline() {
+		advance(0);
+		wheel.schedule("key", 100);
+		wheel.schedule("key", 50);
+		wheel.schedule("later", 100);
+		wheel.schedule("later", 70_000);
+		runTo(70_000);
+		assertEquals(Map.of("key", 50L, "later", 70_000L), fired);
+	}
+
+	@Test
+	void cancelAndMaxValueUnschedule() {
+		advance(0);
+		wheel.schedule("cancelled", 10);
+		wheel.schedule("max", 20);
+		wheel.cancel("cancelled");
+		wheel.schedule("max", Long.MAX_VALUE);
+		assertFalse(wheel.isScheduled("cancelled"));
+		assertFalse(wheel.isScheduled("max"));
+		runTo(100);
+		assertTrue(fired.isEmpty());
+	}
+
+	@Test
+	void pastDeadlineFiresOnNextTick() {
+		advance(0);
+		runTo(10);
+		wheel.schedule("late", 3);
+		runTo(20);
+		assertEquals(Map.of("late", 11L), fired);
+	}
+
+	@Test
+	void delaysBeforeFirstAdvanceCountFromIt() {
+		wheel.scheduleAfter("delayed", 10);
+		wheel.schedule("absolute", 5);
+		assertTrue(wheel.isScheduled("delayed"));
+		advance(1000);
+		// Прошедший абсолютный дедлайн срабатывает на первом тике
+		assertEquals(Map.of("absolute", 1000L), fired);
+		runTo(1010);
+		assertEquals(1010L, fired.get("delayed"));
+	}
+
+	@Test
+	void longGapRebuildsWheel() {
+		advance(0);
+		wheel.schedule("passed", 100);
+		wheel.schedule("pending", 20_000_000);
+		// Разрыв больше 256^2 тиков — раскладка заново, прошедшее срабатывает сразу
+		advance(10_000_000);
+		assertEquals(Map.of("passed", 10_000_000L), fired);
+		runTo(20_000_000);
+		assertEquals(20_000_000L, fired.get("pending"));
+	}
+
+	@Test
+	void callbackMayReschedule() {
+		advance(0);
+		wheel.schedule("periodic", 10);
+		int[] hits = new int[1];
+		for (long tick = 1; tick <= 100; tick++) {
+			wheel.advance(tick, key -> {
+				hits[0]++;
+				wheel.scheduleAfter(key, 10);
+			});
+		}
+		assertEquals(10, hits[0]);
+		assertTrue(wheel.isScheduled("periodic"));
+	}
+}
@@ -0,0 +1,101 @@
+package com.itemflowmonitor.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrackerRegistryTest {
+	private static final UUID ALICE = new UUID(0, 1);
+	private static final UUID BOB = new UUID(0, 2);
+	private static final UUID VIEWER_1 = new UUID(1, 1);
+	private static final UUID VIEWER_2 = new UUID(1, 2);
+
+	private final TrackerRegistry<String, Object> registry = new TrackerRegistry<>();
+
+	@Test
+	void getOrCreateCreatesOnce() {
+		Object first = registry.getOrCreate("a", key -> new Object());
+		assertSame(first, registry.getOrCreate("a", key -> new Object()));
+		assertEquals(1, registry.size());
+	}
+
+	@Test
+	void ownerIndexFollowsMoveAndRemove() {
+		registry.getOrCreate("a", key -> new Object());
+		registry.getOrCreate("b", key -> new Object());
+		registry.setOwner("a", ALICE);
+		registry.setOwner("b", ALICE);
+		assertEquals(2, registry.ownerCount(ALICE));
+
+		Object moved = registry.get("a");
+		assertSame(moved, registry.move("a", "c"));
+		assertFalse(registry.contains("a"));
+		assertEquals(Set.of("b", "c"), registry.ownedBy(ALICE));
+
+		registry.remove("b");
+		assertEquals(Set.of("c"), registry.ownedBy(ALICE));
+
+		// Смена владельца снимает ключ со старого
+		registry.setOwner("c", BOB);
+		assertEquals(0, registry.ownerCount(ALICE));
+		assertEquals(Set.of(), registry.ownedBy(ALICE));
+		assertEquals(Set.of("c"), registry.ownedBy(BOB));
+
+		registry.remove("c");
+		assertEquals(0, registry.ownerCount(BOB));
+		assertNull(registry.move("missing", "d"));
+	}
+
+	@Test
+	void viewerCountsFollowViewers() {
+		registry.getOrCreate("a", key -> new Object());
+		registry.getOrCreate("b", key -> new Object());
+		registry.setViewer(VIEWER_1, "a");
+		registry.setViewer(VIEWER_2, "a");
+		// Повторная подписка на тот же ключ не удваивает счётчик
+		registry.setViewer(VIEWER_2, "a");
+		assertEquals(2, registry.viewerCount("a"));
+
+		registry.setViewer(VIEWER_1, "b");
+		assertEquals(1, registry.viewerCount("a"));
+		assertEquals(1, registry.viewerCount("b"));
+
+		registry.removeViewer(VIEWER_2);
+		assertFalse(registry.hasViewers("a"));
+		assertEquals(0, registry.viewerCount("a"));
+		registry.removeViewer(VIEWER_2);
+		assertTrue(registry.hasViewers("b"));
+	}
+
+	@Test
+	void viewersStayOnOldKeyAfterMove() {
+		registry.getOrCreate("a", key -> new Object());
+		registry.setViewer(VIEWER_1, "a");
+		registry.move("a", "c");
+		// Зрителя переподпишет клиент
+		assertTrue(registry.hasViewers("a"));
+		assertFalse(registry.hasViewers("c"));
+		registry.setViewer(VIEWER_1, "c");
+		assertFalse(registry.hasViewers("a"));
+		assertEquals(1, registry.viewerCount("c"));
+	}
+
+	@Test
+	void clearDropsIndexes() {
+		registry.getOrCreate("a", key -> new Object());
+		registry.setOwner("a", ALICE);
+		registry.setViewer(VIEWER_1, "a");
+		registry.clear();
+		assertTrue(registry.isEmpty());
+		assertEquals(0, registry.ownerCount(ALICE));
+		assertFalse(registry.hasViewers("a"));
+		assertTrue(registry.viewers().isEmpty());
+	}
+}
@@ -0,0 +1,99 @@
+package com.itemflowmonitor.core.trace;
+
+import com.itemflowmonitor.core.FlowRate;
+import com.itemflowmonitor.core.SlotSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TraceRoundTripTest {
+	private static final int IRON = 1;
+	private static final int STONE = 2;
+	private static final int REDSTONE = 3;
+
+	private static final SlotSnapshot FIRST = SlotSnapshot.of(new int[]{IRON, 0, 0}, new int[]{5, 0, 0});
+	private static final SlotSnapshot SECOND = SlotSnapshot.of(new int[]{IRON, STONE, 0}, new int[]{8, 2, 0});
+	private static final SlotSnapshot DOUBLED = SlotSnapshot.of(
+			new int[]{IRON, STONE, 0, REDSTONE, 0, 0}, new int[]{8, 2, 0, 1, 0, 0});
+
+	/** Трасса: трекер, полный снимок, изменения, наблюдение без изменений и снимок после смены размера */
+	private static byte[] record() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (TraceWriter writer = new TraceWriter(bytes, id -> "minecraft:item_" + id)) {
+			writer.defineTracker(7, 123_456L, "minecraft:the_nether", FlowRate.ANY_ITEM, true, 1200, -1);
+			assertTrue(writer.observe(7, 10, null, FIRST));
+			assertTrue(writer.observe(7, 20, FIRST, SECOND));
+			assertFalse(writer.observe(7, 30, SECOND, SECOND));
+			assertTrue(writer.observe(7, 40, SECOND, DOUBLED));
+			assertEquals(3, writer.getObservations());
+		}
+		return bytes.toByteArray();
+	}
+
+	private static List<TraceRecord> read(byte[] data) throws IOException {
+		List<TraceRecord> records = new ArrayList<>();
+		try (TraceReader reader = new TraceReader(new ByteArrayInputStream(data))) {
+			for (TraceRecord record = reader.next(); record != null; record = reader.next()) {
+				records.add(record);
+			}
+			// Конец трассы повторно отдаёт null
+			assertNull(reader.next());
+		}
+		return records;
+	}
+
+	private static void assertSnapshot(SlotSnapshot expected, TraceRecord record, long tick) {
+		TraceRecord.Observation observation = assertInstanceOf(TraceRecord.Observation.class, record);
+		assertEquals(7, observation.trackerId());
+		assertEquals(tick, observation.tick());
+		SlotSnapshot actual = observation.snapshot();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.itemId(i), actual.itemId(i), "id слота " + i);
+			assertEquals(expected.count(i), actual.count(i), "количество слота " + i);
+		}
+	}
+
+	@Test
+	void roundTripRestoresEveryObservation() throws IOException {
+		List<TraceRecord> records = read(record());
+
+		assertEquals(new TraceRecord.TrackerDefinition(7, 123_456L, "minecraft:the_nether", FlowRate.ANY_ITEM,
+				true, 1200, -1), records.get(0));
+		// Предмет описывается перед первым наблюдением, где он появился, — один раз
+		assertEquals(new TraceRecord.ItemDefinition(IRON, "minecraft:item_1"), records.get(1));
+		assertSnapshot(FIRST, records.get(2), 10);
+		assertEquals(new TraceRecord.ItemDefinition(STONE, "minecraft:item_2"), records.get(3));
+		assertSnapshot(SECOND, records.get(4), 20);
+		assertEquals(new TraceRecord.ItemDefinition(REDSTONE, "minecraft:item_3"), records.get(5));
+		assertSnapshot(DOUBLED, records.get(6), 40);
+		assertEquals(7, records.size());
+	}
+
+	@Test
+	void truncatedTraceEndsAtLastCompleteRecord() throws IOException {
+		byte[] data = record();
+		// Сервер упал посреди последнего снимка: END и хвост снимка не записаны
+		List<TraceRecord> records = read(Arrays.copyOf(data, data.length - 3));
+		assertEquals(6, records.size());
+		assertSnapshot(SECOND, records.get(4), 20);
+	}
+
+	@Test
+	void foreignFileIsRejected() {
+		byte[] data = {1, 2, 3, 4, 5};
+		assertThrows(IOException.class, () -> new TraceReader(new ByteArrayInputStream(data)));
+	}
+}
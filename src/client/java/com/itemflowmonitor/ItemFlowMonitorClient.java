@@ -3,6 +3,7 @@ package com.itemflowmonitor;
 import com.itemflowmonitor.client.SettingsPanel;
 import com.itemflowmonitor.client.TrackerClientState;
 import com.itemflowmonitor.config.IFMConfig;
+import com.itemflowmonitor.network.SharedTrackerUpdateS2CPacket;
 import com.itemflowmonitor.network.TrackerConfigC2SPacket;
 import com.itemflowmonitor.network.TrackerUpdateS2CPacket;
 import com.itemflowmonitor.util.ChestUtil;
@@ -51,27 +52,12 @@ public class ItemFlowMonitorClient implements ClientModInitializer {
 
 	@Override
 	public void onInitializeClient() {
-		// Регистрируем обработчик S2C пакетов
+		// Регистрируем обработчики S2C пакетов (общий пакет — то же обновление, закодированное для рассылки)
 		ClientPlayNetworking.registerGlobalReceiver(TrackerUpdateS2CPacket.TYPE, (payload, context) -> {
-			context.client().execute(() -> {
-				TrackerClientState.update(payload);
-				// Синхронизируем панель с данными от сервера
-				if (currentPanel != null) {
-					if (payload.active()) {
-						currentPanel.syncFromServer(
-							TrackerClientState.getMode(),
-							TrackerClientState.getPeriod(),
-							TrackerClientState.getRateMode(),
-							TrackerClientState.getTrackedItem()
-						);
-						// Панель могла вырасти — перепозиционируем, чтобы не наезжала на контейнер
-						repositionPanel();
-					} else {
-						// Сервер отклонил (лимит, трекер удалён) — возвращаем UI в OFF
-						currentPanel.syncDisabled();
-					}
-				}
-			});
+			context.client().execute(() -> onTrackerUpdate(payload));
+		});
+		ClientPlayNetworking.registerGlobalReceiver(SharedTrackerUpdateS2CPacket.TYPE, (payload, context) -> {
+			context.client().execute(() -> onTrackerUpdate(payload.update()));
 		});
 
 		// Очистка клиентского кеша при отключении от мира
@@ -116,6 +102,27 @@ public class ItemFlowMonitorClient implements ClientModInitializer {
 		ItemFlowMonitor.LOGGER.debug("Item Flow Monitor клиент инициализирован");
 	}
 
+	/** Применить обновление трекера от сервера */
+	private void onTrackerUpdate(TrackerUpdateS2CPacket payload) {
+		TrackerClientState.update(payload);
+		// Синхронизируем панель с данными от сервера
+		if (currentPanel != null) {
+			if (payload.active()) {
+				currentPanel.syncFromServer(
+					TrackerClientState.getMode(),
+					TrackerClientState.getPeriod(),
+					TrackerClientState.getRateMode(),
+					TrackerClientState.getTrackedItem()
+				);
+				// Панель могла вырасти — перепозиционируем, чтобы не наезжала на контейнер
+				repositionPanel();
+			} else {
+				// Сервер отклонил (лимит, трекер удалён) — возвращаем UI в OFF
+				currentPanel.syncDisabled();
+			}
+		}
+	}
+
 	/** Поддерживаемые экраны контейнеров-хранилищ (с учётом конфига) */
 	private boolean isStorageScreen(Minecraft client, Screen screen) {
 		IFMConfig cfg = IFMConfig.getInstance();
@@ -429,7 +436,10 @@ public class ItemFlowMonitorClient implements ClientModInitializer {
 			overlayY = guiTop + 4;
 		}
 
-		double rate = TrackerClientState.getRate();
+		// Между обновлениями сервера значение экстраполируется по наклону
+		var level = Minecraft.getInstance().level;
+		long clientTick = level != null ? level.getGameTime() : 0;
+		double rate = TrackerClientState.getDisplayRate(clientTick);
 		String periodLabel = TrackerClientState.getPeriod().getComponent().getString();
 		Item trackedItem = TrackerClientState.getTrackedItem();
 
@@ -464,15 +474,14 @@ public class ItemFlowMonitorClient implements ClientModInitializer {
 
 		// ETA тултип при наведении на оверлей
 		if (mouseX >= bgLeft && mouseX <= bgRight && mouseY >= bgTop && mouseY <= bgBottom) {
-			renderEtaTooltip(graphics, font, rate, mouseX, mouseY);
+			renderEtaTooltip(graphics, font, rate, TrackerClientState.getDisplayCount(clientTick), mouseX, mouseY);
 		}
 	}
 
 	/** Рендерит тултип с прогнозом времени до заполнения контейнера */
 	private void renderEtaTooltip(net.minecraft.client.gui.GuiGraphics graphics, net.minecraft.client.gui.Font font,
-								  double rate, int mouseX, int mouseY) {
+								  double rate, int current, int mouseX, int mouseY) {
 		int maxCap = TrackerClientState.getMaxCapacity();
-		int current = TrackerClientState.getCurrentCount();
 		int remaining = maxCap - current;
 
 		// Не показываем если rate=0, контейнер полон, или данные недоступны
@@ -15,10 +15,21 @@ import java.util.Map;
 /**
  * Клиентский кеш данных трекера, полученных от сервера.
  * Хранит кеш по BlockPos для мгновенного отображения при открытии сундука.
+ * Между обновлениями экстраполирует rate и заполненность по наклону и тику сервера.
  */
 public class TrackerClientState {
+	/** Максимальный горизонт экстраполяции (2 секунды) — дальше ждём свежих данных с сервера */
+	private static final long MAX_EXTRAPOLATION_TICKS = 40;
+	/**
+	 * Горизонт экстраполяции rate по наклону — один интервал обновлений сервера по умолчанию.
+	 * EMA сходится экспоненциально, прямая на большем горизонте проскакивает реальное значение.
+	 */
+	private static final long MAX_SLOPE_TICKS = 10;
+
 	private static boolean active = false;
 	private static double rate = 0;
+	private static double rateSlope = 0;
+	private static long serverTick = 0;
 	private static TrackingMode mode = TrackingMode.ALL;
 	private static TrackingPeriod period = TrackingPeriod.MINUTE;
 	private static RateMode rateMode = RateMode.PREDICTED;
@@ -41,6 +52,7 @@ public class TrackerClientState {
 		if (!active) {
 			cache.remove(packet.pos());
 			rate = 0;
+			rateSlope = 0;
 			trackedItem = null;
 			currentCount = 0;
 			maxCapacity = 0;
@@ -48,6 +60,8 @@ public class TrackerClientState {
 		}
 
 		rate = packet.rate();
+		rateSlope = packet.rateSlope();
+		serverTick = packet.serverTick();
 
 		TrackingMode[] modes = TrackingMode.values();
 		if (packet.modeOrdinal() >= 0 && packet.modeOrdinal() < modes.length) {
@@ -85,6 +99,7 @@ public class TrackerClientState {
 		if (cached == null) return false;
 		active = true;
 		rate = 0; // Rate покажем когда придёт актуальный S2C, иначе подскакивает
+		rateSlope = 0;
 		mode = cached.mode;
 		period = cached.period;
 		rateMode = cached.rateMode;
@@ -97,6 +112,7 @@ public class TrackerClientState {
 	public static void reset() {
 		active = false;
 		rate = 0;
+		rateSlope = 0;
 		trackedItem = null;
 		currentCount = 0;
 		maxCapacity = 0;
@@ -119,4 +135,23 @@ public class TrackerClientState {
 	public static Item getTrackedItem() { return trackedItem; }
 	public static int getCurrentCount() { return currentCount; }
 	public static int getMaxCapacity() { return maxCapacity; }
+
+	/** Тиков с момента расчёта последнего обновления на сервере (ограничено горизонтом экстраполяции) */
+	private static long ticksSinceUpdate(long clientTick) {
+		return Math.max(0, Math.min(clientTick - serverTick, MAX_EXTRAPOLATION_TICKS));
+	}
+
+	/** Rate для отображения: последнее значение сервера, продолженное по наклону не дальше MAX_SLOPE_TICKS */
+	public static double getDisplayRate(long clientTick) {
+		if (rateSlope == 0) return rate;
+		return Math.max(0, rate + rateSlope * Math.min(ticksSinceUpdate(clientTick), MAX_SLOPE_TICKS));
+	}
+
+	/** Заполненность для ETA: последнее значение сервера плюс ожидаемый приток по текущему rate */
+	public static int getDisplayCount(long clientTick) {
+		if (maxCapacity <= 0) return currentCount;
+		double perTick = getDisplayRate(clientTick) / period.getTicks();
+		long expected = currentCount + (long) (perTick * ticksSinceUpdate(clientTick));
+		return (int) Math.min(expected, maxCapacity);
+	}
 }
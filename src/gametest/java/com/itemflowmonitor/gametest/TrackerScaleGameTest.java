@@ -0,0 +1,232 @@
+package com.itemflowmonitor.gametest;
+
+import com.itemflowmonitor.config.IFMServerConfig;
+import com.itemflowmonitor.metrics.Phase;
+import com.itemflowmonitor.metrics.PhaseSnapshot;
+import com.itemflowmonitor.metrics.TickMetrics;
+import com.itemflowmonitor.network.PlayerSendBudget;
+import com.itemflowmonitor.network.TrackerNetworking;
+import com.itemflowmonitor.tracker.ContainerTracker;
+import com.itemflowmonitor.tracker.TrackerManager;
+import net.fabricmc.fabric.api.gametest.v1.GameTest;
+import net.minecraft.core.BlockPos;
+import net.minecraft.gametest.framework.GameTestHelper;
+import net.minecraft.gametest.framework.GameTestSequence;
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.MenuProvider;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Масштабный тест серверной части: 1k, 5k и 10k бочек с трекерами, в каждую идёт цепочка из двух хопперов.
+ * Фазы идут по очереди в одном тесте — замеры TickMetrics не смешиваются между масштабами.
+ * После фиксированного числа тиков проверяются верхние границы по инструментации мода:
+ * время тика (TickMetrics), прирост удерживаемой кучи за замер (MemoryMXBean после GC)
+ * и исходящий трафик зрителям (PlayerSendBudget).
+ * Запуск: ./gradlew runGameTest
+ */
+public class TrackerScaleGameTest {
+	private static final int[] SCALES = {1000, 5000, 10000};
+
+	/** Тики до начала замера: первые снимки observer'а и начальная синхронизация */
+	private static final int WARMUP_TICKS = 40;
+	/** Длительность замера (30 секунд) */
+	private static final int RUN_TICKS = 600;
+	/** Игроков, смотрящих в контейнеры с трекерами */
+	private static final int VIEWERS = 8;
+
+	/** Средняя стоимость тика мода на один трекер, мкс */
+	private static final double MAX_MEAN_MICROS_PER_TRACKER = 2.0;
+	/** p99 тика мода на каждую тысячу трекеров, мс */
+	private static final double MAX_P99_MILLIS_PER_THOUSAND = 2.5;
+	/** Прирост кучи за замер на трекер: ~80 событий истории и снимок observer'а, с большим запасом на шум GC */
+	private static final long MAX_RETAINED_BYTES_PER_TRACKER = 16 * 1024;
+
+	/** Фермы разных масштабов строятся далеко друг от друга и от площадки теста */
+	private static final int FARM_SPACING = 20000;
+	private static final int FARM_Y = 100;
+
+	private static final UUID OWNER = UUID.fromString("00000000-0000-0000-0000-0000000000f1");
+
+	@GameTest(maxTicks = 2400)
+	public void trackersScale(GameTestHelper helper) {
+		GameTestSequence sequence = helper.startSequence();
+		for (int i = 0; i < SCALES.length; i++) {
+			Farm farm = new Farm(helper, SCALES[i], new BlockPos(FARM_SPACING * (i + 1), FARM_Y, FARM_SPACING));
+			sequence.thenExecute(farm::build)
+					.thenIdle(WARMUP_TICKS)
+					.thenExecute(farm::startMeasuring)
+					.thenIdle(RUN_TICKS)
+					.thenExecute(farm::verify);
+		}
+		sequence.thenSucceed();
+	}
+
+	/** Одна ферма: квадрат столбиков «хоппер → хоппер → бочка» с трекером на бочке */
+	private static final class Farm {
+		private final GameTestHelper helper;
+		private final ServerLevel level;
+		private final int trackers;
+		private final BlockPos origin;
+		private final int side;
+		private final List<BlockPos> barrels = new ArrayList<>();
+		private final List<ServerPlayer> viewers = new ArrayList<>();
+		private boolean metricsWereEnabled;
+		/** Занятая куча после GC в начале замера */
+		private long heapAtStart;
+
+		Farm(GameTestHelper helper, int trackers, BlockPos origin) {
+			this.helper = helper;
+			this.level = helper.getLevel();
+			this.trackers = trackers;
+			this.origin = origin;
+			this.side = (int) Math.ceil(Math.sqrt(trackers));
+		}
+
+		void build() {
+			setChunksForced(true);
+			TrackerManager manager = TrackerManager.getInstance();
+			String dimension = level.dimension().identifier().toString();
+			long tick = level.getGameTime();
+			Item[] items = {Items.COBBLESTONE, Items.IRON_INGOT, Items.REDSTONE, Items.BONE_MEAL};
+
+			for (int i = 0; i < trackers; i++) {
+				BlockPos barrel = origin.offset(i % side, 0, i / side);
+				level.setBlock(barrel, Blocks.BARREL.defaultBlockState(), Block.UPDATE_CLIENTS);
+				level.setBlock(barrel.above(), Blocks.HOPPER.defaultBlockState(), Block.UPDATE_CLIENTS);
+				level.setBlock(barrel.above(2), Blocks.HOPPER.defaultBlockState(), Block.UPDATE_CLIENTS);
+				// Верхний хоппер заполнен целиком — поток на всё время замера
+				if (level.getBlockEntity(barrel.above(2)) instanceof HopperBlockEntity hopper) {
+					for (int slot = 0; slot < hopper.getContainerSize(); slot++) {
+						hopper.setItem(slot, new ItemStack(items[i % items.length], 64));
+					}
+				}
+
+				ContainerTracker tracker = manager.getOrCreate(barrel);
+				tracker.setDimension(dimension);
+				manager.setOwner(tracker, OWNER);
+				tracker.initStartTick(tick);
+				barrels.add(barrel);
+			}
+
+			// Зрители смотрят в разные бочки — отправки идут через бюджет, как у живых игроков.
+			// Зритель стоит над столбиком своей бочки: дальше дистанции взаимодействия stillValid закроет меню
+			for (int i = 0; i < VIEWERS; i++) {
+				BlockPos pos = barrels.get(i * barrels.size() / VIEWERS);
+				ServerPlayer player = helper.makeMockServerPlayerInLevel();
+				player.teleportTo(pos.getX() + 0.5, pos.getY() + 3, pos.getZ() + 0.5);
+				if (level.getBlockEntity(pos) instanceof MenuProvider menu) {
+					player.openMenu(menu);
+				}
+				manager.getTracker(pos).markViewerActive(tick);
+				manager.setViewer(player.getUUID(), pos);
+				viewers.add(player);
+			}
+		}
+
+		void startMeasuring() {
+			metricsWereEnabled = TickMetrics.isEnabled();
+			if (metricsWereEnabled) {
+				TickMetrics.reset();
+			} else {
+				TickMetrics.setEnabled(true);
+			}
+			heapAtStart = retainedHeap();
+		}
+
+		void verify() {
+			try {
+				TrackerManager manager = TrackerManager.getInstance();
+
+				long events = 0;
+				for (BlockPos pos : barrels) {
+					events += manager.getTracker(pos).getRecordedEvents();
+				}
+				// Хоппер переносит предмет раз в 8 тиков — события должны идти от каждой бочки
+				long expectedEvents = (long) trackers * RUN_TICKS / 8 / 2;
+				check(events >= expectedEvents, "записано событий: %d, ожидалось не меньше %d", events, expectedEvents);
+
+				PhaseSnapshot tick = TickMetrics.snapshot(Phase.TICK_TOTAL);
+				double meanMicrosPerTracker = tick.getMeanNanos() / 1000.0 / trackers;
+				check(meanMicrosPerTracker <= MAX_MEAN_MICROS_PER_TRACKER,
+						"средний тик %.2f мкс на трекер, предел %.2f", meanMicrosPerTracker, MAX_MEAN_MICROS_PER_TRACKER);
+				double p99Millis = tick.getP99Nanos() / 1e6;
+				double p99Limit = MAX_P99_MILLIS_PER_THOUSAND * trackers / 1000.0;
+				check(p99Millis <= p99Limit, "p99 тика %.2f мс, предел %.2f", p99Millis, p99Limit);
+
+				long retainedBytes = retainedHeap() - heapAtStart;
+				long retainedLimit = MAX_RETAINED_BYTES_PER_TRACKER * trackers;
+				check(retainedBytes <= retainedLimit, "куча выросла на %d байт, предел %d", retainedBytes, retainedLimit);
+
+				// Трафик каждого зрителя — не больше его бюджета (секунда ёмкости + пополнение за время фазы)
+				int maxBytesPerSecond = IFMServerConfig.getInstance().getMaxBytesPerSecond();
+				long totalBytes = 0;
+				for (ServerPlayer player : viewers) {
+					check(player.containerMenu != player.inventoryMenu, "у зрителя %s закрылось меню", player.getScoreboardName());
+					PlayerSendBudget budget = TrackerNetworking.getPlayerBudget(player.getUUID());
+					long sent = budget != null ? budget.getTotalBytes() : 0;
+					totalBytes += sent;
+					if (maxBytesPerSecond > 0) {
+						long limit = maxBytesPerSecond + (long) maxBytesPerSecond * (WARMUP_TICKS + RUN_TICKS) / 20;
+						check(sent <= limit, "зритель получил %d байт, бюджет %d", sent, limit);
+					}
+				}
+				check(totalBytes > 0, "зрители не получили ни одного обновления");
+			} finally {
+				tearDown();
+			}
+		}
+
+		/** Занятая куча после полной сборки — удерживаемое, а не ещё не собранный мусор */
+		private static long retainedHeap() {
+			for (int i = 0; i < 3; i++) {
+				System.gc();
+			}
+			return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+		}
+
+		private void check(boolean condition, String format, Object... args) {
+			helper.assertTrue(condition, Component.literal(trackers + " трекеров: " + String.format(format, args)));
+		}
+
+		/** Убрать трекеры и зрителей; блоки остаются, но их чанки выгружаются */
+		private void tearDown() {
+			if (!metricsWereEnabled) {
+				TickMetrics.setEnabled(false);
+			}
+			for (ServerPlayer player : viewers) {
+				player.closeContainer();
+				TrackerManager.getInstance().removeViewer(player.getUUID());
+				level.getServer().getPlayerList().remove(player);
+			}
+			for (BlockPos pos : barrels) {
+				TrackerManager.getInstance().remove(pos);
+				TrackerNetworking.clearCachedState(pos);
+			}
+			setChunksForced(false);
+		}
+
+		private void setChunksForced(boolean forced) {
+			int minChunkX = origin.getX() >> 4;
+			int minChunkZ = origin.getZ() >> 4;
+			int maxChunkX = (origin.getX() + side - 1) >> 4;
+			int maxChunkZ = (origin.getZ() + side - 1) >> 4;
+			for (int x = minChunkX; x <= maxChunkX; x++) {
+				for (int z = minChunkZ; z <= maxChunkZ; z++) {
+					level.setChunkForced(x, z, forced);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.itemflowmonitor;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.server.Bootstrap;
+
+/**
+ * Инициализация реестров Minecraft для бенчмарков (предметы, ItemStack) — без запуска сервера.
+ */
+public final class BenchmarkBootstrap {
+	private BenchmarkBootstrap() {}
+
+	public static void init() {
+		SharedConstants.tryDetectVersion();
+		Bootstrap.bootStrap();
+	}
+}
@@ -0,0 +1,63 @@
+package com.itemflowmonitor.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.FriendlyByteBuf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылка одного обновления N viewer'ам: кодирование на каждого получателя
+ * против однократного кодирования SharedTrackerUpdateS2CPacket с копированием байтов.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BroadcastEncodeBenchmark {
+	@Param({"1", "2", "8", "32"})
+	public int viewers;
+
+	private TrackerUpdateS2CPacket packet;
+	private FriendlyByteBuf buf;
+
+	@Setup
+	public void setup() {
+		packet = new TrackerUpdateS2CPacket(new BlockPos(120, 64, -340), true, 1234.5,
+				1, 0, 2, "minecraft:iron_ingot", 812, 1728, 0.25, 1_000_000L);
+		buf = new FriendlyByteBuf(Unpooled.buffer(256));
+	}
+
+	@Benchmark
+	public ByteBuf encodePerViewer() {
+		for (int i = 0; i < viewers; i++) {
+			buf.clear();
+			TrackerUpdateS2CPacket.CODEC.encode(buf, packet);
+		}
+		return buf;
+	}
+
+	@Benchmark
+	public ByteBuf encodeShared() {
+		SharedTrackerUpdateS2CPacket shared = SharedTrackerUpdateS2CPacket.encode(packet);
+		for (int i = 0; i < viewers; i++) {
+			buf.clear();
+			SharedTrackerUpdateS2CPacket.CODEC.encode(buf, shared);
+		}
+		return buf;
+	}
+}
@@ -0,0 +1,82 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.BenchmarkBootstrap;
+import com.itemflowmonitor.TrackingMode;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.SimpleContainer;
+import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение содержимого контейнера observer'ом: хоппер (5), сундук (27), двойной сундук (54)
+ * и максимальный допустимый размер (256). Половина слотов занята.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerObserverBenchmark {
+	@Param({"5", "27", "54", "256"})
+	public int slots;
+
+	private final ContainerObserver observer = ContainerObserver.getInstance();
+	private final BlockPos pos = BlockPos.ZERO;
+	private ContainerTracker tracker;
+	private SimpleContainer container;
+	private long currentTick;
+
+	@Setup(Level.Trial)
+	public void bootstrap() {
+		BenchmarkBootstrap.init();
+	}
+
+	@Setup(Level.Iteration)
+	public void fillContainer() {
+		container = new SimpleContainer(slots);
+		for (int i = 0; i < slots; i += 2) {
+			container.setItem(i, new ItemStack(i % 4 == 0 ? Items.IRON_INGOT : Items.COBBLESTONE, 16));
+		}
+		tracker = new ContainerTracker(pos);
+		tracker.setMode(TrackingMode.ALL);
+		observer.clear();
+		currentTick = 0;
+		// Первый снимок — база, дальше только сравнения
+		observer.observe(tracker, pos, container, currentTick);
+	}
+
+	@TearDown(Level.Iteration)
+	public void clear() {
+		observer.clear();
+	}
+
+	/** Ничего не изменилось — самый частый случай */
+	@Benchmark
+	public int unchanged() {
+		return observer.observe(tracker, pos, container, ++currentTick);
+	}
+
+	/** Хоппер положил предмет в первый слот */
+	@Benchmark
+	public int oneSlotChanged() {
+		ItemStack stack = container.getItem(0);
+		stack.setCount(stack.getCount() == 64 ? 1 : stack.getCount() + 1);
+		return observer.observe(tracker, pos, container, ++currentTick);
+	}
+}
@@ -0,0 +1,92 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.BenchmarkBootstrap;
+import com.itemflowmonitor.RateMode;
+import com.itemflowmonitor.TrackingMode;
+import com.itemflowmonitor.TrackingPeriod;
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * recordEvent и getRate в каждом RateMode на истории от 10 до 100 тыс. событий.
+ * История разложена по последним 50 минутам — в пределах MAX_EVENT_AGE, ничего не обрезается.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerTrackerBenchmark {
+	private static final long HISTORY_SPAN_TICKS = 60_000;
+	private static final long START_TICK = 1_000_000;
+
+	@Param({"10", "1000", "10000", "100000"})
+	public int historySize;
+
+	@Param({"ACTUAL", "AVERAGE", "PREDICTED"})
+	public RateMode rateMode;
+
+	private ContainerTracker tracker;
+	private long currentTick;
+	private Item[] items;
+
+	@Setup(Level.Trial)
+	public void bootstrap() {
+		BenchmarkBootstrap.init();
+		items = new Item[]{Items.IRON_INGOT, Items.COBBLESTONE, Items.REDSTONE, Items.OAK_LOG};
+	}
+
+	/** Свежая история на каждую итерацию — recordEvent не накапливает события между ними */
+	@Setup(Level.Iteration)
+	public void fillHistory() {
+		tracker = new ContainerTracker(BlockPos.ZERO);
+		tracker.setMode(TrackingMode.ALL);
+		tracker.setRateMode(rateMode);
+		tracker.setPeriod(TrackingPeriod.HOUR);
+
+		long firstTick = START_TICK - HISTORY_SPAN_TICKS;
+		List<ContainerTracker.ItemEvent> events = new ArrayList<>(historySize);
+		for (int i = 0; i < historySize; i++) {
+			long tick = firstTick + i * HISTORY_SPAN_TICKS / historySize;
+			events.add(new ContainerTracker.ItemEvent(tick, items[i % items.length], 1 + i % 8));
+		}
+		tracker.restoreState(firstTick, -1, -1, events);
+		currentTick = START_TICK;
+	}
+
+	@Benchmark
+	public double getRate() {
+		return tracker.getRate(++currentTick);
+	}
+
+	@Benchmark
+	public ContainerTracker recordEvent() {
+		tracker.recordEvent(++currentTick, items[(int) (currentTick & 3)], 1);
+		return tracker;
+	}
+
+	/** Типичный тик: событие, затем пересчёт для viewer'а */
+	@Benchmark
+	public double recordAndGetRate() {
+		tracker.recordEvent(++currentTick, items[(int) (currentTick & 3)], 1);
+		return tracker.getRate(currentTick);
+	}
+}
@@ -0,0 +1,103 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.BenchmarkBootstrap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.item.Items;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование и декодирование записи трекера: упаковка истории (PackedHistory) и NBT через кодек TrackerEntry.
+ * Размер упакованной истории — вторичные счётчики packHistory: packedBytes / packedEvents = байт на событие.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackerSavedDataBenchmark {
+	@Param({"100", "10000", "100000"})
+	public int historySize;
+
+	/** Шаг хоппера постоянный (8 тиков) или неравномерный — delta-of-delta кодирует их по-разному */
+	@Param({"true", "false"})
+	public boolean regularTicks;
+
+	private List<ContainerTracker.ItemEvent> events;
+	private PackedHistory.Packed packed;
+	private TrackerSavedData.TrackerEntry entry;
+	private Tag encoded;
+
+	@Setup
+	public void setup() {
+		BenchmarkBootstrap.init();
+		Item[] items = {Items.IRON_INGOT, Items.COBBLESTONE, Items.REDSTONE, Items.OAK_LOG};
+		events = new ArrayList<>(historySize);
+		long tick = 0;
+		for (int i = 0; i < historySize; i++) {
+			tick += regularTicks ? 8 : 1 + (i * 7919L) % 23;
+			events.add(new ContainerTracker.ItemEvent(tick, items[i % items.length], regularTicks ? 1 : 1 + i % 5));
+		}
+		packed = PackedHistory.encode(events);
+		entry = TrackerSavedData.toEntry(BlockPos.ZERO, 0, 0, 0, "minecraft:iron_ingot", 0, -1, packed,
+				UUID.randomUUID().toString(), "minecraft:overworld", false, 0, PackedHistory.Packed.EMPTY);
+		encoded = TrackerSavedData.TrackerEntry.CODEC.encodeStart(NbtOps.INSTANCE, entry).getOrThrow();
+	}
+
+	/** Объём упаковки: JMH суммирует оба счётчика по одним и тем же вызовам — их отношение точное */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class PackedSize {
+		public long packedBytes;
+		public long packedEvents;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			packedBytes = 0;
+			packedEvents = 0;
+		}
+	}
+
+	@Benchmark
+	public PackedHistory.Packed packHistory(PackedSize size) {
+		PackedHistory.Packed result = PackedHistory.encode(events);
+		size.packedBytes += result.data().length;
+		size.packedEvents += historySize;
+		return result;
+	}
+
+	@Benchmark
+	public List<ContainerTracker.ItemEvent> unpackHistory() {
+		return PackedHistory.decode(packed);
+	}
+
+	@Benchmark
+	public Tag encodeEntry() {
+		return TrackerSavedData.TrackerEntry.CODEC.encodeStart(NbtOps.INSTANCE, entry).getOrThrow();
+	}
+
+	@Benchmark
+	public TrackerSavedData.TrackerEntry decodeEntry() {
+		return TrackerSavedData.TrackerEntry.CODEC.parse(NbtOps.INSTANCE, encoded).getOrThrow();
+	}
+}
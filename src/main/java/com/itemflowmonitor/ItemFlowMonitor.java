@@ -1,16 +1,17 @@
 package com.itemflowmonitor;
 
+import com.itemflowmonitor.command.IFMCommands;
+import com.itemflowmonitor.config.IFMServerConfig;
+import com.itemflowmonitor.metrics.MetricsBean;
+import com.itemflowmonitor.metrics.PrometheusExporter;
+import com.itemflowmonitor.metrics.TickMetrics;
 import com.itemflowmonitor.network.TrackerNetworking;
-import com.itemflowmonitor.tracker.TrackerManager;
+import com.itemflowmonitor.tracker.TraceRecorder;
 import com.itemflowmonitor.tracker.TrackerSavedData;
+import com.itemflowmonitor.tracker.TrackerStorage;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
-import net.fabricmc.fabric.api.event.player.PlayerBlockBreakEvents;
-import net.minecraft.core.BlockPos;
-import net.minecraft.core.Direction;
-import net.minecraft.world.level.block.ChestBlock;
-import net.minecraft.world.level.block.state.properties.ChestType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -21,16 +22,27 @@ public class ItemFlowMonitor implements ModInitializer {
 	@Override
 	public void onInitialize() {
 		TrackerNetworking.init();
+		IFMCommands.register();
+		MetricsBean.register();
 		ServerTickEvents.END_SERVER_TICK.register(TrackerNetworking::tick);
 
 		// Загрузка трекеров при старте сервера
 		ServerLifecycleEvents.SERVER_STARTED.register(server -> {
-			TrackerSavedData.init(server);
+			TickMetrics.setEnabled(IFMServerConfig.getInstance().isMetricsEnabled());
+			TrackerStorage.init(server);
+			PrometheusExporter.start();
 		});
 
-		// Сохранение трекеров при остановке сервера (подстраховка)
+		// Сохранение трекеров вместе с миром — на серверном потоке только снимок
+		ServerLifecycleEvents.AFTER_SAVE.register((server, flush, force) -> {
+			TrackerStorage.save(server);
+		});
+
+		// Финальное сохранение трекеров при остановке сервера (до финального сохранения мира)
 		ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
-			TrackerSavedData.markDirty();
+			PrometheusExporter.stop();
+			TraceRecorder.getInstance().shutdown();
+			TrackerStorage.shutdown(server);
 		});
 
 		// Очистка ссылки после полной остановки
@@ -39,50 +51,6 @@ public class ItemFlowMonitor implements ModInitializer {
 			TrackerNetworking.clearAllCachedStates();
 		});
 
-		// Удаление/перенос трекера при разрушении контейнера
-		PlayerBlockBreakEvents.AFTER.register((world, player, pos, state, blockEntity) -> {
-			TrackerManager manager = TrackerManager.getInstance();
-			boolean changed = false;
-
-			if (state.getBlock() instanceof ChestBlock && state.hasProperty(ChestBlock.TYPE)) {
-				ChestType type = state.getValue(ChestBlock.TYPE);
-				if (type != ChestType.SINGLE) {
-					// Двойной сундук: определяем позицию второй половины
-					Direction facing = state.getValue(ChestBlock.FACING);
-					Direction connectedDir = (type == ChestType.LEFT)
-							? facing.getClockWise() : facing.getCounterClockWise();
-					BlockPos otherPos = pos.relative(connectedDir);
-
-					if (manager.hasTracker(pos)) {
-						// Трекер на сломанной половине → перенести на оставшуюся
-						manager.moveTracker(pos, otherPos);
-						TrackerNetworking.clearCachedState(pos);
-						changed = true;
-						LOGGER.debug("IFM: трекер перенесён {} → {} при разрушении половины сундука", pos, otherPos);
-					}
-					// Если трекер на otherPos — ничего не делаем, он остаётся на месте
-				} else {
-					// Одинарный сундук — просто удаляем
-					if (manager.hasTracker(pos)) {
-						manager.remove(pos);
-						TrackerNetworking.clearCachedState(pos);
-						changed = true;
-					}
-				}
-			} else {
-				// Не сундук — просто удаляем трекер
-				if (manager.hasTracker(pos)) {
-					manager.remove(pos);
-					TrackerNetworking.clearCachedState(pos);
-					changed = true;
-				}
-			}
-
-			if (changed) {
-				TrackerSavedData.markDirty();
-			}
-		});
-
 		LOGGER.info("Item Flow Monitor загружен!");
 	}
 }
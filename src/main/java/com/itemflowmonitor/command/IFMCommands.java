@@ -0,0 +1,340 @@
+package com.itemflowmonitor.command;
+
+import com.itemflowmonitor.config.IFMServerConfig;
+import com.itemflowmonitor.metrics.Phase;
+import com.itemflowmonitor.metrics.PhaseSnapshot;
+import com.itemflowmonitor.metrics.TickMetrics;
+import com.itemflowmonitor.metrics.TrackerCosts;
+import com.itemflowmonitor.network.TrackerNetworking;
+import com.itemflowmonitor.tracker.AreaStats;
+import com.itemflowmonitor.tracker.ContainerTracker;
+import com.itemflowmonitor.tracker.HistoryBudget;
+import com.itemflowmonitor.tracker.TraceRecorder;
+import com.itemflowmonitor.tracker.TrackerManager;
+import com.itemflowmonitor.tracker.TrackerSummaries;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.ChatFormatting;
+import net.minecraft.commands.Commands;
+import net.minecraft.commands.arguments.DimensionArgument;
+import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
+import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.ClickEvent;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.HoverEvent;
+import net.minecraft.network.chat.MutableComponent;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Серверные команды администратора: /ifm ...
+ * Доступны операторам (уровень gamemaster).
+ */
+public class IFMCommands {
+	/** Строк в /ifm perf по умолчанию и максимум */
+	private static final int DEFAULT_PERF_ENTRIES = 10;
+	private static final int MAX_PERF_ENTRIES = 50;
+	/** Строк в /ifm area и наибольший радиус запроса */
+	private static final int AREA_ENTRIES = 10;
+	private static final int MAX_AREA_RADIUS = 1024;
+
+	/** Регистрация команд */
+	public static void register() {
+		CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> dispatcher.register(
+				Commands.literal("ifm")
+						.requires(Commands.hasPermission(Commands.LEVEL_GAMEMASTERS))
+						.then(Commands.literal("status").executes(IFMCommands::status))
+						.then(Commands.literal("stats")
+								.executes(IFMCommands::stats)
+								.then(Commands.literal("enable").executes(context -> setMetrics(context, true)))
+								.then(Commands.literal("disable").executes(context -> setMetrics(context, false)))
+								.then(Commands.literal("reset").executes(context -> {
+									TickMetrics.reset();
+									context.getSource().sendSuccess(() -> Component.translatable("itemflowmonitor.command.stats.reset"), true);
+									return 1;
+								})))
+						.then(Commands.literal("perf")
+								.executes(context -> perf(context, DEFAULT_PERF_ENTRIES))
+								.then(Commands.argument("count", IntegerArgumentType.integer(1, MAX_PERF_ENTRIES))
+										.executes(context -> perf(context, IntegerArgumentType.getInteger(context, "count")))))
+						.then(Commands.literal("pause")
+								.then(Commands.argument("pos", BlockPosArgument.blockPos())
+										.executes(context -> pause(context, context.getSource().getLevel().dimension().identifier().toString()))
+										.then(Commands.argument("dimension", DimensionArgument.dimension())
+												.executes(context -> pause(context, dimensionArgument(context))))))
+						.then(Commands.literal("remove")
+								.then(Commands.argument("pos", BlockPosArgument.blockPos())
+										.executes(context -> remove(context, context.getSource().getLevel().dimension().identifier().toString()))
+										.then(Commands.argument("dimension", DimensionArgument.dimension())
+												.executes(context -> remove(context, dimensionArgument(context))))))
+						.then(Commands.literal("trace")
+								.then(Commands.literal("start")
+										.executes(context -> startTrace(context, TrackerManager.getInstance().getAllTrackers().values()))
+										.then(Commands.argument("pos", BlockPosArgument.blockPos())
+												.executes(context -> traceTracker(context, context.getSource().getLevel().dimension().identifier().toString()))
+												.then(Commands.argument("dimension", DimensionArgument.dimension())
+														.executes(context -> traceTracker(context, dimensionArgument(context))))))
+								.then(Commands.literal("stop").executes(IFMCommands::stopTrace)))
+						.then(Commands.literal("area")
+								.then(Commands.literal("radius")
+										.then(Commands.argument("radius", IntegerArgumentType.integer(1, MAX_AREA_RADIUS))
+												.executes(context -> areaRadius(context, BlockPos.containing(context.getSource().getPosition()),
+														context.getSource().getLevel().dimension().identifier().toString()))
+												.then(Commands.argument("center", BlockPosArgument.blockPos())
+														.executes(context -> areaRadius(context, BlockPosArgument.getBlockPos(context, "center"),
+																context.getSource().getLevel().dimension().identifier().toString()))
+														.then(Commands.argument("dimension", DimensionArgument.dimension())
+																.executes(context -> areaRadius(context, BlockPosArgument.getBlockPos(context, "center"),
+																		dimensionArgument(context)))))))
+								.then(Commands.literal("box")
+										.then(Commands.argument("from", BlockPosArgument.blockPos())
+												.then(Commands.argument("to", BlockPosArgument.blockPos())
+														.executes(context -> areaBox(context, context.getSource().getLevel().dimension().identifier().toString()))
+														.then(Commands.argument("dimension", DimensionArgument.dimension())
+																.executes(context -> areaBox(context, dimensionArgument(context))))))))
+		));
+	}
+
+	/** /ifm status — трекеры и память истории */
+	private static int status(CommandContext<CommandSourceStack> context) {
+		CommandSourceStack source = context.getSource();
+		TrackerManager manager = TrackerManager.getInstance();
+		HistoryBudget budget = HistoryBudget.getInstance();
+		HistoryBudget.Usage usage = budget.measure(manager);
+
+		// Счётчики состояний ведутся инкрементально — обходить все трекеры не нужно
+		TrackerSummaries.Snapshot summaries = manager.peekSummaries();
+		int total = summaries.size();
+		long budgetBytes = IFMServerConfig.getInstance().getHistoryBudgetBytes();
+
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.status.trackers",
+				total, summaries.active(), summaries.paused(), summaries.hibernated()), false);
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.status.history",
+				megabytes(usage.bytes()), budgetBytes > 0 ? megabytes(budgetBytes) : "∞",
+				usage.events(), usage.packed()), false);
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.status.evicted",
+				megabytes(budget.getEvictedBytes())), false);
+		return total;
+	}
+
+	/** /ifm stats — перцентили времени фаз за окно последних замеров */
+	private static int stats(CommandContext<CommandSourceStack> context) {
+		CommandSourceStack source = context.getSource();
+		if (!TickMetrics.isEnabled()) {
+			source.sendFailure(Component.translatable("itemflowmonitor.command.stats.off"));
+			return 0;
+		}
+
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.stats.header"), false);
+		int shown = 0;
+		for (Phase phase : Phase.values()) {
+			PhaseSnapshot snapshot = TickMetrics.snapshot(phase);
+			if (snapshot.getCount() == 0) continue;
+			long items = TickMetrics.getItems(phase);
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.stats.phase",
+					snapshot.getName(), micros(snapshot.getP50Nanos()), micros(snapshot.getP95Nanos()),
+					micros(snapshot.getP99Nanos()), micros(snapshot.getMaxNanos()),
+					snapshot.getCount(), items), false);
+			shown++;
+		}
+		if (shown == 0) {
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.stats.empty"), false);
+		}
+
+		Map<String, Long> bandwidth = TrackerNetworking.getPlayerBandwidth(source.getServer());
+		if (!bandwidth.isEmpty()) {
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.stats.bandwidth"), false);
+			bandwidth.forEach((player, bytes) -> source.sendSuccess(() -> Component.translatable(
+					"itemflowmonitor.command.stats.bandwidth.player", player, bytes), false));
+		}
+		return shown;
+	}
+
+	/** /ifm stats enable|disable — до перезапуска; постоянно — metricsEnabled в серверном конфиге */
+	private static int setMetrics(CommandContext<CommandSourceStack> context, boolean enabled) {
+		TickMetrics.setEnabled(enabled);
+		context.getSource().sendSuccess(() -> Component.translatable(enabled
+				? "itemflowmonitor.command.stats.enabled" : "itemflowmonitor.command.stats.disabled"), true);
+		return 1;
+	}
+
+	/** /ifm perf [n] — самые дорогие трекеры за последнее окно, с кнопками паузы и удаления */
+	private static int perf(CommandContext<CommandSourceStack> context, int limit) {
+		CommandSourceStack source = context.getSource();
+		if (!TickMetrics.isEnabled()) {
+			source.sendFailure(Component.translatable("itemflowmonitor.command.stats.off"));
+			return 0;
+		}
+		TrackerCosts costs = TrackerCosts.getInstance();
+		if (!costs.hasWindow()) {
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.perf.empty",
+					TrackerCosts.WINDOW_TICKS / 20), false);
+			return 0;
+		}
+
+		List<TrackerCosts.Report> reports = costs.top(TrackerManager.getInstance(), limit);
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.perf.header",
+				TrackerCosts.WINDOW_TICKS / 20), false);
+		for (int i = 0; i < reports.size(); i++) {
+			TrackerCosts.Report report = reports.get(i);
+			BlockPos pos = report.pos();
+			MutableComponent line = Component.translatable("itemflowmonitor.command.perf.entry",
+					i + 1, pos.getX(), pos.getY(), pos.getZ(), report.dimension(),
+					String.format("%.1f", report.cpuMicrosPerSecond()),
+					String.format("%.1f", report.eventsPerSecond()),
+					report.historyEvents(), String.format("%.1f", report.historyBytes() / 1024.0),
+					Math.round(report.bytesPerSecond()));
+			if (report.paused()) {
+				line.append(Component.translatable("itemflowmonitor.command.perf.paused").withStyle(ChatFormatting.GRAY));
+			} else {
+				line.append(" ").append(actionButton("pause", report, ChatFormatting.YELLOW));
+			}
+			line.append(" ").append(actionButton("remove", report, ChatFormatting.RED));
+			source.sendSuccess(() -> line, false);
+		}
+		return reports.size();
+	}
+
+	/** Кнопка в строке отчёта: клик выполняет /ifm pause|remove с координатами и измерением трекера */
+	private static MutableComponent actionButton(String action, TrackerCosts.Report report, ChatFormatting color) {
+		BlockPos pos = report.pos();
+		String command = "/ifm " + action + " " + pos.getX() + " " + pos.getY() + " " + pos.getZ() + " " + report.dimension();
+		return Component.translatable("itemflowmonitor.command.perf." + action).withStyle(style -> style
+				.withColor(color)
+				.withClickEvent(new ClickEvent.RunCommand(command))
+				.withHoverEvent(new HoverEvent.ShowText(Component.translatable("itemflowmonitor.command.perf." + action + ".hover"))));
+	}
+
+	/** /ifm pause x y z [dimension] — пауза до следующего открытия контейнера */
+	private static int pause(CommandContext<CommandSourceStack> context, String dimension) {
+		BlockPos pos = BlockPosArgument.getBlockPos(context, "pos");
+		ContainerTracker tracker = findTracker(context, pos, dimension);
+		if (tracker == null) return 0;
+		// Открытый контейнер снимет паузу на следующем тике — не сообщаем об успехе, которого не будет
+		if (TrackerManager.getInstance().hasViewers(pos)) {
+			context.getSource().sendFailure(Component.translatable("itemflowmonitor.command.tracker.has_viewers",
+					pos.getX(), pos.getY(), pos.getZ(), dimension));
+			return 0;
+		}
+		TrackerNetworking.pauseTracker(tracker);
+		context.getSource().sendSuccess(() -> Component.translatable("itemflowmonitor.command.tracker.paused",
+				pos.getX(), pos.getY(), pos.getZ(), dimension), true);
+		return 1;
+	}
+
+	/** /ifm remove x y z [dimension] — удалить трекер, как при разрушении контейнера */
+	private static int remove(CommandContext<CommandSourceStack> context, String dimension) {
+		BlockPos pos = BlockPosArgument.getBlockPos(context, "pos");
+		if (findTracker(context, pos, dimension) == null) return 0;
+		TrackerManager.getInstance().remove(pos);
+		TrackerNetworking.clearCachedState(pos);
+		context.getSource().sendSuccess(() -> Component.translatable("itemflowmonitor.command.tracker.removed",
+				pos.getX(), pos.getY(), pos.getZ(), dimension), true);
+		return 1;
+	}
+
+	/** /ifm trace start x y z [dimension] — добавить один трекер в трассу */
+	private static int traceTracker(CommandContext<CommandSourceStack> context, String dimension) {
+		BlockPos pos = BlockPosArgument.getBlockPos(context, "pos");
+		ContainerTracker tracker = findTracker(context, pos, dimension);
+		if (tracker == null) return 0;
+		return startTrace(context, List.of(tracker));
+	}
+
+	/** /ifm trace start — начать запись трассы (или дополнить идущую) трекерами */
+	private static int startTrace(CommandContext<CommandSourceStack> context, Collection<ContainerTracker> trackers) {
+		CommandSourceStack source = context.getSource();
+		TraceRecorder recorder = TraceRecorder.getInstance();
+		int added;
+		try {
+			added = recorder.start(source.getServer(), trackers);
+		} catch (IOException e) {
+			source.sendFailure(Component.translatable("itemflowmonitor.command.trace.failed", e.getMessage()));
+			return 0;
+		}
+		String file = recorder.getFile().getFileName().toString();
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.trace.started", added, file), true);
+		return added;
+	}
+
+	/** /ifm trace stop — закрыть трассу; воспроизведение — ./gradlew :core:replay */
+	private static int stopTrace(CommandContext<CommandSourceStack> context) {
+		CommandSourceStack source = context.getSource();
+		TraceRecorder.Result result = TraceRecorder.getInstance().stop();
+		if (result == null) {
+			source.sendFailure(Component.translatable("itemflowmonitor.command.trace.not_running"));
+			return 0;
+		}
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.trace.stopped",
+				result.file().getFileName().toString(), result.trackers(), result.observations(),
+				String.format("%.1f", result.bytes() / 1024.0)), true);
+		return 1;
+	}
+
+	/** /ifm area radius r [x y z [dimension]] — трекеры в радиусе и их суммарный поток */
+	private static int areaRadius(CommandContext<CommandSourceStack> context, BlockPos center, String dimension) {
+		int radius = IntegerArgumentType.getInteger(context, "radius");
+		return area(context, TrackerManager.getInstance().getTrackersInRadius(dimension, center, radius));
+	}
+
+	/** /ifm area box x1 y1 z1 x2 y2 z2 [dimension] — трекеры в параллелепипеде и их суммарный поток */
+	private static int areaBox(CommandContext<CommandSourceStack> context, String dimension) {
+		BlockPos from = BlockPosArgument.getBlockPos(context, "from");
+		BlockPos to = BlockPosArgument.getBlockPos(context, "to");
+		return area(context, TrackerManager.getInstance().getTrackersInBox(dimension, from, to));
+	}
+
+	private static int area(CommandContext<CommandSourceStack> context, List<ContainerTracker> trackers) {
+		CommandSourceStack source = context.getSource();
+		if (trackers.isEmpty()) {
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.area.empty"), false);
+			return 0;
+		}
+
+		AreaStats stats = AreaStats.of(trackers, source.getServer().overworld().getGameTime());
+		source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.area.header",
+				trackers.size(), String.format("%.1f", stats.itemsPerMinute())), false);
+		int shown = Math.min(AREA_ENTRIES, stats.entries().size());
+		for (int i = 0; i < shown; i++) {
+			AreaStats.Entry entry = stats.entries().get(i);
+			BlockPos pos = entry.tracker().getPos();
+			Component line = Component.translatable("itemflowmonitor.command.area.entry",
+					i + 1, pos.getX(), pos.getY(), pos.getZ(), String.format("%.1f", entry.itemsPerMinute()));
+			source.sendSuccess(() -> line, false);
+		}
+		if (stats.entries().size() > shown) {
+			source.sendSuccess(() -> Component.translatable("itemflowmonitor.command.area.more",
+					stats.entries().size() - shown), false);
+		}
+		return trackers.size();
+	}
+
+	/** Трекер на позиции в указанном измерении; иначе сообщение об ошибке и null */
+	private static ContainerTracker findTracker(CommandContext<CommandSourceStack> context, BlockPos pos, String dimension) {
+		ContainerTracker tracker = TrackerManager.getInstance().getTracker(pos);
+		if (tracker == null || !tracker.getDimension().equals(dimension)) {
+			context.getSource().sendFailure(Component.translatable("itemflowmonitor.command.tracker.not_found",
+					pos.getX(), pos.getY(), pos.getZ(), dimension));
+			return null;
+		}
+		return tracker;
+	}
+
+	private static String dimensionArgument(CommandContext<CommandSourceStack> context) throws CommandSyntaxException {
+		return DimensionArgument.getDimension(context, "dimension").dimension().identifier().toString();
+	}
+
+	private static String micros(long nanos) {
+		return String.format("%.1f", nanos / 1000.0);
+	}
+
+	private static String megabytes(long bytes) {
+		return String.format("%.1f", bytes / (1024.0 * 1024.0));
+	}
+}
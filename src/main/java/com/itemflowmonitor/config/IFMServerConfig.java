@@ -0,0 +1,138 @@
+package com.itemflowmonitor.config;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.itemflowmonitor.ItemFlowMonitor;
+import net.fabricmc.loader.api.FabricLoader;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Серверная конфигурация мода — частота обновлений и лимиты.
+ * Хранится в config/itemflowmonitor-server.json, загружается при первом обращении.
+ */
+public class IFMServerConfig {
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	private static final Path CONFIG_PATH = FabricLoader.getInstance()
+			.getConfigDir().resolve("itemflowmonitor-server.json");
+
+	/** Единственный экземпляр конфига */
+	private static IFMServerConfig instance;
+
+	/** Минимальный интервал между обновлениями одного контейнера, в тиках (клиент экстраполирует между ними) */
+	private int updateIntervalTicks = 10;
+
+	/** Исходящий бюджет на игрока, байт/с (0 — без ограничения) */
+	private int maxBytesPerSecond = 8192;
+
+	/** Исходящий бюджет на игрока, обновлений/с (0 — без ограничения) */
+	private int maxUpdatesPerSecond = 40;
+
+	/** Через сколько тиков без viewer'ов история трекера выгружается на диск (0 — не выгружать) */
+	private int hibernateAfterTicks = 36000;
+
+	/** Бюджет памяти истории всех трекеров, МБ (0 — без ограничения) */
+	private int historyBudgetMb = 64;
+
+	/** Бюджет памяти истории одного трекера, КБ (0 — без ограничения) */
+	private int trackerHistoryLimitKb = 1024;
+
+	/** Замер времени фаз тика и хранилища (/ifm stats, JMX); выключен — без накладных расходов */
+	private boolean metricsEnabled = false;
+
+	/** Порт HTTP-эндпоинта /metrics в формате OpenMetrics (0 — выключен) */
+	private int metricsHttpPort = 0;
+
+	/** Адрес, на котором слушает эндпоинт метрик (по умолчанию только локально) */
+	private String metricsHttpAddress = "127.0.0.1";
+
+	private IFMServerConfig() {}
+
+	/** Получить экземпляр конфига (lazy-load) */
+	public static IFMServerConfig getInstance() {
+		if (instance == null) {
+			instance = load();
+		}
+		return instance;
+	}
+
+	public int getUpdateIntervalTicks() {
+		return clamp(updateIntervalTicks, 1, 200);
+	}
+
+	public int getMaxBytesPerSecond() {
+		return Math.max(0, maxBytesPerSecond);
+	}
+
+	public int getMaxUpdatesPerSecond() {
+		return Math.max(0, maxUpdatesPerSecond);
+	}
+
+	public int getHibernateAfterTicks() {
+		return Math.max(0, hibernateAfterTicks);
+	}
+
+	public long getHistoryBudgetBytes() {
+		return Math.max(0, historyBudgetMb) * 1024L * 1024L;
+	}
+
+	public long getTrackerHistoryLimitBytes() {
+		return Math.max(0, trackerHistoryLimitKb) * 1024L;
+	}
+
+	public boolean isMetricsEnabled() {
+		return metricsEnabled;
+	}
+
+	public int getMetricsHttpPort() {
+		return clamp(metricsHttpPort, 0, 65535);
+	}
+
+	public String getMetricsHttpAddress() {
+		return metricsHttpAddress == null || metricsHttpAddress.isBlank() ? "127.0.0.1" : metricsHttpAddress;
+	}
+
+	private static int clamp(int value, int min, int max) {
+		return Math.max(min, Math.min(max, value));
+	}
+
+	/** Загрузка конфига из файла или создание дефолтного */
+	private static IFMServerConfig load() {
+		if (Files.exists(CONFIG_PATH)) {
+			try {
+				String json = Files.readString(CONFIG_PATH);
+				IFMServerConfig config = GSON.fromJson(json, IFMServerConfig.class);
+				if (config != null) {
+					// Сохраняем обратно — в файл попадут новые ключи с дефолтами
+					config.save();
+					ItemFlowMonitor.LOGGER.debug("IFM серверный конфиг загружен из {}", CONFIG_PATH);
+					return config;
+				}
+			} catch (Exception e) {
+				ItemFlowMonitor.LOGGER.warn("Не удалось прочитать серверный IFM конфиг, используем дефолты", e);
+			}
+		}
+
+		// Файла нет или ошибка — создаём дефолтный и сохраняем
+		IFMServerConfig config = new IFMServerConfig();
+		config.save();
+		return config;
+	}
+
+	/** Сохранение конфига в файл */
+	public void save() {
+		try {
+			Files.createDirectories(CONFIG_PATH.getParent());
+			Files.writeString(CONFIG_PATH, GSON.toJson(this));
+		} catch (IOException e) {
+			ItemFlowMonitor.LOGGER.error("Не удалось сохранить серверный IFM конфиг", e);
+		}
+	}
+
+	/** Перезагрузка конфига (сброс кеша) */
+	public static void reload() {
+		instance = null;
+	}
+}
@@ -0,0 +1,76 @@
+package com.itemflowmonitor.metrics;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.network.TrackerNetworking;
+import com.itemflowmonitor.tracker.TrackerManager;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Реализация MXBean поверх TickMetrics и снимка сводок трекеров. Регистрируется один раз на JVM —
+ * интегрированный сервер может перезапускаться в том же процессе.
+ */
+public class MetricsBean implements MetricsMXBean {
+	private static final String OBJECT_NAME = "com.itemflowmonitor:type=Metrics";
+
+	private MetricsBean() {}
+
+	/** Зарегистрировать MXBean в платформенном MBeanServer (повторный вызов — без эффекта) */
+	public static void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsBean(), name);
+			}
+		} catch (JMException | SecurityException e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: не удалось зарегистрировать JMX-метрики: {}", e.getMessage());
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		return TickMetrics.isEnabled();
+	}
+
+	@Override
+	public void setEnabled(boolean enabled) {
+		TickMetrics.setEnabled(enabled);
+	}
+
+	@Override
+	public List<PhaseSnapshot> getPhases() {
+		return TickMetrics.snapshot();
+	}
+
+	@Override
+	public double getTickMeanMicros() {
+		return TickMetrics.snapshot(Phase.TICK_TOTAL).getMeanNanos() / 1000.0;
+	}
+
+	@Override
+	public double getTickP99Micros() {
+		return TickMetrics.snapshot(Phase.TICK_TOTAL).getP99Nanos() / 1000.0;
+	}
+
+	@Override
+	public Map<String, Long> getPlayerBytesPerSecond() {
+		return TrackerNetworking.getPublishedBandwidth();
+	}
+
+	@Override
+	public int getTrackerCount() {
+		// JMX вызывает с собственного потока — только опубликованный снимок
+		return TrackerManager.getInstance().getSummaries().size();
+	}
+
+	@Override
+	public void reset() {
+		TickMetrics.reset();
+	}
+}
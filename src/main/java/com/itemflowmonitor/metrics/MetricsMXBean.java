@@ -0,0 +1,30 @@
+package com.itemflowmonitor.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JMX-интерфейс метрик: com.itemflowmonitor:type=Metrics (jconsole, VisualVM, JMX-экспортёры).
+ */
+public interface MetricsMXBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/** Перцентили всех фаз за окно последних замеров */
+	List<PhaseSnapshot> getPhases();
+
+	/** Среднее время всего тика мода за окно, мкс */
+	double getTickMeanMicros();
+
+	/** p99 всего тика мода за окно, мкс */
+	double getTickP99Micros();
+
+	/** Исходящая полоса по игрокам за последнюю секунду: имя → байт/с */
+	Map<String, Long> getPlayerBytesPerSecond();
+
+	/** Количество трекеров по последнему опубликованному снимку сводок */
+	int getTrackerCount();
+
+	void reset();
+}
@@ -0,0 +1,39 @@
+package com.itemflowmonitor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR: сравнение содержимого одного контейнера observer'ом.
+ * Создаётся только при активной записи с включённым событием — иначе сканирование не аллоцирует лишнего.
+ */
+@Name("itemflowmonitor.ObserverScan")
+@Label("Observer Scan")
+@Category({"ItemFlowMonitor", "Tracker"})
+@Description("Container contents compared with the previous snapshot")
+@StackTrace(false)
+public class ObserverScanEvent extends jdk.jfr.Event {
+	public static final EventType TYPE = EventType.getEventType(ObserverScanEvent.class);
+
+	@Label("X")
+	public int x;
+
+	@Label("Y")
+	public int y;
+
+	@Label("Z")
+	public int z;
+
+	@Label("Dimension")
+	public String dimension;
+
+	@Label("Container Size")
+	public int containerSize;
+
+	@Label("Slots Changed")
+	public int slotsChanged;
+}
@@ -0,0 +1,40 @@
+package com.itemflowmonitor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR: отправка обновления трекера одному или нескольким игрокам */
+@Name("itemflowmonitor.PacketSend")
+@Label("Tracker Update Send")
+@Category({"ItemFlowMonitor", "Network"})
+@Description("Tracker update packet sent to its recipients")
+@StackTrace(false)
+public class PacketSendEvent extends jdk.jfr.Event {
+	public static final EventType TYPE = EventType.getEventType(PacketSendEvent.class);
+
+	@Label("X")
+	public int x;
+
+	@Label("Y")
+	public int y;
+
+	@Label("Z")
+	public int z;
+
+	@Label("Bytes")
+	@Description("Estimated payload size per recipient")
+	@DataAmount
+	public int bytes;
+
+	@Label("Recipients")
+	public int recipients;
+
+	@Label("Shared Encoding")
+	@Description("Payload encoded once and copied to every recipient")
+	public boolean shared;
+}
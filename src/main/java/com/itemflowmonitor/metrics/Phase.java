@@ -0,0 +1,34 @@
+package com.itemflowmonitor.metrics;
+
+/**
+ * Измеряемые фазы работы мода.
+ * Фазы тика — на серверном потоке, STORAGE_WRITE — в фоновом потоке хранилища.
+ */
+public enum Phase {
+	/** Весь TrackerNetworking.tick */
+	TICK_TOTAL,
+	/** Сравнение содержимого контейнеров (ContainerObserver.tick) */
+	OBSERVER,
+	/** Ghost-check и валидация блоков */
+	GHOST_CHECK,
+	/** Проверка бюджета памяти истории */
+	HISTORY_BUDGET,
+	/** Группировка viewer'ов по контейнерам */
+	VIEWER_GROUPING,
+	/** Расчёт rate (getRate + следующий тик изменения) */
+	RATE_EVALUATION,
+	/** Сборка и отправка пакетов обновления */
+	PACKET_SEND,
+	/** Отложенные обновления и начальная синхронизация в пределах бюджета */
+	BUDGET_DRAIN,
+	/** Публикация снимка сводок трекеров для других потоков */
+	SUMMARY_PUBLISH,
+	/** Загрузка трекеров при старте сервера */
+	STORAGE_LOAD,
+	/** Снимок для сохранения на серверном потоке */
+	STORAGE_SNAPSHOT,
+	/** Упаковка и запись регионов в фоновом потоке */
+	STORAGE_WRITE,
+	/** Пробуждение трекера из холодного хранилища (ожидание чтения) */
+	STORAGE_WAKE
+}
@@ -0,0 +1,35 @@
+package com.itemflowmonitor.metrics;
+
+/**
+ * Статистика одной фазы по окну последних замеров.
+ * Геттеры в стиле JavaBeans — MXBean отображает объект в CompositeData (только чтение).
+ */
+public class PhaseSnapshot {
+	private final String name;
+	private final long count;
+	private final long meanNanos;
+	private final long p50Nanos;
+	private final long p95Nanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	public PhaseSnapshot(String name, long count, long meanNanos, long p50Nanos,
+						 long p95Nanos, long p99Nanos, long maxNanos) {
+		this.name = name;
+		this.count = count;
+		this.meanNanos = meanNanos;
+		this.p50Nanos = p50Nanos;
+		this.p95Nanos = p95Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public String getName() { return name; }
+	/** Всего замеров с момента сброса */
+	public long getCount() { return count; }
+	public long getMeanNanos() { return meanNanos; }
+	public long getP50Nanos() { return p50Nanos; }
+	public long getP95Nanos() { return p95Nanos; }
+	public long getP99Nanos() { return p99Nanos; }
+	public long getMaxNanos() { return maxNanos; }
+}
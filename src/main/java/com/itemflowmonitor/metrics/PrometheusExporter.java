@@ -0,0 +1,212 @@
+package com.itemflowmonitor.metrics;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.config.IFMServerConfig;
+import com.itemflowmonitor.network.TrackerNetworking;
+import com.itemflowmonitor.tracker.TrackerManager;
+import com.itemflowmonitor.tracker.TrackerSummaries;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Эндпоинт GET /metrics в текстовом формате OpenMetrics (Prometheus).
+ * Трекеры берутся из снимка сводок TrackerManager.getSummaries(); фазы тика серверный поток раз в
+ * PUBLISH_INTERVAL_TICKS собирает в неизменяемый снимок и публикует через volatile-поле.
+ * Запросы обслуживаются на виртуальных потоках и читают только опубликованные снимки — без блокировок
+ * и без обращения к трекерам. Выключен, пока в конфиге не задан metricsHttpPort.
+ */
+public class PrometheusExporter {
+	/** Период публикации снимка фаз: раз в секунду — чаще, чем Prometheus опрашивает, и дешевле, чем каждый тик */
+	private static final int PUBLISH_INTERVAL_TICKS = 20;
+	private static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+	private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+	private record PhaseSample(String phase, PhaseSnapshot snapshot, long totalNanos) {}
+
+	private record Snapshot(List<PhaseSample> phases) {}
+
+	private static HttpServer httpServer;
+	private static ExecutorService executor;
+
+	/** Последний опубликованный снимок фаз (null — ещё не публиковался) */
+	private static volatile Snapshot snapshot;
+
+	/** Запустить эндпоинт, если он включён в конфиге */
+	public static void start() {
+		IFMServerConfig config = IFMServerConfig.getInstance();
+		int port = config.getMetricsHttpPort();
+		if (port == 0 || httpServer != null) return;
+		try {
+			HttpServer server = HttpServer.create(new InetSocketAddress(config.getMetricsHttpAddress(), port), 0);
+			executor = Executors.newVirtualThreadPerTaskExecutor();
+			server.setExecutor(executor);
+			server.createContext("/metrics", PrometheusExporter::handle);
+			server.start();
+			httpServer = server;
+			ItemFlowMonitor.LOGGER.info("IFM: метрики OpenMetrics доступны на http://{}:{}/metrics",
+					config.getMetricsHttpAddress(), port);
+		} catch (IOException | IllegalArgumentException e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: не удалось запустить эндпоинт метрик на порту {}: {}", port, e.getMessage());
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+
+	/** Остановить эндпоинт при остановке сервера */
+	public static void stop() {
+		if (httpServer == null) return;
+		httpServer.stop(0);
+		httpServer = null;
+		executor.shutdownNow();
+		executor = null;
+		snapshot = null;
+	}
+
+	/** Эндпоинт запущен — сводки трекеров нужно держать свежими (серверный поток) */
+	public static boolean isRunning() {
+		return httpServer != null;
+	}
+
+	/** Вызывается каждый тик на серверном потоке — публикует снимок фаз раз в PUBLISH_INTERVAL_TICKS */
+	public static void tick(long currentTick) {
+		if (httpServer == null || currentTick % PUBLISH_INTERVAL_TICKS != 0) return;
+
+		List<PhaseSample> phases = new ArrayList<>();
+		if (TickMetrics.isEnabled()) {
+			for (Phase phase : Phase.values()) {
+				phases.add(new PhaseSample(phase.name().toLowerCase(Locale.ROOT),
+						TickMetrics.snapshot(phase), TickMetrics.getTotalNanos(phase)));
+			}
+		}
+
+		snapshot = new Snapshot(List.copyOf(phases));
+	}
+
+	private static void handle(HttpExchange exchange) throws IOException {
+		try {
+			if (!"GET".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			byte[] body = render(snapshot, TrackerManager.getInstance().getSummaries()).getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/** Текст OpenMetrics по снимкам (выполняется на потоке запроса) */
+	private static String render(Snapshot current, TrackerSummaries.Snapshot summaries) {
+		StringBuilder out = new StringBuilder(4096);
+		if (current == null || summaries.tick() < 0) {
+			return out.append("# EOF\n").toString();
+		}
+		List<TrackerSummaries.Summary> trackers = summaries.list();
+
+		family(out, "ifm_snapshot_tick", "gauge", "Server game time of the published snapshot");
+		out.append("ifm_snapshot_tick ").append(summaries.tick()).append('\n');
+
+		family(out, "ifm_trackers", "gauge", "Trackers by state");
+		out.append("ifm_trackers{state=\"active\"} ").append(summaries.active()).append('\n');
+		out.append("ifm_trackers{state=\"paused\"} ").append(summaries.paused()).append('\n');
+		out.append("ifm_trackers{state=\"hibernated\"} ").append(summaries.hibernated()).append('\n');
+
+		family(out, "ifm_tracker_rate", "gauge", "Items per tracker period as shown in the overlay");
+		for (TrackerSummaries.Summary sample : trackers) {
+			out.append("ifm_tracker_rate");
+			labels(out, sample, true);
+			out.append(' ').append(sample.rate()).append('\n');
+		}
+
+		family(out, "ifm_tracker_items", "gauge", "Items stored in the tracked container");
+		for (TrackerSummaries.Summary sample : trackers) {
+			if (sample.fill() == null) continue;
+			out.append("ifm_tracker_items");
+			labels(out, sample, false);
+			out.append(' ').append(sample.fill().items()).append('\n');
+		}
+
+		family(out, "ifm_tracker_slots_used", "gauge", "Non-empty slots of the tracked container");
+		for (TrackerSummaries.Summary sample : trackers) {
+			if (sample.fill() == null) continue;
+			out.append("ifm_tracker_slots_used");
+			labels(out, sample, false);
+			out.append(' ').append(sample.fill().usedSlots()).append('\n');
+		}
+
+		family(out, "ifm_tracker_slots", "gauge", "Total slots of the tracked container");
+		for (TrackerSummaries.Summary sample : trackers) {
+			if (sample.fill() == null) continue;
+			out.append("ifm_tracker_slots");
+			labels(out, sample, false);
+			out.append(' ').append(sample.fill().slots()).append('\n');
+		}
+
+		Map<String, Long> bandwidth = TrackerNetworking.getPublishedBandwidth();
+		if (!bandwidth.isEmpty()) {
+			family(out, "ifm_player_bytes_per_second", "gauge", "Tracker update bytes sent to each player over the last second");
+			bandwidth.forEach((player, bytes) -> out.append("ifm_player_bytes_per_second{player=\"")
+					.append(escape(player)).append("\"} ").append(bytes).append('\n'));
+		}
+
+		if (!current.phases().isEmpty()) {
+			family(out, "ifm_phase_seconds", "summary", "Time spent in each mod phase over the recent window");
+			for (PhaseSample phase : current.phases()) {
+				PhaseSnapshot stats = phase.snapshot();
+				long[] values = {stats.getP50Nanos(), stats.getP95Nanos(), stats.getP99Nanos()};
+				for (int i = 0; i < QUANTILES.length; i++) {
+					out.append("ifm_phase_seconds{phase=\"").append(phase.phase())
+							.append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+							.append(values[i] / 1e9).append('\n');
+				}
+				out.append("ifm_phase_seconds_sum{phase=\"").append(phase.phase()).append("\"} ")
+						.append(phase.totalNanos() / 1e9).append('\n');
+				out.append("ifm_phase_seconds_count{phase=\"").append(phase.phase()).append("\"} ")
+						.append(stats.getCount()).append('\n');
+			}
+		}
+
+		return out.append("# EOF\n").toString();
+	}
+
+	private static void family(StringBuilder out, String name, String type, String help) {
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+	}
+
+	/** Метки трекера; настройки расчёта — только для rate */
+	private static void labels(StringBuilder out, TrackerSummaries.Summary sample, boolean rateLabels) {
+		out.append("{dimension=\"").append(escape(sample.dimension()))
+				.append("\",x=\"").append(sample.pos().getX())
+				.append("\",y=\"").append(sample.pos().getY())
+				.append("\",z=\"").append(sample.pos().getZ()).append('"');
+		if (rateLabels) {
+			out.append(",mode=\"").append(sample.mode().name().toLowerCase(Locale.ROOT))
+					.append("\",rate_mode=\"").append(sample.rateMode().name().toLowerCase(Locale.ROOT))
+					.append("\",period=\"").append(sample.period().name().toLowerCase(Locale.ROOT))
+					.append("\",item=\"").append(escape(sample.item())).append('"');
+		}
+		out.append('}');
+	}
+
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,39 @@
+package com.itemflowmonitor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR: расчёт rate трекера — проход по буферу событий */
+@Name("itemflowmonitor.RateComputation")
+@Label("Rate Computation")
+@Category({"ItemFlowMonitor", "Tracker"})
+@Description("Tracker rate computed from its event history")
+@StackTrace(false)
+public class RateComputationEvent extends jdk.jfr.Event {
+	public static final EventType TYPE = EventType.getEventType(RateComputationEvent.class);
+
+	@Label("X")
+	public int x;
+
+	@Label("Y")
+	public int y;
+
+	@Label("Z")
+	public int z;
+
+	@Label("Rate Mode")
+	public String rateMode;
+
+	@Label("Period")
+	public String period;
+
+	@Label("Events Scanned")
+	public int eventsScanned;
+
+	@Label("Rate")
+	public double rate;
+}
@@ -0,0 +1,63 @@
+package com.itemflowmonitor.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Кольцевой буфер последних замеров (нс) с перцентилями по запросу.
+ * Запись — O(1) без аллокаций; сортировка копии только при чтении (команда, JMX).
+ */
+public class RollingHistogram {
+	private final long[] samples;
+	private int next;
+	private int size;
+	private long totalCount;
+	private long totalNanos;
+
+	public RollingHistogram(int capacity) {
+		this.samples = new long[capacity];
+	}
+
+	/** Записать замер. synchronized — фаза записи хранилища пишется из фонового потока */
+	public synchronized void record(long nanos) {
+		samples[next] = nanos;
+		next = (next + 1) % samples.length;
+		if (size < samples.length) size++;
+		totalCount++;
+		totalNanos += nanos;
+	}
+
+	/** Снимок статистики по окну последних замеров */
+	public synchronized PhaseSnapshot snapshot(String name) {
+		if (size == 0) {
+			return new PhaseSnapshot(name, totalCount, 0, 0, 0, 0, 0);
+		}
+		long[] sorted = Arrays.copyOf(samples, size);
+		Arrays.sort(sorted);
+		long sum = 0;
+		for (long sample : sorted) {
+			sum += sample;
+		}
+		return new PhaseSnapshot(name, totalCount,
+				sum / size,
+				percentile(sorted, 0.50),
+				percentile(sorted, 0.95),
+				percentile(sorted, 0.99),
+				sorted[sorted.length - 1]);
+	}
+
+	public synchronized long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public synchronized void reset() {
+		next = 0;
+		size = 0;
+		totalCount = 0;
+		totalNanos = 0;
+	}
+
+	private static long percentile(long[] sorted, double p) {
+		int index = (int) Math.ceil(p * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+	}
+}
@@ -0,0 +1,27 @@
+package com.itemflowmonitor.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** JFR: запись регионов трекеров в фоновом потоке хранилища */
+@Name("itemflowmonitor.StorageSave")
+@Label("Tracker Storage Save")
+@Category({"ItemFlowMonitor", "Storage"})
+@Description("Tracker regions written to disk by the storage thread")
+@StackTrace(false)
+public class StorageSaveEvent extends jdk.jfr.Event {
+	public static final EventType TYPE = EventType.getEventType(StorageSaveEvent.class);
+
+	@Label("Regions")
+	public int regions;
+
+	@Label("Entries")
+	public int entries;
+
+	@Label("Failed Regions")
+	public int failedRegions;
+}
@@ -0,0 +1,121 @@
+package com.itemflowmonitor.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Замер времени фаз тика и хранилища.
+ * Выключенный замер стоит одно чтение static-поля: start() не вызывает nanoTime, stop() ничего не пишет.
+ *
+ * <pre>
+ * long start = TickMetrics.start();
+ * ...
+ * TickMetrics.stop(Phase.OBSERVER, start);
+ * </pre>
+ */
+public final class TickMetrics {
+	/** Окно перцентилей: минута тиков при 20 TPS */
+	private static final int WINDOW_SAMPLES = 1200;
+
+	/**
+	 * Замер включён. Пишут серверный поток (команды, старт сервера) и поток JMX (MetricsBean) —
+	 * volatile, чтобы смена была видна сразу; чтение на горячем пути остаётся почти бесплатным.
+	 */
+	private static volatile boolean enabled;
+
+	private static final Map<Phase, RollingHistogram> histograms = new EnumMap<>(Phase.class);
+	/** Обработано единиц за фазу (трекеров, пакетов, регионов) с момента сброса */
+	private static final long[] items = new long[Phase.values().length];
+
+	static {
+		for (Phase phase : Phase.values()) {
+			histograms.put(phase, new RollingHistogram(WINDOW_SAMPLES));
+		}
+	}
+
+	private TickMetrics() {}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Включить/выключить замер; при включении окно начинается заново */
+	public static void setEnabled(boolean value) {
+		if (value && !enabled) {
+			reset();
+		}
+		enabled = value;
+	}
+
+	/** Начало замера: 0 — замер выключен */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/** Нс с начала замера (0 — замер выключен); для накопления времени фазы внутри цикла */
+	public static long elapsed(long start) {
+		return start != 0 ? System.nanoTime() - start : 0;
+	}
+
+	/** Завершить замер фазы */
+	public static void stop(Phase phase, long start) {
+		if (start != 0) {
+			histograms.get(phase).record(System.nanoTime() - start);
+		}
+	}
+
+	/** Завершить замер фазы и учесть число обработанных единиц */
+	public static void stop(Phase phase, long start, int processed) {
+		if (start != 0) {
+			histograms.get(phase).record(System.nanoTime() - start);
+			addItems(phase, processed);
+		}
+	}
+
+	/** Записать накопленное время фазы (замер внутри цикла через elapsed) */
+	public static void record(Phase phase, long nanos, int processed) {
+		if (enabled) {
+			histograms.get(phase).record(nanos);
+			addItems(phase, processed);
+		}
+	}
+
+	private static synchronized void addItems(Phase phase, int processed) {
+		items[phase.ordinal()] += processed;
+	}
+
+	public static synchronized long getItems(Phase phase) {
+		return items[phase.ordinal()];
+	}
+
+	/** Статистика всех фаз в порядке объявления */
+	public static List<PhaseSnapshot> snapshot() {
+		List<PhaseSnapshot> result = new ArrayList<>(histograms.size());
+		for (var entry : histograms.entrySet()) {
+			result.add(entry.getValue().snapshot(entry.getKey().name()));
+		}
+		return result;
+	}
+
+	public static PhaseSnapshot snapshot(Phase phase) {
+		return histograms.get(phase).snapshot(phase.name());
+	}
+
+	/** Суммарное время фазы с момента сброса, нс */
+	public static long getTotalNanos(Phase phase) {
+		return histograms.get(phase).getTotalNanos();
+	}
+
+	/** Сбросить окна и счётчики */
+	public static void reset() {
+		for (RollingHistogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+		synchronized (TickMetrics.class) {
+			Arrays.fill(items, 0);
+		}
+	}
+}
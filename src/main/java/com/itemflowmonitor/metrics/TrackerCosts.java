@@ -0,0 +1,128 @@
+package com.itemflowmonitor.metrics;
+
+import com.itemflowmonitor.tracker.ContainerTracker;
+import com.itemflowmonitor.tracker.HistoryBudget;
+import com.itemflowmonitor.tracker.TrackerManager;
+import net.minecraft.core.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Стоимость отдельных трекеров: время CPU (observer, расчёт rate, сборка и отправка пакета),
+ * поток событий, размер истории и отправленные байты.
+ * Копится только при включённых метриках; значения усредняются по окнам WINDOW_TICKS.
+ * Только серверный поток.
+ */
+public class TrackerCosts {
+	private static final TrackerCosts INSTANCE = new TrackerCosts();
+
+	/** Окно усреднения: 10 секунд */
+	public static final int WINDOW_TICKS = 200;
+
+	/** Строка отчёта /ifm perf — значения за последнее полное окно */
+	public record Report(BlockPos pos, String dimension, boolean paused,
+						 double cpuMicrosPerSecond, double eventsPerSecond, double bytesPerSecond,
+						 int historyEvents, long historyBytes) {}
+
+	/** Накопление текущего окна и результат последнего */
+	private static final class Cost {
+		long cpuNanos;
+		long bytes;
+		long eventsAtWindowStart = -1;
+		double cpuMicrosPerSecond;
+		double eventsPerSecond;
+		double bytesPerSecond;
+	}
+
+	private final Map<BlockPos, Cost> costs = new HashMap<>();
+	private long windowStartTick = -1;
+	private boolean hasWindow;
+
+	private TrackerCosts() {}
+
+	public static TrackerCosts getInstance() {
+		return INSTANCE;
+	}
+
+	/** Учесть время CPU трекера (0 — метрики выключены, ничего не делаем) */
+	public void addCpu(BlockPos pos, long nanos) {
+		if (nanos == 0) return;
+		costs.computeIfAbsent(pos, p -> new Cost()).cpuNanos += nanos;
+	}
+
+	/** Учесть байты, отправленные по трекеру (всем получателям) */
+	public void addBytes(BlockPos pos, long bytes) {
+		if (!TickMetrics.isEnabled()) return;
+		costs.computeIfAbsent(pos, p -> new Cost()).bytes += bytes;
+	}
+
+	/** Закрыть окно: пересчитать значения в секунду и начать новое. Вызывается раз в WINDOW_TICKS */
+	public void roll(TrackerManager manager, long currentTick) {
+		// Первое окно или метрики были выключены дольше окна — начинаем заново
+		if (windowStartTick < 0 || currentTick <= windowStartTick
+				|| currentTick - windowStartTick > 2L * WINDOW_TICKS) {
+			startWindow(manager, currentTick);
+			return;
+		}
+		double seconds = (currentTick - windowStartTick) / 20.0;
+		costs.keySet().retainAll(manager.getAllTrackers().keySet());
+		for (var entry : manager.getAllTrackers().entrySet()) {
+			Cost cost = costs.computeIfAbsent(entry.getKey(), p -> new Cost());
+			long recorded = entry.getValue().getRecordedEvents();
+			cost.cpuMicrosPerSecond = cost.cpuNanos / 1000.0 / seconds;
+			cost.bytesPerSecond = cost.bytes / seconds;
+			cost.eventsPerSecond = cost.eventsAtWindowStart < 0 ? 0 : (recorded - cost.eventsAtWindowStart) / seconds;
+			cost.cpuNanos = 0;
+			cost.bytes = 0;
+			cost.eventsAtWindowStart = recorded;
+		}
+		windowStartTick = currentTick;
+		hasWindow = true;
+	}
+
+	private void startWindow(TrackerManager manager, long currentTick) {
+		costs.clear();
+		for (var entry : manager.getAllTrackers().entrySet()) {
+			costs.computeIfAbsent(entry.getKey(), p -> new Cost()).eventsAtWindowStart = entry.getValue().getRecordedEvents();
+		}
+		windowStartTick = currentTick;
+		hasWindow = false;
+	}
+
+	/** Есть ли хотя бы одно полное окно */
+	public boolean hasWindow() {
+		return hasWindow;
+	}
+
+	/** N самых дорогих трекеров по CPU за последнее окно; при равенстве — по отправленным байтам */
+	public List<Report> top(TrackerManager manager, int limit) {
+		List<Report> reports = new ArrayList<>();
+		for (var entry : costs.entrySet()) {
+			ContainerTracker tracker = manager.getTracker(entry.getKey());
+			if (tracker == null) continue;
+			Cost cost = entry.getValue();
+			reports.add(new Report(entry.getKey(), tracker.getDimension(), tracker.isPaused(),
+					cost.cpuMicrosPerSecond, cost.eventsPerSecond, cost.bytesPerSecond,
+					tracker.getEventCount(), HistoryBudget.estimateBytes(tracker)));
+		}
+		reports.sort(Comparator.comparingDouble(Report::cpuMicrosPerSecond)
+				.thenComparingDouble(Report::bytesPerSecond).reversed());
+		return reports.size() > limit ? reports.subList(0, limit) : reports;
+	}
+
+	/** Трекер удалён — его стоимость больше не показывается */
+	public void remove(BlockPos pos) {
+		costs.remove(pos);
+	}
+
+	/** Сбросить окна (выключение метрик, смена мира) */
+	public void clear() {
+		costs.clear();
+		windowStartTick = -1;
+		hasWindow = false;
+	}
+}
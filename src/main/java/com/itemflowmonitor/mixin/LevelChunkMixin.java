@@ -0,0 +1,37 @@
+package com.itemflowmonitor.mixin;
+
+import com.itemflowmonitor.network.TrackerNetworking;
+import com.itemflowmonitor.tracker.TrackerManager;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Смена блока на позиции трекера — любым способом: игрок, взрыв, поршень, команда, другой мод.
+ * Трекер инвалидируется сразу, без периодического опроса getBlockEntity.
+ */
+@Mixin(LevelChunk.class)
+public abstract class LevelChunkMixin {
+	@Shadow
+	@Final
+	Level level;
+
+	/** На RETURN новый блок и его BlockEntity уже на месте; возвращаемое значение — прежнее состояние (null — без изменений) */
+	@Inject(method = "setBlockState", at = @At("RETURN"))
+	private void ifm$onSetBlockState(BlockPos pos, BlockState state, int flags,
+									 CallbackInfoReturnable<BlockState> cir) {
+		BlockState previous = cir.getReturnValue();
+		if (previous == null || !(level instanceof ServerLevel serverLevel)) return;
+		// Hot path: на подавляющем большинстве позиций трекера нет
+		if (!TrackerManager.getInstance().isTrackedPosition(pos.asLong())) return;
+		TrackerNetworking.onTrackedBlockChanged(serverLevel, pos.immutable(), previous);
+	}
+}
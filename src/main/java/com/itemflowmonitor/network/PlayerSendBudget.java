@@ -0,0 +1,101 @@
+package com.itemflowmonitor.network;
+
+import net.minecraft.core.BlockPos;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Исходящий бюджет одного игрока: token bucket по байтам и по числу обновлений.
+ * При нехватке бюджета обновления откладываются по приоритету волатильности:
+ * быстро меняющийся rate может потратить бюджет до нуля, стабильный ждёт резерва.
+ */
+public class PlayerSendBudget {
+	/** Доля ёмкости, которую должен сохранять полностью стабильный трекер (волатильность 0) */
+	private static final double STABLE_RESERVE_RATIO = 0.5;
+	/** Сколько тиков длится окно замера фактической полосы */
+	private static final int BANDWIDTH_WINDOW_TICKS = 20;
+
+	/** До первого пополнения бюджет не ограничен — первое обновление уходит сразу */
+	private double byteTokens = Double.POSITIVE_INFINITY;
+	private double updateTokens = Double.POSITIVE_INFINITY;
+	private long lastRefillTick = -1;
+
+	/** Последнее отложенное обновление просматриваемого контейнера (новее заменяет старое) */
+	private TrackerUpdateS2CPacket pending;
+	private double pendingVolatility;
+
+	/** Очередь начальной синхронизации при входе — самый низкий приоритет */
+	private final Deque<BlockPos> syncQueue = new ArrayDeque<>();
+
+	/** Замер полосы: байты текущего окна и результат последнего полного окна */
+	private long windowStartTick = -1;
+	private long windowBytes;
+	private long lastWindowBytes;
+	private long totalBytes;
+	private long deferredUpdates;
+
+	/** Пополнить бюджет за прошедшие тики. Ёмкость — одна секунда лимита; лимит 0 — без ограничения */
+	void refill(long currentTick, int maxBytesPerSecond, int maxUpdatesPerSecond) {
+		if (lastRefillTick < 0) {
+			byteTokens = maxBytesPerSecond;
+			updateTokens = maxUpdatesPerSecond;
+		} else if (currentTick > lastRefillTick) {
+			long elapsed = currentTick - lastRefillTick;
+			byteTokens = Math.min(maxBytesPerSecond, byteTokens + maxBytesPerSecond * elapsed / 20.0);
+			updateTokens = Math.min(maxUpdatesPerSecond, updateTokens + maxUpdatesPerSecond * elapsed / 20.0);
+		}
+		lastRefillTick = currentTick;
+
+		if (windowStartTick < 0 || currentTick - windowStartTick >= BANDWIDTH_WINDOW_TICKS) {
+			lastWindowBytes = windowBytes;
+			windowBytes = 0;
+			windowStartTick = currentTick;
+		}
+	}
+
+	/**
+	 * Попробовать потратить бюджет на обновление.
+	 * @param volatility 0..1 — насколько быстро меняется rate; стабильным нужен резерв бюджета
+	 */
+	boolean tryConsume(int bytes, double volatility, int maxBytesPerSecond, int maxUpdatesPerSecond) {
+		double reserve = STABLE_RESERVE_RATIO * (1.0 - volatility);
+		if (maxBytesPerSecond > 0 && byteTokens - bytes < maxBytesPerSecond * reserve) return false;
+		if (maxUpdatesPerSecond > 0 && updateTokens - 1 < maxUpdatesPerSecond * reserve) return false;
+		byteTokens -= bytes;
+		updateTokens -= 1;
+		return true;
+	}
+
+	/** Учесть отправленные байты (вызывается и для отправок вне бюджета) */
+	void recordSent(int bytes) {
+		windowBytes += bytes;
+		totalBytes += bytes;
+	}
+
+	/** Отложить обновление — при следующей возможности уйдёт самое свежее */
+	void defer(TrackerUpdateS2CPacket packet, double volatility) {
+		if (pending == null) {
+			pendingVolatility = volatility;
+		} else {
+			// Накопленные изменения только повышают приоритет
+			pendingVolatility = Math.max(pendingVolatility, volatility);
+		}
+		pending = packet;
+		deferredUpdates++;
+	}
+
+	TrackerUpdateS2CPacket getPending() { return pending; }
+	double getPendingVolatility() { return pendingVolatility; }
+	void clearPending() { pending = null; pendingVolatility = 0; }
+
+	void enqueueSync(Collection<BlockPos> positions) { syncQueue.addAll(positions); }
+	Deque<BlockPos> getSyncQueue() { return syncQueue; }
+
+	/** Фактическая полоса за последнюю полную секунду, байт/с */
+	public long getBytesPerSecond() { return lastWindowBytes; }
+	public long getTotalBytes() { return totalBytes; }
+	public long getDeferredUpdates() { return deferredUpdates; }
+	public int getSyncBacklog() { return syncQueue.size(); }
+}
@@ -0,0 +1,46 @@
+package com.itemflowmonitor.network;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+import net.minecraft.network.codec.StreamCodec;
+import net.minecraft.network.protocol.common.custom.CustomPacketPayload;
+import net.minecraft.resources.Identifier;
+
+/**
+ * Сервер → Клиент: TrackerUpdateS2CPacket, заранее закодированный один раз для рассылки многим viewer'ам.
+ * На сервере соединение только копирует готовые байты, на клиенте декодируется обычным кодеком обновления.
+ */
+public record SharedTrackerUpdateS2CPacket(
+		TrackerUpdateS2CPacket update,
+		byte[] encoded
+) implements CustomPacketPayload {
+
+	public static final CustomPacketPayload.Type<SharedTrackerUpdateS2CPacket> TYPE =
+			new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath("itemflowmonitor", "tracker_update_shared"));
+
+	public static final StreamCodec<FriendlyByteBuf, SharedTrackerUpdateS2CPacket> CODEC =
+			CustomPacketPayload.codec(SharedTrackerUpdateS2CPacket::write, SharedTrackerUpdateS2CPacket::new);
+
+	private SharedTrackerUpdateS2CPacket(FriendlyByteBuf buf) {
+		this(TrackerUpdateS2CPacket.CODEC.decode(buf), null);
+	}
+
+	/** Закодировать обновление один раз — результат переиспользуется для всех получателей */
+	public static SharedTrackerUpdateS2CPacket encode(TrackerUpdateS2CPacket update) {
+		FriendlyByteBuf buf = new FriendlyByteBuf(Unpooled.buffer());
+		TrackerUpdateS2CPacket.CODEC.encode(buf, update);
+		byte[] bytes = new byte[buf.readableBytes()];
+		buf.readBytes(bytes);
+		return new SharedTrackerUpdateS2CPacket(update, bytes);
+	}
+
+	private void write(FriendlyByteBuf buf) {
+		// Массив не изменяется после encode — безопасно читать из нескольких netty-потоков
+		buf.writeBytes(encoded);
+	}
+
+	@Override
+	public CustomPacketPayload.Type<? extends CustomPacketPayload> type() {
+		return TYPE;
+	}
+}
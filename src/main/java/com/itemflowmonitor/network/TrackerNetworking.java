@@ -4,11 +4,20 @@ import com.itemflowmonitor.ItemFlowMonitor;
 import com.itemflowmonitor.RateMode;
 import com.itemflowmonitor.TrackingMode;
 import com.itemflowmonitor.TrackingPeriod;
+import com.itemflowmonitor.config.IFMServerConfig;
+import com.itemflowmonitor.core.TimerWheel;
+import com.itemflowmonitor.metrics.PacketSendEvent;
+import com.itemflowmonitor.metrics.Phase;
+import com.itemflowmonitor.metrics.PrometheusExporter;
+import com.itemflowmonitor.metrics.TickMetrics;
+import com.itemflowmonitor.metrics.TrackerCosts;
 import com.itemflowmonitor.tracker.ContainerObserver;
 import com.itemflowmonitor.tracker.ContainerTracker;
+import com.itemflowmonitor.tracker.HistoryBudget;
+import com.itemflowmonitor.tracker.PackedHistory;
 import com.itemflowmonitor.tracker.TrackerManager;
+import com.itemflowmonitor.tracker.TrackerStorage;
 import com.itemflowmonitor.util.ChestUtil;
-import com.itemflowmonitor.tracker.TrackerSavedData;
 import net.fabricmc.fabric.api.networking.v1.PayloadTypeRegistry;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
@@ -23,11 +32,13 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.network.chat.Component;
 import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -37,12 +48,16 @@ public class TrackerNetworking {
 
 	/** Порог изменения rate для отправки пакета */
 	private static final double RATE_DELTA_THRESHOLD = 0.01;
-	/** Максимальный интервал между отправками (fallback), в тиках */
-	private static final int FALLBACK_INTERVAL_TICKS = 20;
+	/** Минимум получателей, с которого пакет кодируется один раз и рассылается готовыми байтами */
+	private static final int SHARED_ENCODE_MIN_VIEWERS = 2;
+	/** Относительное изменение rate, при котором обновление считается максимально волатильным (10%) */
+	private static final double FULL_VOLATILITY_CHANGE = 0.1;
 	/** Таймаут ghost-трекера: 5 минут без viewer'ов → пауза */
 	private static final long GHOST_TIMEOUT_TICKS = 6000;
-	/** Интервал проверки ghost-трекеров (10 секунд) */
-	private static final int GHOST_CHECK_INTERVAL = 200;
+	/** Интервал проверки бюджета памяти истории (10 секунд) */
+	private static final int HISTORY_BUDGET_INTERVAL = 200;
+	/** Записей начальной синхронизации на игрока за тик — вход растягивается и без лимитов бюджета */
+	private static final int MAX_SYNC_PER_TICK = 32;
 	/** Максимальная дистанция взаимодействия с контейнером (блоки, squared) */
 	private static final double MAX_INTERACTION_DISTANCE_SQ = 10.0 * 10.0;
 
@@ -51,18 +66,33 @@ public class TrackerNetworking {
 	private static final long INVALID_PACKET_LOG_INTERVAL_MS = 60_000;
 
 	/** Observer для отслеживания изменений содержимого контейнеров */
-	private static final ContainerObserver observer = new ContainerObserver();
+	private static final ContainerObserver observer = ContainerObserver.getInstance();
 
 	/** Кеш последнего отправленного состояния per-BlockPos */
 	private static final Map<BlockPos, CachedState> sentCache = new HashMap<>();
 
-	private record CachedState(double rate, int currentCount, int maxCapacity, long tick) {}
+	/** Тики, на которых rate трекера изменится без новых событий (выход события из окна) */
+	private static final TimerWheel<BlockPos> rateWheel = new TimerWheel<>();
+
+	/** Стоимость трекеров для /ifm perf (копится только при включённых метриках) */
+	private static final TrackerCosts costs = TrackerCosts.getInstance();
+
+	/** Исходящий бюджет и замер полосы per-игрок */
+	private static final Map<UUID, PlayerSendBudget> budgets = new HashMap<>();
+
+	/** Период публикации полосы по игрокам для других потоков (JMX, эндпоинт метрик) */
+	private static final int BANDWIDTH_PUBLISH_TICKS = 20;
+	/** Полоса по игрокам на момент последней публикации: имя → байт/с; неизменяемая карта */
+	private static volatile Map<String, Long> publishedBandwidth = Map.of();
+
+	private record CachedState(double rate, double slope, int currentCount, int maxCapacity, long tick) {}
 
 	/** Регистрация типов пакетов и серверных обработчиков */
 	public static void init() {
 		// Регистрация типов пакетов
 		PayloadTypeRegistry.playC2S().register(TrackerConfigC2SPacket.TYPE, TrackerConfigC2SPacket.CODEC);
 		PayloadTypeRegistry.playS2C().register(TrackerUpdateS2CPacket.TYPE, TrackerUpdateS2CPacket.CODEC);
+		PayloadTypeRegistry.playS2C().register(SharedTrackerUpdateS2CPacket.TYPE, SharedTrackerUpdateS2CPacket.CODEC);
 
 		// Обработка C2S: клиент настраивает трекер
 		ServerPlayNetworking.registerGlobalReceiver(TrackerConfigC2SPacket.TYPE, (payload, context) -> {
@@ -70,18 +100,16 @@ public class TrackerNetworking {
 			server.execute(() -> handleConfig(server, context.player(), payload));
 		});
 
-		// При входе игрока — отправляем данные всех трекеров для клиентского кеша
+		// При входе игрока — ставим все трекеры в очередь синхронизации клиентского кеша (в пределах бюджета)
 		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
 			ServerPlayer player = handler.player;
-			TrackerManager manager = TrackerManager.getInstance();
-			for (var entry : manager.getAllTrackers().entrySet()) {
-				sendTrackerUpdate(player, entry.getKey(), entry.getValue());
-			}
+			budgetFor(player).enqueueSync(TrackerManager.getInstance().getAllTrackers().keySet());
 		});
 
-		// При дисконнекте — немедленно удаляем viewer'а
+		// При дисконнекте — немедленно удаляем viewer'а и его бюджет
 		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
 			TrackerManager.getInstance().removeViewer(handler.player.getUUID());
+			budgets.remove(handler.player.getUUID());
 		});
 	}
 
@@ -102,6 +130,7 @@ public class TrackerNetworking {
 				// Сброс счётчика — очищаем события трекера
 				ContainerTracker tracker = manager.getTracker(pos);
 				if (tracker != null) {
+					wakeTracker(tracker);
 					tracker.clearEvents(player.level().getGameTime());
 					sendTrackerUpdate(player, pos, tracker);
 					ItemFlowMonitor.LOGGER.debug("IFM: счётчик сброшен для {} игроком {}",
@@ -111,6 +140,7 @@ public class TrackerNetworking {
 				// Подписка — только регистрируем зрителя, если трекер существует
 				if (manager.hasTracker(pos)) {
 					ContainerTracker tracker = manager.getTracker(pos);
+					wakeTracker(tracker);
 					tracker.markViewerActive(player.level().getGameTime());
 					manager.setViewer(player.getUUID(), pos);
 					// Немедленно отправляем текущее состояние
@@ -119,8 +149,8 @@ public class TrackerNetworking {
 							pos, player.getName().getString());
 				} else {
 					// Трекер не существует — сообщаем клиенту чтобы очистил кеш
-					ServerPlayNetworking.send(player, new TrackerUpdateS2CPacket(
-							pos, false, 0, 0, 0, 0, "", 0, 0));
+					sendDirect(player, new TrackerUpdateS2CPacket(
+							pos, false, 0, 0, 0, 0, "", 0, 0, 0, 0));
 				}
 			} else {
 				// Полное обновление настроек
@@ -133,15 +163,16 @@ public class TrackerNetworking {
 						player.sendSystemMessage(Component.translatable("itemflowmonitor.limit_reached",
 								TrackerManager.MAX_TRACKERS_PER_PLAYER));
 						// Сообщаем клиенту что трекер не создан — UI должен вернуться в OFF
-						ServerPlayNetworking.send(player, new TrackerUpdateS2CPacket(
-								pos, false, 0, 0, 0, 0, "", 0, 0));
+						sendDirect(player, new TrackerUpdateS2CPacket(
+								pos, false, 0, 0, 0, 0, "", 0, 0, 0, 0));
 						return;
 					}
 				}
 
 				ContainerTracker tracker = manager.getOrCreate(pos);
+				wakeTracker(tracker);
 				if (isNew) {
-					tracker.setOwnerUuid(player.getUUID());
+					manager.setOwner(tracker, player.getUUID());
 					tracker.setDimension(player.level().dimension().identifier().toString());
 				}
 				tracker.markViewerActive(player.level().getGameTime());
@@ -179,7 +210,7 @@ public class TrackerNetworking {
 				}
 
 				manager.setViewer(player.getUUID(), pos);
-				TrackerSavedData.markDirty();
+				manager.markSummaryDirty(pos);
 
 				// Немедленно отправляем текущее состояние клиенту
 				sendTrackerUpdate(player, pos, tracker);
@@ -192,9 +223,7 @@ public class TrackerNetworking {
 			manager.removeViewer(player.getUUID());
 			if (manager.hasTracker(pos)) {
 				manager.remove(pos);
-				sentCache.remove(pos);
-				observer.removeSnapshot(pos);
-				TrackerSavedData.markDirty();
+				clearCachedState(pos);
 				ItemFlowMonitor.LOGGER.debug("IFM: трекер удалён для {} игроком {}",
 						pos, player.getName().getString());
 			}
@@ -205,17 +234,71 @@ public class TrackerNetworking {
 	public static void tick(MinecraftServer server) {
 		TrackerManager manager = TrackerManager.getInstance();
 		long currentTick = server.overworld().getGameTime();
+		long tickStart = TickMetrics.start();
 
 		// Observer: сравнение содержимого контейнеров для детекции добавленных предметов
+		long start = TickMetrics.start();
 		observer.tick(server, manager, currentTick);
+		observer.drainVanished(pos -> {
+			manager.remove(pos);
+			clearCachedState(pos);
+			ItemFlowMonitor.LOGGER.debug("IFM: трекер {} удалён (контейнер пропал без смены блока)", pos);
+		});
+		TickMetrics.stop(Phase.OBSERVER, start);
+
+		// Проверки по расписанию: ghost-таймаут и гибернация — только трекеры, чей срок наступил
+		start = TickMetrics.start();
+		int checked = checkDueTrackers(manager, currentTick);
+		TickMetrics.stop(Phase.GHOST_CHECK, start, checked);
+
+		// Бюджет памяти истории (раз в 10 секунд)
+		if (currentTick % HISTORY_BUDGET_INTERVAL == 0) {
+			start = TickMetrics.start();
+			HistoryBudget.getInstance().enforce(manager, currentTick);
+			TickMetrics.stop(Phase.HISTORY_BUDGET, start);
+		}
 
-		// Периодическая проверка: ghost-трекеры + валидация блоков (раз в 10 секунд)
-		if (currentTick % GHOST_CHECK_INTERVAL == 0) {
-			checkGhostTrackers(server, manager, currentTick);
+		// Истёкшие таймеры окна — rate этих трекеров мог измениться
+		rateWheel.advance(currentTick, pos -> {
+			ContainerTracker tracker = manager.getTracker(pos);
+			if (tracker != null) {
+				tracker.markRateDirty();
+			}
+		});
+
+		if (!manager.getActiveViewers().isEmpty()) {
+			sendViewerUpdates(server, manager, currentTick);
 		}
 
+		// Отложенные бюджетом обновления и начальная синхронизация — остатком бюджета
+		start = TickMetrics.start();
+		drainBudgets(server, manager, currentTick);
+		TickMetrics.stop(Phase.BUDGET_DRAIN, start);
+
+		if (TickMetrics.isEnabled() && currentTick % TrackerCosts.WINDOW_TICKS == 0) {
+			costs.roll(manager, currentTick);
+		}
+
+		if (currentTick % BANDWIDTH_PUBLISH_TICKS == 0) {
+			publishedBandwidth = Map.copyOf(getPlayerBandwidth(server));
+		}
+
+		// Снимок сводок для других потоков (эндпоинт метрик и др.)
+		start = TickMetrics.start();
+		manager.publishSummaries(currentTick, PrometheusExporter.isRunning());
+		TickMetrics.stop(Phase.SUMMARY_PUBLISH, start);
+
+		PrometheusExporter.tick(currentTick);
+
+		TickMetrics.stop(Phase.TICK_TOTAL, tickStart);
+	}
+
+	/** Обновления для игроков, смотрящих в контейнеры с трекерами */
+	private static void sendViewerUpdates(MinecraftServer server, TrackerManager manager, long currentTick) {
 		Map<UUID, BlockPos> viewers = manager.getActiveViewers();
-		if (viewers.isEmpty()) return;
+
+		int updateInterval = IFMServerConfig.getInstance().getUpdateIntervalTicks();
+		long start = TickMetrics.start();
 
 		List<UUID> toRemove = new ArrayList<>();
 		// Группировка viewer'ов по позиции — один расчёт на контейнер
@@ -242,8 +325,15 @@ public class TrackerNetworking {
 		for (UUID id : toRemove) {
 			manager.removeViewer(id);
 		}
+		TickMetrics.stop(Phase.VIEWER_GROUPING, start, viewers.size());
 
-		// Для каждой уникальной позиции — один расчёт, delta-check
+		// Время расчёта и отправки копится по позициям и пишется одним замером на тик
+		long rateNanos = 0;
+		long sendNanos = 0;
+		int evaluated = 0;
+		int sent = 0;
+
+		// Для каждой уникальной позиции — расчёт только если трекер помечен dirty
 		for (var posEntry : viewersByPos.entrySet()) {
 			BlockPos pos = posEntry.getKey();
 			List<ServerPlayer> players = posEntry.getValue();
@@ -254,84 +344,129 @@ public class TrackerNetworking {
 			// Отмечаем что viewer активен — сбрасывает ghost-таймер
 			tracker.markViewerActive(currentTick);
 
-			double rate = tracker.getRate(currentTick);
+			// Тихий контейнер: ни событий, ни истёкших окон, ни изменений содержимого — ничего не считаем
 			CachedState cached = sentCache.get(pos);
+			if (cached != null && !tracker.isRateDirty()) continue;
 
-			// Отправляем только при изменении rate или по таймауту
-			boolean shouldSend = (cached == null)
-					|| (Math.abs(rate - cached.rate) > RATE_DELTA_THRESHOLD)
-					|| (currentTick - cached.tick >= FALLBACK_INTERVAL_TICKS);
+			// Не чаще интервала из конфига — клиент экстраполирует rate между обновлениями.
+			// Dirty-флаг не сбрасываем: изменение будет отправлено по истечении интервала.
+			if (cached != null && currentTick - cached.tick < updateInterval) continue;
 
-			if (!shouldSend) continue;
+			start = TickMetrics.start();
+			double rate = tracker.getRate(currentTick);
+			tracker.clearRateDirty();
+			long nextChangeTick = tracker.getNextRateChangeTick(currentTick);
+			rateWheel.schedule(pos, nextChangeTick);
+			long nanos = TickMetrics.elapsed(start);
+			rateNanos += nanos;
+			costs.addCpu(pos, nanos);
+			evaluated++;
+
+			// Наклон имеет смысл только пока rate меняется каждый тик (EMA сходится),
+			// иначе он ступенчатый и экстраполяция дала бы ложный дрейф
+			double slope = 0;
+			if (cached != null && nextChangeTick == currentTick + 1 && currentTick > cached.tick) {
+				slope = (rate - cached.rate) / (currentTick - cached.tick);
+			}
 
 			// Вычисляем пакет один раз для всех viewer'ов позиции
-			TrackerUpdateS2CPacket packet = buildUpdatePacket(players.get(0), pos, tracker, rate);
+			start = TickMetrics.start();
+			TrackerUpdateS2CPacket packet = buildUpdatePacket(players.get(0), pos, tracker, rate, slope, currentTick);
 
-			for (ServerPlayer player : players) {
-				ServerPlayNetworking.send(player, packet);
+			// Отправляем только при изменении rate или заполненности.
+			// Наклон обнулился (EMA сошлась) — отправляем обязательно, иначе клиент продолжит экстраполировать
+			boolean shouldSend = (cached == null)
+					|| (Math.abs(rate - cached.rate) > RATE_DELTA_THRESHOLD)
+					|| (cached.slope != 0 && slope == 0)
+					|| packet.currentCount() != cached.currentCount
+					|| packet.maxCapacity() != cached.maxCapacity;
+
+			if (!shouldSend) {
+				nanos = TickMetrics.elapsed(start);
+				sendNanos += nanos;
+				costs.addCpu(pos, nanos);
+				continue;
+			}
+
+			// Волатильность — приоритет при нехватке бюджета игрока
+			double volatility = 1.0;
+			if (cached != null) {
+				double change = Math.abs(rate - cached.rate) / Math.max(1.0, Math.abs(cached.rate));
+				volatility = Math.min(1.0, change / FULL_VOLATILITY_CHANGE);
 			}
+			sendWithinBudget(players, packet, volatility);
 
-			sentCache.put(pos, new CachedState(rate, packet.currentCount(), packet.maxCapacity(), currentTick));
+			sentCache.put(pos, new CachedState(rate, slope, packet.currentCount(), packet.maxCapacity(), currentTick));
+			nanos = TickMetrics.elapsed(start);
+			sendNanos += nanos;
+			costs.addCpu(pos, nanos);
+			sent++;
 		}
+
+		TickMetrics.record(Phase.RATE_EVALUATION, rateNanos, evaluated);
+		TickMetrics.record(Phase.PACKET_SEND, sendNanos, sent);
 	}
 
-	/** Проверка ghost-трекеров и валидация блоков (вызывается раз в 10 сек) */
-	private static void checkGhostTrackers(MinecraftServer server, TrackerManager manager, long currentTick) {
-		Map<UUID, BlockPos> viewers = manager.getActiveViewers();
-		List<BlockPos> toRemove = new ArrayList<>();
-
-		for (var entry : manager.getAllTrackers().entrySet()) {
-			BlockPos pos = entry.getKey();
-			ContainerTracker tracker = entry.getValue();
-
-			// Валидация блока: проверяем что контейнер ещё существует
-			ServerLevel level = getTrackerLevel(server, tracker);
-			if (level != null && level.isLoaded(pos)) {
-				BlockEntity be = level.getBlockEntity(pos);
-				if (!(be instanceof Container)) {
-					// Блок больше не контейнер (взрыв, поршень и т.д.) → удалить трекер
-					toRemove.add(pos);
-					continue;
-				}
-			}
+	/**
+	 * Проверка трекеров, чей срок наступил: ghost-таймаут и гибернация.
+	 * Следующая проверка — к ближайшему дедлайну трекера, но не позже чем через CHECK_INTERVAL_TICKS
+	 * (дедлайны сдвигаются, пока трекер открыт). Исчезновение контейнера ловит LevelChunkMixin.
+	 * @return число проверенных трекеров
+	 */
+	private static int checkDueTrackers(TrackerManager manager, long currentTick) {
+		int hibernateAfter = IFMServerConfig.getInstance().getHibernateAfterTicks();
+		Map<BlockPos, PackedHistory.Packed> toHibernate = new HashMap<>();
+		int[] checked = {0};
 
-			// Ghost-check: пауза трекеров без viewer'ов
-			if (tracker.isPaused()) continue;
+		manager.advanceChecks(currentTick, pos -> {
+			ContainerTracker tracker = manager.getTracker(pos);
+			if (tracker == null) return;
+			checked[0]++;
+			manager.scheduleCheck(pos, checkTracker(manager, pos, tracker, currentTick, hibernateAfter, toHibernate));
+		});
 
-			long lastViewer = tracker.getLastViewerTick();
-			if (lastViewer < 0) continue;
+		// История и снимок освобождаются только после записи региона
+		TrackerStorage.hibernate(toHibernate, currentTick, observer::removeSnapshot);
+		return checked[0];
+	}
 
-			if (currentTick - lastViewer > GHOST_TIMEOUT_TICKS) {
-				boolean hasViewer = viewers.values().stream().anyMatch(p -> p.equals(pos));
-				if (!hasViewer) {
-					tracker.setPaused(true);
-					sentCache.remove(pos);
-					ItemFlowMonitor.LOGGER.debug("IFM: трекер {} приостановлен (нет viewer'ов {}с)",
-							pos, GHOST_TIMEOUT_TICKS / 20);
+	/**
+	 * Проверка одного трекера.
+	 * @return тик следующей проверки
+	 */
+	private static long checkTracker(TrackerManager manager, BlockPos pos,
+									 ContainerTracker tracker, long currentTick, int hibernateAfter,
+									 Map<BlockPos, PackedHistory.Packed> toHibernate) {
+		long nextCheck = currentTick + TrackerManager.CHECK_INTERVAL_TICKS;
+		long lastViewer = tracker.getLastViewerTick();
+
+		// Ghost-check: пауза трекеров без viewer'ов; давно приостановленные выгружаются на диск
+		if (tracker.isPaused()) {
+			if (hibernateAfter > 0 && !tracker.isHibernated()) {
+				long hibernateAt = lastViewer + hibernateAfter + 1;
+				if (currentTick >= hibernateAt) {
+					toHibernate.put(pos, observer.exportSnapshot(pos));
+				} else {
+					nextCheck = Math.min(nextCheck, hibernateAt);
 				}
 			}
+			return nextCheck;
 		}
 
-		// Удаляем невалидные трекеры (вне итерации по Map)
-		for (BlockPos pos : toRemove) {
-			manager.remove(pos);
-			sentCache.remove(pos);
-			observer.removeSnapshot(pos);
-			ItemFlowMonitor.LOGGER.debug("IFM: трекер {} удалён (блок больше не контейнер)", pos);
-		}
-		if (!toRemove.isEmpty()) {
-			TrackerSavedData.markDirty();
-		}
-	}
+		if (lastViewer < 0) return nextCheck;
 
-	/** Получить ServerLevel по dimension ID трекера */
-	private static ServerLevel getTrackerLevel(MinecraftServer server, ContainerTracker tracker) {
-		for (ServerLevel level : server.getAllLevels()) {
-			if (level.dimension().identifier().toString().equals(tracker.getDimension())) {
-				return level;
-			}
+		long pauseAt = lastViewer + GHOST_TIMEOUT_TICKS + 1;
+		if (currentTick < pauseAt) {
+			return Math.min(nextCheck, pauseAt);
 		}
-		return null;
+		if (!manager.hasViewers(pos)) {
+			tracker.setPaused(true);
+			sentCache.remove(pos);
+			rateWheel.cancel(pos);
+			ItemFlowMonitor.LOGGER.debug("IFM: трекер {} приостановлен (нет viewer'ов {}с)",
+					pos, GHOST_TIMEOUT_TICKS / 20);
+		}
+		return nextCheck;
 	}
 
 	/**
@@ -399,13 +534,166 @@ public class TrackerNetworking {
 
 	/** Отправить S2C пакет с текущим состоянием трекера (используется из handleConfig для немедленной отправки) */
 	private static void sendTrackerUpdate(ServerPlayer player, BlockPos pos, ContainerTracker tracker) {
-		double rate = tracker.getRate(player.level().getGameTime());
-		TrackerUpdateS2CPacket packet = buildUpdatePacket(player, pos, tracker, rate);
+		long currentTick = player.level().getGameTime();
+		double rate = tracker.getRate(currentTick);
+		TrackerUpdateS2CPacket packet = buildUpdatePacket(player, pos, tracker, rate, 0, currentTick);
+		sendDirect(player, packet);
+	}
+
+	/** Бюджет игрока (создаётся при первом обращении) */
+	private static PlayerSendBudget budgetFor(ServerPlayer player) {
+		return budgets.computeIfAbsent(player.getUUID(), k -> new PlayerSendBudget());
+	}
+
+	/** Отправка одному игроку без проверки бюджета (ответ на действие игрока или уже оплаченное обновление) */
+	private static void sendDirect(ServerPlayer player, TrackerUpdateS2CPacket packet) {
+		PacketSendEvent event = PacketSendEvent.TYPE.isEnabled() ? new PacketSendEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
 		ServerPlayNetworking.send(player, packet);
+		commitPacketSend(event, packet, 1, false);
+		budgetFor(player).recordSent(packet.estimatedSize());
+		costs.addBytes(packet.pos(), packet.estimatedSize());
+	}
+
+	/**
+	 * Разослать обновление группе viewer'ов с учётом бюджета каждого.
+	 * Игроки сверх бюджета получат самое свежее состояние позже, когда бюджет восстановится.
+	 */
+	private static void sendWithinBudget(List<ServerPlayer> players, TrackerUpdateS2CPacket packet, double volatility) {
+		IFMServerConfig config = IFMServerConfig.getInstance();
+		int size = packet.estimatedSize();
+		List<ServerPlayer> allowed = new ArrayList<>(players.size());
+
+		for (ServerPlayer player : players) {
+			PlayerSendBudget budget = budgetFor(player);
+			if (budget.tryConsume(size, volatility, config.getMaxBytesPerSecond(), config.getMaxUpdatesPerSecond())) {
+				budget.recordSent(size);
+				budget.clearPending();
+				allowed.add(player);
+			} else {
+				budget.defer(packet, volatility);
+			}
+		}
+
+		if (!allowed.isEmpty()) {
+			broadcast(allowed, packet);
+			costs.addBytes(packet.pos(), (long) size * allowed.size());
+		}
+	}
+
+	/**
+	 * Пополнение бюджетов, отправка отложенных обновлений и дренаж очереди начальной синхронизации.
+	 * Синхронизация идёт последней и только из резерва — живые обновления важнее.
+	 */
+	private static void drainBudgets(MinecraftServer server, TrackerManager manager, long currentTick) {
+		if (budgets.isEmpty()) return;
+
+		IFMServerConfig config = IFMServerConfig.getInstance();
+		int maxBytes = config.getMaxBytesPerSecond();
+		int maxUpdates = config.getMaxUpdatesPerSecond();
+
+		for (var entry : budgets.entrySet()) {
+			ServerPlayer player = server.getPlayerList().getPlayer(entry.getKey());
+			if (player == null) continue;
+
+			PlayerSendBudget budget = entry.getValue();
+			budget.refill(currentTick, maxBytes, maxUpdates);
+
+			// Отложенное обновление — только если игрок всё ещё смотрит в этот контейнер
+			TrackerUpdateS2CPacket pending = budget.getPending();
+			if (pending != null) {
+				if (!pending.pos().equals(manager.getActiveViewers().get(player.getUUID()))) {
+					budget.clearPending();
+				} else if (budget.tryConsume(pending.estimatedSize(), budget.getPendingVolatility(), maxBytes, maxUpdates)) {
+					sendDirect(player, pending);
+					budget.clearPending();
+				}
+			}
+
+			var queue = budget.getSyncQueue();
+			int synced = 0;
+			while (!queue.isEmpty() && synced < MAX_SYNC_PER_TICK) {
+				BlockPos pos = queue.peekFirst();
+				ContainerTracker tracker = manager.getTracker(pos);
+				if (tracker == null) {
+					queue.pollFirst();
+					continue;
+				}
+				// Rate без побочных эффектов: синхронизация не распаковывает историю и не двигает EMA
+				TrackerUpdateS2CPacket packet = buildUpdatePacket(player, pos, tracker,
+						tracker.peekRate(currentTick), 0, currentTick);
+				if (!budget.tryConsume(packet.estimatedSize(), 0, maxBytes, maxUpdates)) break;
+				queue.pollFirst();
+				sendDirect(player, packet);
+				synced++;
+			}
+		}
+	}
+
+	/** Фактическая исходящая полоса по игрокам в сети за последнюю секунду: имя → байт/с (серверный поток) */
+	public static Map<String, Long> getPlayerBandwidth(MinecraftServer server) {
+		Map<String, Long> result = new TreeMap<>();
+		for (var entry : budgets.entrySet()) {
+			ServerPlayer player = server.getPlayerList().getPlayer(entry.getKey());
+			if (player != null) {
+				result.put(player.getName().getString(), entry.getValue().getBytesPerSecond());
+			}
+		}
+		return result;
+	}
+
+	/** Полоса по игрокам на момент последней публикации (раз в секунду) — безопасно с любого потока */
+	public static Map<String, Long> getPublishedBandwidth() {
+		return publishedBandwidth;
+	}
+
+	/** Бюджет игрока для диагностики (null если игрок ещё ничего не получал) */
+	public static PlayerSendBudget getPlayerBudget(UUID playerId) {
+		return budgets.get(playerId);
+	}
+
+	/**
+	 * Разослать одно обновление группе viewer'ов.
+	 * Для нескольких получателей пакет кодируется один раз — соединения копируют готовые байты.
+	 */
+	private static void broadcast(List<ServerPlayer> players, TrackerUpdateS2CPacket packet) {
+		PacketSendEvent event = PacketSendEvent.TYPE.isEnabled() ? new PacketSendEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+
+		if (players.size() < SHARED_ENCODE_MIN_VIEWERS) {
+			for (ServerPlayer player : players) {
+				ServerPlayNetworking.send(player, packet);
+			}
+			commitPacketSend(event, packet, players.size(), false);
+			return;
+		}
+
+		SharedTrackerUpdateS2CPacket shared = SharedTrackerUpdateS2CPacket.encode(packet);
+		for (ServerPlayer player : players) {
+			ServerPlayNetworking.send(player, shared);
+		}
+		commitPacketSend(event, packet, players.size(), true);
+	}
+
+	/** Завершить JFR-событие отправки (null — запись не активна) */
+	private static void commitPacketSend(PacketSendEvent event, TrackerUpdateS2CPacket packet, int recipients, boolean shared) {
+		if (event == null || !event.shouldCommit()) return;
+		event.x = packet.pos().getX();
+		event.y = packet.pos().getY();
+		event.z = packet.pos().getZ();
+		event.bytes = packet.estimatedSize();
+		event.recipients = recipients;
+		event.shared = shared;
+		event.commit();
 	}
 
 	/** Построить S2C пакет — один расчёт, переиспользуется для нескольких viewer'ов */
-	private static TrackerUpdateS2CPacket buildUpdatePacket(ServerPlayer player, BlockPos pos, ContainerTracker tracker, double rate) {
+	private static TrackerUpdateS2CPacket buildUpdatePacket(ServerPlayer player, BlockPos pos, ContainerTracker tracker,
+															double rate, double slope, long currentTick) {
 		String itemId = "";
 		if (tracker.getTrackedItem() != null) {
 			itemId = BuiltInRegistries.ITEM.getKey(tracker.getTrackedItem()).toString();
@@ -447,19 +735,70 @@ public class TrackerNetworking {
 				tracker.getRateMode().ordinal(),
 				itemId,
 				currentCount,
-				maxCapacity
+				maxCapacity,
+				slope,
+				currentTick
 		);
 	}
 
+	/**
+	 * Блок на позиции трекера сменился (LevelChunkMixin, серверный поток).
+	 * Контейнер на месте (сундук стал двойным, повернулся) — трекер остаётся; исчез — трекер
+	 * переносится на уцелевшую половину двойного сундука или удаляется.
+	 */
+	public static void onTrackedBlockChanged(ServerLevel level, BlockPos pos, BlockState previous) {
+		TrackerManager manager = TrackerManager.getInstance();
+		ContainerTracker tracker = manager.getTracker(pos);
+		if (tracker == null || !tracker.getDimension().equals(level.dimension().identifier().toString())) return;
+		if (level.getBlockEntity(pos) instanceof Container) return;
+
+		BlockPos otherPos = ChestUtil.getOtherHalf(pos, previous);
+		if (otherPos != null && !manager.hasTracker(otherPos)
+				&& level.getBlockEntity(otherPos) instanceof Container) {
+			// Трекер на разрушенной половине → перенести на оставшуюся
+			manager.moveTracker(pos, otherPos);
+			clearCachedState(pos);
+			ItemFlowMonitor.LOGGER.debug("IFM: трекер перенесён {} → {} при разрушении половины сундука", pos, otherPos);
+			return;
+		}
+
+		manager.remove(pos);
+		clearCachedState(pos);
+		ItemFlowMonitor.LOGGER.debug("IFM: трекер {} удалён (блок больше не контейнер)", pos);
+	}
+
 	/** Очистить кеш состояния и снимок для позиции (при удалении трекера) */
 	public static void clearCachedState(BlockPos pos) {
+		costs.remove(pos);
 		sentCache.remove(pos);
+		rateWheel.cancel(pos);
 		observer.removeSnapshot(pos);
 	}
 
+	/**
+	 * Приостановить трекер по команде администратора — как ghost-пауза:
+	 * observer его не сканирует, пока кто-нибудь снова не откроет контейнер.
+	 */
+	public static void pauseTracker(ContainerTracker tracker) {
+		tracker.setPaused(true);
+		sentCache.remove(tracker.getPos());
+		rateWheel.cancel(tracker.getPos());
+	}
+
+	/** Пробудить трекер из холодного хранилища — observer продолжит со снимка на момент гибернации */
+	private static void wakeTracker(ContainerTracker tracker) {
+		if (tracker.isHibernated()) {
+			observer.importSnapshot(tracker.getPos(), TrackerStorage.wake(tracker));
+		}
+	}
+
 	/** Очистить весь кеш (при смене мира) */
 	public static void clearAllCachedStates() {
 		sentCache.clear();
+		budgets.clear();
+		rateWheel.clear();
+		publishedBandwidth = Map.of();
 		observer.clear();
+		costs.clear();
 	}
 }
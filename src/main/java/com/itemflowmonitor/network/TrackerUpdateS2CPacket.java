@@ -8,6 +8,7 @@ import net.minecraft.resources.Identifier;
 
 /**
  * Сервер → Клиент: текущие данные трекера (rate, режим, предмет).
+ * rateSlope (изменение rate за тик) и serverTick позволяют клиенту экстраполировать значение между обновлениями.
  */
 public record TrackerUpdateS2CPacket(
 		BlockPos pos,
@@ -18,9 +19,14 @@ public record TrackerUpdateS2CPacket(
 		int rateModeOrdinal,
 		String trackedItemId,
 		int currentCount,
-		int maxCapacity
+		int maxCapacity,
+		double rateSlope,
+		long serverTick
 ) implements CustomPacketPayload {
 
+	/** Заголовок custom payload на проводе: id пакета + идентификатор канала */
+	private static final int PAYLOAD_HEADER_SIZE = 32;
+
 	public static final CustomPacketPayload.Type<TrackerUpdateS2CPacket> TYPE =
 			new CustomPacketPayload.Type<>(Identifier.fromNamespaceAndPath("itemflowmonitor", "tracker_update"));
 
@@ -30,7 +36,7 @@ public record TrackerUpdateS2CPacket(
 	private TrackerUpdateS2CPacket(FriendlyByteBuf buf) {
 		this(buf.readBlockPos(), buf.readBoolean(), buf.readDouble(),
 				buf.readVarInt(), buf.readVarInt(), buf.readVarInt(), buf.readUtf(),
-				buf.readVarInt(), buf.readVarInt());
+				buf.readVarInt(), buf.readVarInt(), buf.readDouble(), buf.readVarLong());
 	}
 
 	private void write(FriendlyByteBuf buf) {
@@ -43,6 +49,14 @@ public record TrackerUpdateS2CPacket(
 		buf.writeUtf(trackedItemId);
 		buf.writeVarInt(currentCount);
 		buf.writeVarInt(maxCapacity);
+		buf.writeDouble(rateSlope);
+		buf.writeVarLong(serverTick);
+	}
+
+	/** Оценка размера на проводе без сжатия — для бюджета исходящего трафика */
+	public int estimatedSize() {
+		// pos + active + rate + 3 ordinal'а + строка предмета + 2 счётчика + slope + tick
+		return 8 + 1 + 8 + 3 + (1 + trackedItemId.length()) + 10 + 8 + 9 + PAYLOAD_HEADER_SIZE;
 	}
 
 	@Override
@@ -0,0 +1,33 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.TrackingPeriod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Суммарный поток трекеров области (ферма, склад) — результат запросов TrackerManager по области.
+ * Rate каждого трекера приводится к предметам в минуту: у трекеров могут быть разные периоды.
+ * Rate берётся без побочных эффектов (peekRate) — запрос не распаковывает историю и не двигает EMA.
+ */
+public record AreaStats(List<Entry> entries, double itemsPerMinute) {
+
+	/** Трекер области и его поток, предметов в минуту */
+	public record Entry(ContainerTracker tracker, double itemsPerMinute) {}
+
+	/** Собрать статистику; записи отсортированы по убыванию потока */
+	public static AreaStats of(Collection<ContainerTracker> trackers, long currentTick) {
+		List<Entry> entries = new ArrayList<>(trackers.size());
+		double total = 0;
+		for (ContainerTracker tracker : trackers) {
+			double perMinute = tracker.peekRate(currentTick)
+					* TrackingPeriod.MINUTE.getTicks() / tracker.getPeriod().getTicks();
+			total += perMinute;
+			entries.add(new Entry(tracker, perMinute));
+		}
+		entries.sort(Comparator.comparingDouble(Entry::itemsPerMinute).reversed());
+		return new AreaStats(List.copyOf(entries), total);
+	}
+}
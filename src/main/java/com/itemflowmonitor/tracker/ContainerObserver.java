@@ -1,8 +1,16 @@
 package com.itemflowmonitor.tracker;
 
 import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.core.SlotDiff;
+import com.itemflowmonitor.core.SlotSnapshot;
+import com.itemflowmonitor.core.SlotSource;
+import com.itemflowmonitor.metrics.ObserverScanEvent;
+import com.itemflowmonitor.metrics.TickMetrics;
+import com.itemflowmonitor.metrics.TrackerCosts;
 import com.itemflowmonitor.util.ChestUtil;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.Container;
@@ -10,49 +18,107 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.Items;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Observer-подход: сравнивает содержимое контейнеров каждый тик,
  * детектирует добавленные предметы без зависимости от Mixin.
+ * Снимки и сравнение — в core (SlotSnapshot, SlotDiff) по числовым id предметов.
  * Работает с любыми модами, оптимизирующими хопперы (Lithium и др.).
  *
  * Безопасность: все исключения перехватываются per-трекер —
  * проблема с одним контейнером не влияет на остальные и не крашит серверный тик.
  */
 public class ContainerObserver {
+	private static final ContainerObserver INSTANCE = new ContainerObserver();
 
 	/** Максимальный размер контейнера (защита от мод-блоков с гигантским inventory) */
 	private static final int MAX_CONTAINER_SIZE = 256;
 
+	/**
+	 * Сканов подряд без контейнера в загруженном чанке, после которых трекер считается потерянным.
+	 * Контейнер мог исчезнуть мимо setBlockState (прямая запись в секцию чанка, другие моды) —
+	 * хук смены блока этого не видит.
+	 */
+	private static final int MISSES_BEFORE_REMOVAL = 20;
+
 	/** Rate-limit для логирования ошибок: не чаще 1 раза в 60 секунд */
 	private static volatile long lastErrorLogTime = 0;
 	private static final long ERROR_LOG_INTERVAL_MS = 60_000;
 
-	/** Снимок одного слота — Item + количество */
-	private record SlotSnapshot(Item item, int count) {}
+	/** Контейнер как источник слотов для core: id предмета и количество */
+	private record ContainerSlots(Container container) implements SlotSource {
+		@Override
+		public int size() {
+			return container.getContainerSize();
+		}
+
+		@Override
+		public int itemId(int slot) {
+			return Item.getId(container.getItem(slot).getItem());
+		}
+
+		@Override
+		public int count(int slot) {
+			ItemStack stack = container.getItem(slot);
+			return stack.isEmpty() ? 0 : stack.getCount();
+		}
+	}
+
+	/** Заполненность контейнера по последнему снимку */
+	public record FillLevel(int items, int usedSlots, int slots) {}
 
 	/** Предыдущие снимки содержимого контейнеров */
-	private final Map<BlockPos, SlotSnapshot[]> snapshots = new HashMap<>();
+	private final Map<BlockPos, SlotSnapshot> snapshots = new HashMap<>();
+
+	/** Тик, с которого трекер наблюдается после загрузки мира — первые сканы разнесены по тикам */
+	private final Map<BlockPos, Long> warmupTicks = new HashMap<>();
+
+	/** Сканов подряд, на которых контейнера не оказалось (только ненулевые) */
+	private final Map<BlockPos, Integer> misses = new HashMap<>();
+
+	/** Трекеры без контейнера дольше MISSES_BEFORE_REMOVAL сканов — удаляются после обхода */
+	private final List<BlockPos> vanished = new ArrayList<>();
+
+	private ContainerObserver() {}
+
+	public static ContainerObserver getInstance() {
+		return INSTANCE;
+	}
 
 	/**
 	 * Вызывается каждый серверный тик.
 	 * Итерируется по всем не-paused трекерам, сравнивает содержимое с предыдущим снимком,
 	 * записывает положительные дельты как события поступления.
+	 * Потерянные контейнеры не удаляются во время обхода — их забирает {@link #drainVanished}.
 	 */
 	public void tick(MinecraftServer server, TrackerManager manager, long currentTick) {
+		TrackerCosts costs = TrackerCosts.getInstance();
 		for (var entry : manager.getAllTrackers().entrySet()) {
 			BlockPos pos = entry.getKey();
 			ContainerTracker tracker = entry.getValue();
 
 			if (tracker.isPaused()) continue;
 
+			if (!warmupTicks.isEmpty()) {
+				Long from = warmupTicks.get(pos);
+				if (from != null) {
+					if (currentTick < from) continue;
+					warmupTicks.remove(pos);
+				}
+			}
+
+			long start = TickMetrics.start();
 			try {
 				observeContainer(server, tracker, pos, currentTick);
 			} catch (Exception e) {
 				logErrorRateLimited("IFM: ошибка observer для " + pos, e);
 			}
+			costs.addCpu(pos, TickMetrics.elapsed(start));
 		}
 	}
 
@@ -63,96 +129,194 @@ public class ContainerObserver {
 		ServerLevel level = getTrackerLevel(server, tracker);
 		if (level == null || !level.isLoaded(pos)) return;
 
+		// JFR-событие создаётся только при активной записи
+		ObserverScanEvent event = ObserverScanEvent.TYPE.isEnabled() ? new ObserverScanEvent() : null;
+		if (event != null) {
+			event.begin();
+		}
+
 		// Получаем полный контейнер (двойной сундук → CompoundContainer)
 		Container container = ChestUtil.getFullContainer(level, pos);
-		if (container == null) return;
+		if (container == null) {
+			if (misses.merge(pos, 1, Integer::sum) >= MISSES_BEFORE_REMOVAL) {
+				misses.remove(pos);
+				vanished.add(pos);
+			}
+			return;
+		}
+		if (!misses.isEmpty()) {
+			misses.remove(pos);
+		}
+
+		int slotsChanged = observe(tracker, pos, container, currentTick);
+		if (slotsChanged < 0) return;
 
+		if (event != null && event.shouldCommit()) {
+			event.x = pos.getX();
+			event.y = pos.getY();
+			event.z = pos.getZ();
+			event.dimension = tracker.getDimension();
+			event.containerSize = container.getContainerSize();
+			event.slotsChanged = slotsChanged;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Снять содержимое контейнера и сравнить с предыдущим снимком (без мира — используется и бенчмарками).
+	 * @return число изменившихся слотов; -1 — размер контейнера вне допустимого
+	 */
+	int observe(ContainerTracker tracker, BlockPos pos, Container container, long currentTick) {
 		int size = container.getContainerSize();
 
 		// Защита от мод-блоков с аномально большим inventory
-		if (size <= 0 || size > MAX_CONTAINER_SIZE) return;
+		if (size <= 0 || size > MAX_CONTAINER_SIZE) return -1;
 
-		SlotSnapshot[] previous = snapshots.get(pos);
+		SlotSnapshot previous = snapshots.get(pos);
 
 		// Создаём текущий снимок
-		SlotSnapshot[] current = new SlotSnapshot[size];
-		for (int i = 0; i < size; i++) {
-			ItemStack stack = container.getItem(i);
-			if (stack.isEmpty()) {
-				current[i] = new SlotSnapshot(Items.AIR, 0);
-			} else {
-				current[i] = new SlotSnapshot(stack.getItem(), stack.getCount());
-			}
+		SlotSnapshot current = SlotSnapshot.capture(new ContainerSlots(container));
+
+		TraceRecorder recorder = TraceRecorder.getInstance();
+		if (recorder.isRecording()) {
+			recorder.observe(pos, previous, current, currentTick);
 		}
 
 		// Первый снимок — просто сохраняем без записи событий
+		int slotsChanged = 0;
 		if (previous == null) {
-			snapshots.put(pos, current);
-			return;
+			tracker.markRateDirty();
+		} else {
+			// Сравниваем слоты и записываем положительные дельты
+			slotsChanged = compareAndRecord(tracker, previous, current, currentTick);
 		}
 
-		// Сравниваем слоты и записываем положительные дельты
-		compareAndRecord(tracker, previous, current, currentTick);
-
 		// Обновляем снимок
 		snapshots.put(pos, current);
+		return slotsChanged;
 	}
 
 	/**
 	 * Сравнивает предыдущий и текущий снимки, записывает добавленные предметы.
+	 * @return число изменившихся слотов (включая появившиеся и исчезнувшие)
 	 */
-	private void compareAndRecord(ContainerTracker tracker, SlotSnapshot[] previous,
-								  SlotSnapshot[] current, long currentTick) {
-		// Размер контейнера мог измениться (двойной сундук → одинарный)
-		int minSize = Math.min(previous.length, current.length);
-		boolean hasEvents = false;
-
-		for (int i = 0; i < minSize; i++) {
-			SlotSnapshot prev = previous[i];
-			SlotSnapshot cur = current[i];
-
-			if (cur.item == Items.AIR || cur.count <= 0) continue;
-
-			if (cur.item == prev.item) {
-				// Тот же предмет — считаем дельту
-				int delta = cur.count - prev.count;
-				if (delta > 0) {
-					tracker.recordEvent(currentTick, cur.item, delta);
-					hasEvents = true;
-				}
-			} else if (prev.item == Items.AIR || prev.count <= 0) {
-				// Слот был пуст, теперь занят — весь стек новый
-				tracker.recordEvent(currentTick, cur.item, cur.count);
-				hasEvents = true;
-			} else {
-				// Предмет сменился — новый предмет появился (старый ушёл)
-				tracker.recordEvent(currentTick, cur.item, cur.count);
-				hasEvents = true;
-			}
-		}
+	private int compareAndRecord(ContainerTracker tracker, SlotSnapshot previous,
+								 SlotSnapshot current, long currentTick) {
+		int changed = SlotDiff.diff(previous, current,
+				(itemId, count) -> tracker.recordEvent(currentTick, Item.byId(itemId), count));
 
-		// Новые слоты (контейнер стал больше — двойной сундук)
-		for (int i = minSize; i < current.length; i++) {
-			SlotSnapshot cur = current[i];
-			if (cur.item != Items.AIR && cur.count > 0) {
-				tracker.recordEvent(currentTick, cur.item, cur.count);
-				hasEvents = true;
-			}
+		// Любое изменение содержимого (включая убыль) меняет заполненность для ETA
+		if (changed > 0) {
+			tracker.markRateDirty();
+			// Снимок сохраняется вместе с трекером — без этого после перезапуска база была бы устаревшей
+			tracker.markPersistDirty();
 		}
+		return changed;
+	}
 
-		if (hasEvents) {
-			TrackerSavedData.markDirty();
-		}
+	/** Передать трекеры, чей контейнер пропал, на удаление (после tick, вне обхода трекеров) */
+	public void drainVanished(Consumer<BlockPos> remove) {
+		if (vanished.isEmpty()) return;
+		List<BlockPos> positions = new ArrayList<>(vanished);
+		vanished.clear();
+		positions.forEach(remove);
 	}
 
 	/** Удалить снимок для позиции (при удалении трекера) */
 	public void removeSnapshot(BlockPos pos) {
 		snapshots.remove(pos);
+		warmupTicks.remove(pos);
+		misses.remove(pos);
+	}
+
+	/** Заполненность по последнему снимку (null — снимка нет: трекер на паузе или ещё не сканировался) */
+	public FillLevel getFillLevel(BlockPos pos) {
+		SlotSnapshot slots = snapshots.get(pos);
+		if (slots == null) return null;
+		int items = 0;
+		int used = 0;
+		for (int i = 0; i < slots.size(); i++) {
+			if (!slots.isEmpty(i)) {
+				items += slots.count(i);
+				used++;
+			}
+		}
+		return new FillLevel(items, used, slots.size());
+	}
+
+	/** Не наблюдать трекер до указанного тика (разнесение первых сканов после загрузки) */
+	public void scheduleWarmup(BlockPos pos, long fromTick) {
+		warmupTicks.put(pos, fromTick);
+	}
+
+	/**
+	 * Снимок в компактном виде для хранения на диске: палитра предметов +
+	 * varint-поток (число слотов, затем на слот индекс палитры + 1 или 0 для пустого, количество).
+	 * Пустой Packed — снимка нет.
+	 */
+	public PackedHistory.Packed exportSnapshot(BlockPos pos) {
+		SlotSnapshot slots = snapshots.get(pos);
+		if (slots == null) return PackedHistory.Packed.EMPTY;
+
+		List<String> palette = new ArrayList<>();
+		Map<Integer, Integer> paletteIndex = new HashMap<>();
+		PackedHistory.Writer out = new PackedHistory.Writer(slots.size() * 2 + 4);
+		out.writeVarInt(slots.size());
+		for (int i = 0; i < slots.size(); i++) {
+			if (slots.isEmpty(i)) {
+				out.writeVarInt(0);
+				continue;
+			}
+			int itemId = slots.itemId(i);
+			Integer index = paletteIndex.get(itemId);
+			if (index == null) {
+				index = palette.size();
+				paletteIndex.put(itemId, index);
+				palette.add(BuiltInRegistries.ITEM.getKey(Item.byId(itemId)).toString());
+			}
+			out.writeVarInt(index + 1);
+			out.writeVarInt(slots.count(i));
+		}
+		return new PackedHistory.Packed(List.copyOf(palette), out.toByteArray());
+	}
+
+	/** Восстановить снимок из компактного вида — следующее наблюдение сравнится с ним, а не станет новой базой */
+	public void importSnapshot(BlockPos pos, PackedHistory.Packed packed) {
+		if (packed.isEmpty()) return;
+		try {
+			Item[] items = new Item[packed.palette().size()];
+			for (int i = 0; i < items.length; i++) {
+				Identifier id = Identifier.tryParse(packed.palette().get(i));
+				items[i] = id == null ? Items.AIR
+						: BuiltInRegistries.ITEM.get(id).map(ref -> ref.value()).orElse(Items.AIR);
+			}
+			PackedHistory.Reader in = new PackedHistory.Reader(packed.data());
+			int size = in.readVarInt();
+			if (size <= 0 || size > MAX_CONTAINER_SIZE) return;
+			int[] itemIds = new int[size];
+			int[] counts = new int[size];
+			for (int i = 0; i < size; i++) {
+				int index = in.readVarInt();
+				int count = index > 0 ? in.readVarInt() : 0;
+				Item item = index > 0 && index <= items.length ? items[index - 1] : Items.AIR;
+				if (item != Items.AIR) {
+					itemIds[i] = Item.getId(item);
+					counts[i] = count;
+				}
+			}
+			snapshots.put(pos, SlotSnapshot.of(itemIds, counts));
+		} catch (RuntimeException e) {
+			// Повреждённый снимок — первое наблюдение станет новой базой
+			logErrorRateLimited("IFM: повреждённый снимок observer для " + pos, e);
+		}
 	}
 
 	/** Очистить все снимки (при смене мира) */
 	public void clear() {
 		snapshots.clear();
+		warmupTicks.clear();
+		misses.clear();
+		vanished.clear();
 	}
 
 	/** Логирование ошибок с ограничением частоты (не чаще 1 раза в 60 секунд) */
@@ -1,8 +1,13 @@
 package com.itemflowmonitor.tracker;
 
+import com.itemflowmonitor.ItemFlowMonitor;
 import com.itemflowmonitor.RateMode;
 import com.itemflowmonitor.TrackingMode;
 import com.itemflowmonitor.TrackingPeriod;
+import com.itemflowmonitor.core.EmaSmoother;
+import com.itemflowmonitor.core.FlowEvent;
+import com.itemflowmonitor.core.FlowRate;
+import com.itemflowmonitor.metrics.RateComputationEvent;
 import net.minecraft.core.BlockPos;
 import net.minecraft.world.item.Item;
 
@@ -13,12 +18,16 @@ import java.util.UUID;
 
 /**
  * Трекер потока предметов для одного контейнера.
- * Хранит настройки отслеживания и кольцевой буфер событий поступления.
+ * Хранит настройки отслеживания и кольцевой буфер событий поступления;
+ * сам расчёт rate — в core (FlowRate, EmaSmoother).
  */
 public class ContainerTracker {
 	/** Максимальный возраст события в тиках (1 час) */
 	private static final long MAX_EVENT_AGE = 72000;
 
+	/** Сколько тиков кешируется rate упакованной истории (1 сек) */
+	private static final long PACKED_RATE_TICKS = 20;
+
 	private BlockPos pos;
 	private TrackingMode mode;
 	private TrackingPeriod period;
@@ -27,8 +36,8 @@ public class ContainerTracker {
 	private UUID ownerUuid; // UUID игрока, создавшего трекер (для лимита)
 	private String dimension = "minecraft:overworld"; // Dimension ID (для периодической валидации)
 
-	/** Сглаженное значение rate для PREDICTED (EMA). -1 = не инициализировано. */
-	private double smoothedRate = -1;
+	/** EMA-сглаживание rate для PREDICTED */
+	private final EmaSmoother smoothing = new EmaSmoother();
 
 	/** Тик начала отслеживания для режима AVERAGE. -1 = не инициализировано. */
 	private long startTick = -1;
@@ -39,9 +48,46 @@ public class ContainerTracker {
 	/** Трекер на паузе — не записывает события, не тратит ресурсы */
 	private boolean paused = false;
 
+	/** Опубликованный rate мог измениться: новое событие, выход события из окна, смена настроек */
+	private boolean rateDirty = true;
+
+	/** Настройки или история изменились после последнего сохранения — регион трекера нужно перезаписать */
+	private boolean persistDirty = true;
+
 	/** Кольцевой буфер событий поступления предметов */
 	private final LinkedList<ItemEvent> events = new LinkedList<>();
 
+	/** История из сохранения, ещё не распакованная в events (null — распакована или пуста) */
+	private PackedHistory.Packed packedHistory;
+
+	/** Rate по упакованной истории — считается без распаковки в events, как hibernatedRate для холодных трекеров */
+	private double packedRate;
+
+	/** Тики [packedRateFrom, packedRateUntil), на которых packedRate актуален (пусто — не посчитан) */
+	private long packedRateFrom;
+	private long packedRateUntil = Long.MIN_VALUE;
+
+	/** Трекер в холодном хранилище: история и снимок observer'а только на диске, в памяти — настройки */
+	private boolean hibernated = false;
+
+	/** Rate на момент гибернации — для синхронизации клиентского кеша без пробуждения */
+	private double hibernatedRate;
+
+	/** Событий записано с момента загрузки (не уменьшается при обрезке окна) — для /ifm perf */
+	private long recordedEvents;
+
+	/** Состояние трекера для счётчиков сводок: гибернация важнее паузы */
+	public enum State { ACTIVE, PAUSED, HIBERNATED }
+
+	/** Получатель смены состояния — счётчики TrackerSummaries */
+	@FunctionalInterface
+	interface StateListener {
+		void onStateChanged(State from, State to);
+	}
+
+	/** null — трекер не в реестре */
+	private StateListener stateListener;
+
 	public ContainerTracker(BlockPos pos) {
 		this.pos = pos;
 		this.mode = TrackingMode.ALL;
@@ -55,6 +101,7 @@ public class ContainerTracker {
 	 * В режиме AUTO — первый предмет фиксируется как отслеживаемый.
 	 */
 	public void recordEvent(long currentTick, Item item, int count) {
+		hydrate();
 		// AUTO-режим: фиксируем первый предмет
 		if (mode == TrackingMode.AUTO && trackedItem == null) {
 			trackedItem = item;
@@ -66,6 +113,11 @@ public class ContainerTracker {
 		}
 
 		events.add(new ItemEvent(currentTick, item, count));
+		recordedEvents++;
+		rateDirty = true;
+		persistDirty = true;
+		// Событие сразу попадает в журнал — не теряется при падении до сохранения
+		EventJournal.append(pos, currentTick, item, count);
 
 		// Удаляем устаревшие события
 		trimOldEvents(currentTick);
@@ -76,85 +128,116 @@ public class ContainerTracker {
 		return getRate(currentTick, this.period);
 	}
 
-	/** Доля периода для окна выборки PREDICTED (25%) */
-	private static final double PREDICT_WINDOW_RATIO = 0.25;
-
-	/** Коэффициент EMA-сглаживания (0.05 ≈ плавное, ~1 сек до стабилизации) */
-	private static final double SMOOTH_ALPHA = 0.05;
-
 	/**
 	 * Подсчёт предметов за указанный период.
 	 * ACTUAL — абсолютное число за скользящее окно периода.
 	 * PREDICTED — экстраполяция из короткого окна (10 сек) + EMA-сглаживание.
 	 */
-	/** Порог тишины для перехода к затуханию AVERAGE (5 секунд) */
-	private static final long AVG_DECAY_THRESHOLD = 100;
-
 	public double getRate(long currentTick, TrackingPeriod period) {
-		if (rateMode == RateMode.AVERAGE) {
-			if (startTick < 0 || currentTick <= startTick) return 0;
-			int total = 0;
-			long lastMatchTick = startTick;
-			for (ItemEvent event : events) {
-				if (shouldCount(event.item())) {
-					total += event.count();
-					lastMatchTick = event.tick();
-				}
-			}
-			if (total <= 0) return 0;
-
-			// Между событиями: elapsed до последнего события (стабильно).
-			// Если поток остановился (>5 сек): elapsed до текущего тика (затухание).
-			long elapsed = (currentTick - lastMatchTick > AVG_DECAY_THRESHOLD)
-					? currentTick - startTick
-					: lastMatchTick - startTick;
-			if (elapsed <= 0) return 0;
-
-			double avg = (double) total / elapsed * period.getTicks();
-			return Math.round(avg * 10.0) / 10.0;
-		}
-
-		if (rateMode == RateMode.PREDICTED) {
-			long predictWindow = Math.max(200, (long) (period.getTicks() * PREDICT_WINDOW_RATIO));
-			long windowStart = currentTick - predictWindow;
-			int total = 0;
-			for (ItemEvent event : events) {
-				if (event.tick() < windowStart) continue;
-				if (event.tick() > currentTick) break;
-				if (shouldCount(event.item())) {
-					total += event.count();
-				}
-			}
-			double rawRate = (double) total / predictWindow * period.getTicks();
+		if (hibernated) return hibernatedRate;
+		hydrate();
+		// JFR-событие создаётся только при активной записи
+		if (!RateComputationEvent.TYPE.isEnabled()) {
+			return computeRate(currentTick, period, true);
+		}
+		RateComputationEvent event = new RateComputationEvent();
+		event.begin();
+		double rate = computeRate(currentTick, period, true);
+		if (event.shouldCommit()) {
+			event.x = pos.getX();
+			event.y = pos.getY();
+			event.z = pos.getZ();
+			event.rateMode = rateMode.name();
+			event.period = period.name();
+			// Все режимы проходят буфер целиком (события из будущего не записываются)
+			event.eventsScanned = events.size();
+			event.rate = rate;
+			event.commit();
+		}
+		return rate;
+	}
 
-			// EMA-сглаживание: убирает дребезг из-за границ окна
-			if (smoothedRate < 0) {
-				smoothedRate = rawRate;
-			} else {
-				smoothedRate = SMOOTH_ALPHA * rawRate + (1 - SMOOTH_ALPHA) * smoothedRate;
-			}
-			// Округление до 1 знака — убирает микро-колебания
-			return Math.round(smoothedRate * 10.0) / 10.0;
-		}
-
-		// ACTUAL — считаем за полный период
-		long windowStart = currentTick - period.getTicks();
-		int total = 0;
-		for (ItemEvent event : events) {
-			if (event.tick() < windowStart) continue;
-			if (event.tick() > currentTick) break;
-			if (shouldCount(event.item())) {
-				total += event.count();
-			}
+	private double computeRate(long currentTick, TrackingPeriod period, boolean advanceSmoothing) {
+		return computeRate(events, currentTick, period, advanceSmoothing);
+	}
+
+	private double computeRate(Iterable<? extends FlowEvent> source, long currentTick, TrackingPeriod period,
+							   boolean advanceSmoothing) {
+		int filter = itemFilter();
+		return switch (rateMode) {
+			case AVERAGE -> FlowRate.average(source, filter, startTick, period.getTicks(), currentTick);
+			case PREDICTED -> smoothing.apply(
+					FlowRate.predictedRaw(source, filter, period.getTicks(), currentTick), currentTick, advanceSmoothing);
+			// ACTUAL — считаем за полный период
+			case ACTUAL -> FlowRate.actual(source, filter, period.getTicks(), currentTick);
+		};
+	}
+
+	/**
+	 * Rate без побочных эффектов — для экспорта метрик: история не распаковывается, состояние EMA не двигается.
+	 * Упакованная история обходится потоком без распаковки в события; результат кешируется до ближайшего
+	 * тика, на котором rate может измениться (не чаще PACKED_RATE_TICKS): новых событий у такого трекера нет —
+	 * первое же событие распакует историю.
+	 */
+	public double peekRate(long currentTick) {
+		if (hibernated) return hibernatedRate;
+		if (packedHistory != null) return peekPackedRate(currentTick);
+		return computeRate(currentTick, period, false);
+	}
+
+	private double peekPackedRate(long currentTick) {
+		if (currentTick >= packedRateFrom && currentTick < packedRateUntil) return packedRate;
+		packedRateFrom = currentTick;
+		try {
+			Iterable<FlowEvent> stream = PackedHistory.stream(packedHistory);
+			packedRate = computeRate(stream, currentTick, period, false);
+			// PREDICTED до схождения EMA меняется каждый тик — пересчёт не чаще PACKED_RATE_TICKS
+			long next = rateMode == RateMode.PREDICTED && !smoothing.isSettled()
+					? currentTick : nextRateChange(stream, currentTick);
+			packedRateUntil = Math.max(currentTick + PACKED_RATE_TICKS, next);
+		} catch (RuntimeException e) {
+			// Повреждённая история — сообщит hydrate() при распаковке
+			packedRate = computeRate(List.<ItemEvent>of(), currentTick, period, false);
+			packedRateUntil = Long.MAX_VALUE;
 		}
-		return total;
+		return packedRate;
 	}
 
-	/** Должен ли этот предмет учитываться в подсчёте */
-	private boolean shouldCount(Item item) {
+	/**
+	 * Ближайший тик, на котором опубликованный rate может измениться без новых событий.
+	 * ACTUAL/PREDICTED — выход самого старого события из окна; PREDICTED ещё и пока EMA не сошлась;
+	 * AVERAGE — начало затухания и далее раз в секунду. Long.MAX_VALUE — до нового события ничего не изменится.
+	 */
+	public long getNextRateChangeTick(long currentTick) {
+		if (hibernated) return Long.MAX_VALUE;
+		hydrate();
+		if (rateMode == RateMode.PREDICTED && !smoothing.isSettled()) return currentTick + 1;
+		return nextRateChange(events, currentTick);
+	}
+
+	private long nextRateChange(Iterable<? extends FlowEvent> source, long currentTick) {
+		return switch (rateMode) {
+			case AVERAGE -> FlowRate.nextAverageChange(source, itemFilter(), currentTick);
+			case PREDICTED -> FlowRate.nextWindowExit(source, FlowRate.predictWindow(period.getTicks()), currentTick);
+			case ACTUAL -> FlowRate.nextWindowExit(source, period.getTicks(), currentTick);
+		};
+	}
+
+	/** Пометить, что опубликованный rate нужно пересчитать */
+	public void markRateDirty() { this.rateDirty = true; }
+	public boolean isRateDirty() { return rateDirty; }
+	public void clearRateDirty() { this.rateDirty = false; }
+
+	/** Пометить, что трекер нужно записать при следующем сохранении */
+	public void markPersistDirty() { this.persistDirty = true; }
+	public boolean isPersistDirty() { return persistDirty; }
+	public void clearPersistDirty() { this.persistDirty = false; }
+
+	/** Фильтр предметов для FlowRate: все, отслеживаемый или ничего (предмет ещё не выбран) */
+	int itemFilter() {
 		return switch (mode) {
-			case ALL -> true;
-			case AUTO, MANUAL -> trackedItem != null && trackedItem == item;
+			case ALL -> FlowRate.ANY_ITEM;
+			case AUTO, MANUAL -> trackedItem != null ? Item.getId(trackedItem) : FlowRate.NO_ITEM;
 		};
 	}
 
@@ -171,11 +254,71 @@ public class ContainerTracker {
 		}
 	}
 
+	/**
+	 * Проредить события старше beforeTick: подряд идущие события одного предмета в одной корзине
+	 * bucketTicks сливаются в одно (сумма количества, тик первого). Сумма за окна длиннее корзины сохраняется;
+	 * слитое событие покидает окно не позже исходных — rate не завышается на длину корзины.
+	 * @return сколько событий удалено
+	 */
+	public int downsample(long beforeTick, long bucketTicks) {
+		if (hibernated || packedHistory != null) return 0;
+		LinkedList<ItemEvent> merged = new LinkedList<>();
+		Iterator<ItemEvent> it = events.iterator();
+		int removed = 0;
+		while (it.hasNext()) {
+			ItemEvent event = it.next();
+			if (event.tick() >= beforeTick) break;
+			it.remove();
+			ItemEvent last = merged.peekLast();
+			if (last != null && last.item() == event.item() && last.tick() / bucketTicks == event.tick() / bucketTicks) {
+				merged.pollLast();
+				merged.addLast(new ItemEvent(last.tick(), event.item(), last.count() + event.count(), event.itemId()));
+				removed++;
+			} else {
+				merged.addLast(event);
+			}
+		}
+		events.addAll(0, merged);
+		if (removed > 0) {
+			rateDirty = true;
+			persistDirty = true;
+		}
+		return removed;
+	}
+
+	/**
+	 * Удалить события старше beforeTick (последняя ступень вытеснения).
+	 * @return сколько событий удалено
+	 */
+	public int dropBefore(long beforeTick) {
+		if (hibernated || packedHistory != null) return 0;
+		int removed = 0;
+		Iterator<ItemEvent> it = events.iterator();
+		while (it.hasNext() && it.next().tick() < beforeTick) {
+			it.remove();
+			removed++;
+		}
+		if (removed > 0) {
+			rateDirty = true;
+			persistDirty = true;
+		}
+		return removed;
+	}
+
+	/** Число событий в памяти — без распаковки истории (для учёта памяти) */
+	public int getEventCount() { return events.size(); }
+
+	public long getRecordedEvents() { return recordedEvents; }
+
 	/** Очистить буфер событий и сбросить сглаживание/среднее */
 	public void clearEvents(long currentTick) {
 		events.clear();
-		smoothedRate = -1;
+		packedHistory = null;
+		smoothing.reset();
 		startTick = currentTick;
+		rateDirty = true;
+		persistDirty = true;
+		EventJournal.appendClear(pos, currentTick);
 	}
 
 	/** Инициализировать startTick при активации (если ещё не установлен) */
@@ -187,22 +330,79 @@ public class ContainerTracker {
 
 	// --- Восстановление состояния из сохранения ---
 
-	/** Восстановить полное внутреннее состояние (буфер событий, startTick, smoothedRate) */
-	public void restoreState(long savedStartTick, double savedSmoothedRate, List<ItemEvent> savedEvents) {
+	/**
+	 * Восстановить полное внутреннее состояние (буфер событий, startTick, smoothedRate).
+	 * @param smoothedTick тик, на который актуален smoothedRate — EMA продолжит с него
+	 */
+	public void restoreState(long savedStartTick, double savedSmoothedRate, long smoothedTick, List<ItemEvent> savedEvents) {
 		this.startTick = savedStartTick;
-		this.smoothedRate = savedSmoothedRate;
+		this.smoothing.restore(savedSmoothedRate, smoothedTick);
 		this.events.clear();
 		this.events.addAll(savedEvents);
+		this.packedHistory = null;
+		this.rateDirty = true;
+		this.persistDirty = true;
+	}
+
+	/** Восстановить состояние, оставив историю упакованной — распакуется при первом обращении */
+	public void restoreState(long savedStartTick, double savedSmoothedRate, long smoothedTick, PackedHistory.Packed savedHistory) {
+		restoreState(savedStartTick, savedSmoothedRate, smoothedTick, List.of());
+		this.packedHistory = savedHistory.isEmpty() ? null : savedHistory;
+		this.packedRateUntil = Long.MIN_VALUE;
+	}
+
+	/** Распаковать историю из сохранения (viewer открыл контейнер, пришло событие, нужен rate) */
+	private void hydrate() {
+		if (packedHistory == null) return;
+		PackedHistory.Packed packed = packedHistory;
+		packedHistory = null;
+		try {
+			events.addAll(PackedHistory.decode(packed));
+		} catch (RuntimeException e) {
+			// Повреждённая история — трекер продолжает работу с пустым буфером
+			ItemFlowMonitor.LOGGER.warn("IFM: история трекера {} повреждена и сброшена: {}", pos, e.getMessage());
+		}
 	}
 
+	/** История ещё не распакована — при сохранении можно записать её как есть */
+	public PackedHistory.Packed getPackedHistory() { return packedHistory; }
+
+	// --- Гибернация ---
+
+	/** Освободить историю — она уже записана в файл региона. Трекер остаётся на паузе до пробуждения */
+	public void hibernate(double rate) {
+		State before = getState();
+		events.clear();
+		packedHistory = null;
+		hibernatedRate = rate;
+		hibernated = true;
+		paused = true;
+		stateChanged(before);
+	}
+
+	/** Вернуть историю из файла региона (контейнер открыли) */
+	public void wake(long savedStartTick, double savedSmoothedRate, PackedHistory.Packed savedHistory) {
+		State before = getState();
+		hibernated = false;
+		// Сглаживание переживает гибернацию в памяти — тик последнего шага берём оттуда
+		restoreState(savedStartTick, savedSmoothedRate, smoothing.getLastTick(), savedHistory);
+		stateChanged(before);
+	}
+
+	public boolean isHibernated() { return hibernated; }
+	public double getHibernatedRate() { return hibernatedRate; }
+
 	public long getStartTick() { return startTick; }
-	public double getSmoothedRate() { return smoothedRate; }
-	public List<ItemEvent> getEvents() { return java.util.Collections.unmodifiableList(events); }
+	public double getSmoothedRate() { return smoothing.get(); }
+	public List<ItemEvent> getEvents() {
+		hydrate();
+		return java.util.Collections.unmodifiableList(events);
+	}
 
 	// --- Getters / Setters ---
 
 	public BlockPos getPos() { return pos; }
-	void setPos(BlockPos pos) { this.pos = pos; }
+	void setPos(BlockPos pos) { this.pos = pos; this.persistDirty = true; }
 
 	public TrackingMode getMode() { return mode; }
 	public void setMode(TrackingMode mode) {
@@ -211,24 +411,32 @@ public class ContainerTracker {
 		if (mode == TrackingMode.ALL || mode == TrackingMode.AUTO) {
 			this.trackedItem = null;
 		}
+		settingsChanged();
 	}
 
 	public TrackingPeriod getPeriod() { return period; }
-	public void setPeriod(TrackingPeriod period) { this.period = period; this.smoothedRate = -1; }
+	public void setPeriod(TrackingPeriod period) { this.period = period; this.smoothing.reset(); settingsChanged(); }
 
 	public RateMode getRateMode() { return rateMode; }
-	public void setRateMode(RateMode rateMode) { this.rateMode = rateMode; this.smoothedRate = -1; }
+	public void setRateMode(RateMode rateMode) { this.rateMode = rateMode; this.smoothing.reset(); settingsChanged(); }
 
 	public Item getTrackedItem() { return trackedItem; }
-	public void setTrackedItem(Item item) { this.trackedItem = item; }
+	public void setTrackedItem(Item item) { this.trackedItem = item; settingsChanged(); }
+
+	/** Настройки расчёта изменились: опубликованный и кешированный rate устарели */
+	private void settingsChanged() {
+		this.rateDirty = true;
+		this.persistDirty = true;
+		this.packedRateUntil = Long.MIN_VALUE;
+	}
 
 	// --- Владелец трекера ---
 
 	public UUID getOwnerUuid() { return ownerUuid; }
-	public void setOwnerUuid(UUID uuid) { this.ownerUuid = uuid; }
+	void setOwnerUuid(UUID uuid) { this.ownerUuid = uuid; this.persistDirty = true; }
 
 	public String getDimension() { return dimension; }
-	public void setDimension(String dimension) { this.dimension = dimension; }
+	public void setDimension(String dimension) { this.dimension = dimension; this.persistDirty = true; }
 
 	// --- Пауза и viewer tracking ---
 
@@ -237,17 +445,39 @@ public class ContainerTracker {
 	 * чтобы rate мгновенно показал актуальное значение без "раскачки". */
 	public void markViewerActive(long currentTick) {
 		if (lastViewerTick >= 0 && currentTick - lastViewerTick > 20) {
-			smoothedRate = -1;
+			smoothing.reset();
+			rateDirty = true;
 		}
 		this.lastViewerTick = currentTick;
-		this.paused = false;
+		setPaused(false);
 	}
 
 	public boolean isPaused() { return paused; }
-	public void setPaused(boolean paused) { this.paused = paused; }
+	public void setPaused(boolean paused) {
+		State before = getState();
+		this.paused = paused;
+		stateChanged(before);
+	}
+
+	public State getState() {
+		return hibernated ? State.HIBERNATED : paused ? State.PAUSED : State.ACTIVE;
+	}
+
+	void setStateListener(StateListener listener) { this.stateListener = listener; }
+
+	private void stateChanged(State before) {
+		State after = getState();
+		if (after != before && stateListener != null) {
+			stateListener.onStateChanged(before, after);
+		}
+	}
 	public long getLastViewerTick() { return lastViewerTick; }
 	public void setLastViewerTick(long tick) { this.lastViewerTick = tick; }
 
-	/** Запись о событии поступления предмета */
-	public record ItemEvent(long tick, Item item, int count) {}
+	/** Запись о событии поступления предмета; числовой id — для расчёта в core без обращений к реестру */
+	public record ItemEvent(long tick, Item item, int count, int itemId) implements FlowEvent {
+		public ItemEvent(long tick, Item item, int count) {
+			this(tick, item, count, Item.getId(item));
+		}
+	}
 }
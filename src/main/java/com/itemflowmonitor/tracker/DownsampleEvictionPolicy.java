@@ -0,0 +1,43 @@
+package com.itemflowmonitor.tracker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Политика вытеснения по умолчанию: сначала прореживаются самые старые данные
+ * у трекеров, дольше всех простаивающих без viewer'ов. Ступени всё грубее:
+ * события старше 5 минут — корзины по 5 секунд, старше 15 минут — по минуте, старше 30 минут — по 5 минут.
+ * Если прореживания не хватило, удаляются события старше 30 минут.
+ * Последние 5 минут не трогаются — окна PREDICTED и ACTUAL за минуту остаются точными.
+ */
+public class DownsampleEvictionPolicy implements EvictionPolicy {
+	/** Ступени прореживания: {минимальный возраст события в тиках, размер корзины в тиках} */
+	private static final long[][] STAGES = {
+			{6000, 100},
+			{18000, 1200},
+			{36000, 6000}
+	};
+	/** Возраст, старше которого события удаляются на последней ступени (30 минут) */
+	private static final long DROP_AGE_TICKS = 36000;
+
+	@Override
+	public long evict(List<ContainerTracker> trackers, long bytesToFree, long currentTick) {
+		List<ContainerTracker> ordered = new ArrayList<>(trackers);
+		// Дольше всех без viewer'а — первыми
+		ordered.sort(Comparator.comparingLong(ContainerTracker::getLastViewerTick));
+
+		long freed = 0;
+		for (long[] stage : STAGES) {
+			for (ContainerTracker tracker : ordered) {
+				freed += (long) tracker.downsample(currentTick - stage[0], stage[1]) * HistoryBudget.EVENT_BYTES;
+				if (freed >= bytesToFree) return freed;
+			}
+		}
+		for (ContainerTracker tracker : ordered) {
+			freed += (long) tracker.dropBefore(currentTick - DROP_AGE_TICKS) * HistoryBudget.EVENT_BYTES;
+			if (freed >= bytesToFree) return freed;
+		}
+		return freed;
+	}
+}
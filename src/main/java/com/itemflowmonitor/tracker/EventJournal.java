@@ -0,0 +1,282 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
+import net.minecraft.world.item.Item;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Журнал событий трекеров между сохранениями: data/itemflowmonitor/journal/segment-N.log.
+ * Сегмент — файл фиксированного размера, отображённый в память; запись события на серверном потоке —
+ * четыре put в MappedByteBuffer. Формат записи (24 байта): позиция (long), тик (long),
+ * индекс предмета в палитре сегмента (int), количество (int; 0 — конец записей, -1 — сброс буфера,
+ * -2 — запись палитры). Палитра лежит в том же сегменте: запись палитры хранит длину id предмета
+ * вместо позиции и индекс, за ней — UTF-8 id, дополненный до целого числа записей. Запись палитры
+ * всегда идёт раньше первого события с этим индексом — файловый ввод-вывод на серверном потоке не нужен.
+ * При сохранении текущий сегмент закрывается, после успешной записи регионов покрытые сегменты удаляются.
+ * После падения сервера журнал проигрывается поверх загруженных регионов — события между сохранениями не теряются.
+ */
+public class EventJournal {
+	private static final int RECORD_BYTES = 24;
+	/** Размер сегмента: ~175 тыс. событий; при заполнении открывается следующий */
+	private static final int SEGMENT_BYTES = 4 * 1024 * 1024;
+	/** Количество в записи сброса буфера (clearEvents) */
+	private static final int CLEAR_COUNT = -1;
+	/** Количество в записи палитры */
+	private static final int PALETTE_COUNT = -2;
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String EVENTS_SUFFIX = ".log";
+
+	/** Открытый журнал (только серверный поток); null — журнал не ведётся */
+	private static EventJournal instance;
+
+	private final Path directory;
+	private long segmentId;
+	private MappedByteBuffer buffer;
+	/** Палитра текущего сегмента */
+	private final Map<Item, Integer> palette = new IdentityHashMap<>();
+
+	private EventJournal(Path directory) {
+		this.directory = directory;
+	}
+
+	/** Открыть журнал: новый сегмент после всех существующих (их содержимое уже проиграно) */
+	static void open(Path directory) {
+		EventJournal journal = new EventJournal(directory);
+		List<Long> existing = segmentIds(directory);
+		long nextId = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+		if (journal.openSegment(nextId)) {
+			instance = journal;
+		}
+	}
+
+	/** Закрыть журнал при остановке сервера; пустой текущий сегмент удаляется */
+	static void close() {
+		if (instance == null) return;
+		EventJournal journal = instance;
+		instance = null;
+		if (journal.buffer.position() == 0) {
+			deleteSegment(journal.directory, journal.segmentId);
+		}
+		journal.buffer = null;
+	}
+
+	/** Записать событие поступления предметов (вызывается из ContainerTracker.recordEvent) */
+	static void append(BlockPos pos, long tick, Item item, int count) {
+		if (instance == null || count <= 0) return;
+		instance.appendEvent(pos, tick, item, count);
+	}
+
+	/** Записать сброс буфера событий (вызывается из ContainerTracker.clearEvents) */
+	static void appendClear(BlockPos pos, long tick) {
+		if (instance == null) return;
+		instance.write(pos, tick, -1, CLEAR_COUNT);
+	}
+
+	/**
+	 * Закрыть текущий сегмент перед снимком для сохранения.
+	 * @return id первого сегмента, не покрытого снимком (-1 — журнал не ведётся)
+	 */
+	static long rotate() {
+		if (instance == null) return -1;
+		EventJournal journal = instance;
+		if (journal.buffer.position() > 0 && !journal.openSegment(journal.segmentId + 1)) {
+			return -1;
+		}
+		return journal.segmentId;
+	}
+
+	/** Удалить сегменты, покрытые успешно записанными регионами (фоновый поток) */
+	static void deleteBefore(Path directory, long segmentId) {
+		for (long id : segmentIds(directory)) {
+			if (id >= segmentId) break;
+			deleteSegment(directory, id);
+		}
+	}
+
+	/**
+	 * Проиграть журнал поверх загруженных трекеров.
+	 * Применяются только записи новее последнего сохранённого события трекера;
+	 * записи для трекеров, которых нет в хранилище, пропускаются.
+	 * @return позиции трекеров, к которым применены записи
+	 */
+	static Set<BlockPos> replay(Path directory, TrackerManager manager) {
+		Map<BlockPos, Long> savedUpTo = new HashMap<>();
+		Set<BlockPos> applied = new HashSet<>();
+		for (long id : segmentIds(directory)) {
+			List<Item> items = new ArrayList<>();
+			ByteBuffer data;
+			try {
+				data = ByteBuffer.wrap(Files.readAllBytes(segmentPath(directory, id, EVENTS_SUFFIX)));
+			} catch (IOException e) {
+				ItemFlowMonitor.LOGGER.warn("IFM: не удалось прочитать сегмент журнала {}: {}", id, e.getMessage());
+				continue;
+			}
+			while (data.remaining() >= RECORD_BYTES) {
+				BlockPos pos = BlockPos.of(data.getLong());
+				long tick = data.getLong();
+				int itemIndex = data.getInt();
+				int count = data.getInt();
+				if (count == 0) break; // дальше сегмент не заполнялся
+				if (count == PALETTE_COUNT) {
+					if (!readPaletteEntry(data, pos.asLong(), itemIndex, items)) break;
+					continue;
+				}
+
+				ContainerTracker tracker = manager.getTracker(pos);
+				if (tracker == null) continue;
+				// Трекер успел проснуться и записать события после гибернации — история нужна целиком
+				if (tracker.isHibernated()) {
+					TrackerStorage.wake(tracker);
+				}
+				long threshold = savedUpTo.computeIfAbsent(pos, p -> lastSavedTick(tracker));
+				if (tick <= threshold) continue;
+
+				if (count == CLEAR_COUNT) {
+					tracker.clearEvents(tick);
+					applied.add(pos);
+				} else if (itemIndex >= 0 && itemIndex < items.size() && items.get(itemIndex) != null) {
+					tracker.recordEvent(tick, items.get(itemIndex), count);
+					applied.add(pos);
+				}
+			}
+		}
+		return applied;
+	}
+
+	/** Последний тик, состояние которого уже лежит в регионе: события и сбросы не позже него не проигрываются */
+	private static long lastSavedTick(ContainerTracker tracker) {
+		List<ContainerTracker.ItemEvent> events = tracker.getEvents();
+		long lastEvent = events.isEmpty() ? -1 : events.get(events.size() - 1).tick();
+		return Math.max(lastEvent, tracker.getStartTick());
+	}
+
+	private void appendEvent(BlockPos pos, long tick, Item item, int count) {
+		// Переход на следующий сегмент — до поиска индекса: палитра у каждого сегмента своя
+		if (buffer.remaining() < RECORD_BYTES && !openSegment(segmentId + 1)) return;
+		Integer index = palette.get(item);
+		if (index == null) {
+			byte[] name = BuiltInRegistries.ITEM.getKey(item).toString().getBytes(StandardCharsets.UTF_8);
+			int paletteBytes = RECORD_BYTES + padded(name.length);
+			// Запись палитры и событие должны лечь в один сегмент
+			if (buffer.remaining() < paletteBytes + RECORD_BYTES && !openSegment(segmentId + 1)) return;
+			index = palette.size();
+			int offset = buffer.position();
+			buffer.put(offset + RECORD_BYTES, name);
+			// Заголовок последним: без него запись палитры и имя не видны при проигрывании
+			writeRecord(offset, name.length, 0, index, PALETTE_COUNT);
+			buffer.position(offset + paletteBytes);
+			palette.put(item, index);
+		}
+		write(pos, tick, index, count);
+	}
+
+	private void write(BlockPos pos, long tick, int itemIndex, int count) {
+		if (buffer.remaining() < RECORD_BYTES && !openSegment(segmentId + 1)) return;
+		int offset = buffer.position();
+		writeRecord(offset, pos.asLong(), tick, itemIndex, count);
+		buffer.position(offset + RECORD_BYTES);
+	}
+
+	private void writeRecord(int offset, long pos, long tick, int itemIndex, int count) {
+		buffer.putLong(offset, pos);
+		buffer.putLong(offset + 8, tick);
+		buffer.putInt(offset + 16, itemIndex);
+		// Количество пишется последним: ненулевое значение означает, что запись целая
+		buffer.putInt(offset + 20, count);
+	}
+
+	/** Длина имени предмета, дополненная до целого числа записей */
+	private static int padded(int length) {
+		return (length + RECORD_BYTES - 1) / RECORD_BYTES * RECORD_BYTES;
+	}
+
+	/** Создать и отобразить в память новый сегмент. При ошибке журнал отключается до перезапуска */
+	private boolean openSegment(long id) {
+		try {
+			Files.createDirectories(directory);
+			try (FileChannel channel = FileChannel.open(segmentPath(directory, id, EVENTS_SUFFIX),
+					StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)) {
+				// Отображение остаётся действительным после закрытия канала
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+			}
+			segmentId = id;
+			palette.clear();
+			return true;
+		} catch (IOException e) {
+			ItemFlowMonitor.LOGGER.error("IFM: не удалось открыть сегмент журнала {}, журнал отключён", id, e);
+			if (instance == this) {
+				instance = null;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Прочитать запись палитры: индекс должен идти по порядку, имя — целиком в сегменте.
+	 * @return false — сегмент повреждён, дальше не читаем
+	 */
+	private static boolean readPaletteEntry(ByteBuffer data, long length, int index, List<Item> items) {
+		if (length <= 0 || length > data.remaining() || index != items.size()) return false;
+		byte[] name = new byte[(int) length];
+		data.get(name);
+		data.position(data.position() + padded(name.length) - name.length);
+		Identifier itemId = Identifier.tryParse(new String(name, StandardCharsets.UTF_8));
+		items.add(itemId == null ? null : BuiltInRegistries.ITEM.get(itemId).map(ref -> ref.value()).orElse(null));
+		return true;
+	}
+
+	/** Id существующих сегментов по возрастанию */
+	private static List<Long> segmentIds(Path directory) {
+		List<Long> ids = new ArrayList<>();
+		if (!Files.isDirectory(directory)) return ids;
+		try (Stream<Path> files = Files.list(directory)) {
+			files.forEach(file -> {
+				String name = file.getFileName().toString();
+				if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(EVENTS_SUFFIX)) {
+					try {
+						ids.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - EVENTS_SUFFIX.length())));
+					} catch (NumberFormatException e) {
+						// Посторонний файл — пропускаем
+					}
+				}
+			});
+		} catch (IOException e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: ошибка чтения каталога журнала: {}", e.getMessage());
+		}
+		ids.sort(null);
+		return ids;
+	}
+
+	private static void deleteSegment(Path directory, long id) {
+		try {
+			Files.deleteIfExists(segmentPath(directory, id, EVENTS_SUFFIX));
+		} catch (IOException e) {
+			// На некоторых ОС отображённый файл нельзя удалить — повторим после следующего сохранения
+			ItemFlowMonitor.LOGGER.debug("IFM: сегмент журнала {} пока не удалён: {}", id, e.getMessage());
+		}
+	}
+
+	private static Path segmentPath(Path directory, long id, String suffix) {
+		return directory.resolve(SEGMENT_PREFIX + id + suffix);
+	}
+}
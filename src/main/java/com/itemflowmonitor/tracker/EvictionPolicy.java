@@ -0,0 +1,17 @@
+package com.itemflowmonitor.tracker;
+
+import java.util.List;
+
+/**
+ * Политика вытеснения истории трекеров при превышении бюджета памяти.
+ * Устанавливается через HistoryBudget.setEvictionPolicy.
+ */
+public interface EvictionPolicy {
+
+	/**
+	 * Освободить не меньше bytesToFree байт истории, если это возможно.
+	 * @param trackers трекеры с распакованной историей в памяти
+	 * @return сколько байт освобождено (по оценке HistoryBudget.EVENT_BYTES на событие)
+	 */
+	long evict(List<ContainerTracker> trackers, long bytesToFree, long currentTick);
+}
@@ -0,0 +1,111 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.config.IFMServerConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Бюджет памяти истории трекеров: глобальный и на один трекер (config/itemflowmonitor-server.json).
+ * Размер считается по оценке на объект: событие в памяти — EVENT_BYTES,
+ * нераспакованная история — длина байтового потока + палитра, выгруженный трекер — 0.
+ * При превышении память освобождает EvictionPolicy (по умолчанию DownsampleEvictionPolicy).
+ */
+public class HistoryBudget {
+	private static final HistoryBudget INSTANCE = new HistoryBudget();
+
+	/** Оценка памяти одного события: узел LinkedList (24) + ItemEvent (32) */
+	public static final int EVENT_BYTES = 56;
+	/** Оценка памяти элемента палитры нераспакованной истории (строка id) */
+	private static final int PALETTE_ENTRY_BYTES = 48;
+	/** Предупреждение о невыполнимом бюджете — не чаще раза в 5 минут */
+	private static final long WARN_INTERVAL_TICKS = 6000;
+
+	private EvictionPolicy policy = new DownsampleEvictionPolicy();
+
+	/** Всего освобождено политикой с запуска сервера, байт */
+	private long evictedBytes;
+	private long lastWarnTick = -WARN_INTERVAL_TICKS;
+
+	/** Текущее использование памяти историей */
+	public record Usage(long bytes, long events, int hydrated, int packed, int hibernated) {}
+
+	private HistoryBudget() {}
+
+	public static HistoryBudget getInstance() {
+		return INSTANCE;
+	}
+
+	/** Заменить политику вытеснения (точка расширения для других модов и тестовых конфигураций) */
+	public void setEvictionPolicy(EvictionPolicy policy) {
+		this.policy = policy;
+	}
+
+	/** Оценка памяти истории одного трекера — без распаковки */
+	public static long estimateBytes(ContainerTracker tracker) {
+		if (tracker.isHibernated()) return 0;
+		PackedHistory.Packed packed = tracker.getPackedHistory();
+		if (packed != null) {
+			return packed.data().length + (long) packed.palette().size() * PALETTE_ENTRY_BYTES;
+		}
+		return (long) tracker.getEventCount() * EVENT_BYTES;
+	}
+
+	/** Замер использования памяти (для /ifm status) */
+	public Usage measure(TrackerManager manager) {
+		long bytes = 0;
+		long events = 0;
+		int hydrated = 0;
+		int packed = 0;
+		int hibernated = 0;
+		for (ContainerTracker tracker : manager.getAllTrackers().values()) {
+			bytes += estimateBytes(tracker);
+			if (tracker.isHibernated()) {
+				hibernated++;
+			} else if (tracker.getPackedHistory() != null) {
+				packed++;
+			} else {
+				hydrated++;
+				events += tracker.getEventCount();
+			}
+		}
+		return new Usage(bytes, events, hydrated, packed, hibernated);
+	}
+
+	/**
+	 * Проверка бюджета (раз в 10 секунд вместе с ghost-check).
+	 * Сначала лимит на трекер, затем глобальный — по всем трекерам с историей в памяти.
+	 */
+	public void enforce(TrackerManager manager, long currentTick) {
+		IFMServerConfig config = IFMServerConfig.getInstance();
+		long globalLimit = config.getHistoryBudgetBytes();
+		long trackerLimit = config.getTrackerHistoryLimitBytes();
+
+		long used = 0;
+		List<ContainerTracker> resident = new ArrayList<>();
+		for (ContainerTracker tracker : manager.getAllTrackers().values()) {
+			long bytes = estimateBytes(tracker);
+			if (!tracker.isHibernated() && tracker.getPackedHistory() == null) {
+				resident.add(tracker);
+				if (trackerLimit > 0 && bytes > trackerLimit) {
+					long freed = policy.evict(List.of(tracker), bytes - trackerLimit, currentTick);
+					evictedBytes += freed;
+					bytes -= freed;
+				}
+			}
+			used += bytes;
+		}
+
+		if (globalLimit <= 0 || used <= globalLimit) return;
+		long freed = policy.evict(resident, used - globalLimit, currentTick);
+		evictedBytes += freed;
+		if (used - freed > globalLimit && currentTick - lastWarnTick >= WARN_INTERVAL_TICKS) {
+			lastWarnTick = currentTick;
+			ItemFlowMonitor.LOGGER.warn("IFM: история трекеров занимает {} КБ при бюджете {} КБ — вытеснить больше не удалось",
+					(used - freed) / 1024, globalLimit / 1024);
+		}
+	}
+
+	public long getEvictedBytes() { return evictedBytes; }
+}
@@ -0,0 +1,251 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.core.FlowEvent;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.Identifier;
+import net.minecraft.world.item.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Компактный формат буфера событий для сохранения.
+ * Палитра id предметов на трекер + байтовый поток: индекс палитры (varint),
+ * тик delta-of-delta (zigzag varlong), количество (varint).
+ * Поток событий хоппера с постоянным шагом кодируется ~3 байтами на событие.
+ */
+public final class PackedHistory {
+
+	/** Упакованная история: палитра и байтовый поток */
+	public record Packed(List<String> palette, byte[] data) {
+		public static final Packed EMPTY = new Packed(List.of(), new byte[0]);
+
+		public boolean isEmpty() {
+			return data.length == 0;
+		}
+	}
+
+	private PackedHistory() {}
+
+	/** Упаковать события (отсортированы по tick) */
+	public static Packed encode(List<ContainerTracker.ItemEvent> events) {
+		if (events.isEmpty()) return Packed.EMPTY;
+
+		List<String> palette = new ArrayList<>();
+		Map<Item, Integer> paletteIndex = new HashMap<>();
+		Writer out = new Writer(events.size() * 3 + 8);
+
+		out.writeVarInt(events.size());
+		long prevTick = 0;
+		long prevDelta = 0;
+		for (ContainerTracker.ItemEvent event : events) {
+			Integer index = paletteIndex.get(event.item());
+			if (index == null) {
+				index = palette.size();
+				paletteIndex.put(event.item(), index);
+				palette.add(BuiltInRegistries.ITEM.getKey(event.item()).toString());
+			}
+			long delta = event.tick() - prevTick;
+			out.writeVarInt(index);
+			out.writeVarLong(zigzag(delta - prevDelta));
+			out.writeVarInt(event.count());
+			prevTick = event.tick();
+			prevDelta = delta;
+		}
+		return new Packed(List.copyOf(palette), out.toByteArray());
+	}
+
+	/**
+	 * Распаковать события. Один lookup реестра на элемент палитры, а не на событие.
+	 * События с неизвестным (удалённым) предметом пропускаются.
+	 */
+	public static List<ContainerTracker.ItemEvent> decode(Packed packed) {
+		if (packed.isEmpty()) return new ArrayList<>();
+
+		Item[] items = new Item[packed.palette().size()];
+		for (int i = 0; i < items.length; i++) {
+			try {
+				items[i] = BuiltInRegistries.ITEM.get(Identifier.parse(packed.palette().get(i)))
+					.map(ref -> ref.value()).orElse(null);
+			} catch (Exception e) {
+				// Невалидный id — события с ним будут пропущены
+				items[i] = null;
+			}
+		}
+
+		Reader in = new Reader(packed.data());
+		int size = in.readVarInt();
+		// Событие — минимум три varint по байту: размер из повреждённого файла не должен задавать аллокацию
+		if (size < 0 || size > in.remaining() / 3) {
+			throw new IllegalArgumentException("число событий " + size + " не помещается в " + in.remaining() + " байт");
+		}
+		List<ContainerTracker.ItemEvent> events = new ArrayList<>(size);
+		long prevTick = 0;
+		long prevDelta = 0;
+		for (int i = 0; i < size; i++) {
+			int index = in.readVarInt();
+			long delta = prevDelta + unzigzag(in.readVarLong());
+			int count = in.readVarInt();
+			long tick = prevTick + delta;
+			prevTick = tick;
+			prevDelta = delta;
+			if (index >= 0 && index < items.length && items[index] != null) {
+				events.add(new ContainerTracker.ItemEvent(tick, items[index], count));
+			}
+		}
+		return events;
+	}
+
+	/**
+	 * События без распаковки в список — для однопроходных расчётов FlowRate по холодной истории.
+	 * Итератор читает поток на ходу и отдаёт один и тот же изменяемый объект: событие нельзя сохранять.
+	 * События с неизвестным (удалённым) предметом пропускаются; повреждённый поток — исключение при обходе.
+	 */
+	public static Iterable<FlowEvent> stream(Packed packed) {
+		if (packed.isEmpty()) return List.of();
+		int[] itemIds = new int[packed.palette().size()];
+		for (int i = 0; i < itemIds.length; i++) {
+			try {
+				itemIds[i] = BuiltInRegistries.ITEM.get(Identifier.parse(packed.palette().get(i)))
+					.map(ref -> Item.getId(ref.value())).orElse(-1);
+			} catch (Exception e) {
+				itemIds[i] = -1;
+			}
+		}
+		return () -> new StreamIterator(new Reader(packed.data()), itemIds);
+	}
+
+	/** Обход упакованного потока без аллокаций на событие */
+	private static final class StreamIterator implements Iterator<FlowEvent>, FlowEvent {
+		private final Reader in;
+		private final int[] itemIds;
+		private int left;
+		private long prevTick;
+		private long prevDelta;
+		private boolean ready;
+		private long tick;
+		private int itemId;
+		private int count;
+
+		StreamIterator(Reader in, int[] itemIds) {
+			this.in = in;
+			this.itemIds = itemIds;
+			this.left = in.readVarInt();
+			if (left < 0 || left > in.remaining() / 3) {
+				throw new IllegalArgumentException("число событий " + left + " не помещается в " + in.remaining() + " байт");
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (!ready && left > 0) {
+				left--;
+				int index = in.readVarInt();
+				long delta = prevDelta + unzigzag(in.readVarLong());
+				int eventCount = in.readVarInt();
+				prevTick += delta;
+				prevDelta = delta;
+				if (index >= 0 && index < itemIds.length && itemIds[index] >= 0) {
+					tick = prevTick;
+					itemId = itemIds[index];
+					count = eventCount;
+					ready = true;
+				}
+			}
+			return ready;
+		}
+
+		@Override
+		public FlowEvent next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			ready = false;
+			return this;
+		}
+
+		@Override public long tick() { return tick; }
+		@Override public int itemId() { return itemId; }
+		@Override public int count() { return count; }
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/** Растущий байтовый буфер с varint-записью */
+	static final class Writer {
+		private byte[] buf;
+		private int size;
+
+		Writer(int capacity) {
+			this.buf = new byte[Math.max(16, capacity)];
+		}
+
+		void writeByte(int b) {
+			if (size == buf.length) {
+				buf = Arrays.copyOf(buf, buf.length * 2);
+			}
+			buf[size++] = (byte) b;
+		}
+
+		void writeVarInt(int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		void writeVarLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				writeByte((int) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			writeByte((int) value);
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, size);
+		}
+	}
+
+	/** Чтение varint из массива; при обрыве данных — IllegalStateException */
+	static final class Reader {
+		private final byte[] buf;
+		private int pos;
+
+		Reader(byte[] buf) {
+			this.buf = buf;
+		}
+
+		int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		/** Байт до конца буфера */
+		int remaining() {
+			return buf.length - pos;
+		}
+
+		long readVarLong() {
+			long result = 0;
+			int shift = 0;
+			while (true) {
+				if (pos >= buf.length) {
+					throw new IllegalStateException("обрыв упакованной истории на байте " + pos);
+				}
+				byte b = buf[pos++];
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return result;
+				shift += 7;
+				if (shift >= 64) {
+					throw new IllegalStateException("слишком длинный varint на байте " + pos);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.TrackingMode;
+import com.itemflowmonitor.core.SlotSnapshot;
+import com.itemflowmonitor.core.trace.TraceWriter;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.item.Item;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Запись потока изменений слотов выбранных трекеров в трассу: data/itemflowmonitor/traces/trace-*.ifmt.
+ * Трасса воспроизводится без сервера (TraceReplay в core) — для регрессии производительности и точности
+ * движка на реальных фермах. Пока запись не идёт — одна проверка в observer'е.
+ *
+ * Кодирование — на серверном потоке в буфер TraceWriter; заполненные блоки буфера пишутся в файл
+ * фоновым потоком, тик не ждёт диск. Ошибка записи обрывает трассу на ближайшем наблюдении.
+ */
+public class TraceRecorder {
+	private static final TraceRecorder INSTANCE = new TraceRecorder();
+
+	private static final String DIRECTORY = "traces";
+	private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	/** Сколько байт может ждать записи: диск не успевает — трасса обрывается, а не копится в памяти */
+	private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+	/** Сколько ждать дозаписи трассы при остановке сервера */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+	/** Итог записи */
+	public record Result(Path file, int trackers, long observations, long bytes) {}
+
+	private TraceWriter writer;
+	private BackgroundStream stream;
+	private Path file;
+	/** Записываемые трекеры и их id в трассе */
+	private final Map<BlockPos, Integer> trackerIds = new HashMap<>();
+	/** Трекеры, для которых уже записан базовый снимок */
+	private final Set<BlockPos> based = new HashSet<>();
+
+	private TraceRecorder() {}
+
+	public static TraceRecorder getInstance() {
+		return INSTANCE;
+	}
+
+	public boolean isRecording() {
+		return writer != null;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Начать запись (или дополнить идущую) указанными трекерами.
+	 * @return сколько трекеров добавлено
+	 */
+	public int start(MinecraftServer server, Collection<ContainerTracker> trackers) throws IOException {
+		if (writer == null) {
+			Path directory = server.getWorldPath(LevelResource.ROOT).resolve("data")
+					.resolve(ItemFlowMonitor.MOD_ID).resolve(DIRECTORY);
+			Files.createDirectories(directory);
+			file = directory.resolve("trace-" + LocalDateTime.now().format(FILE_TIME) + ".ifmt");
+			stream = new BackgroundStream(Files.newOutputStream(file), file);
+			writer = new TraceWriter(stream, itemId -> BuiltInRegistries.ITEM.getKey(Item.byId(itemId)).toString());
+		}
+		int added = 0;
+		try {
+			for (ContainerTracker tracker : trackers) {
+				if (trackerIds.containsKey(tracker.getPos())) continue;
+				int id = trackerIds.size();
+				trackerIds.put(tracker.getPos(), id);
+				writer.defineTracker(id, tracker.getPos().asLong(), tracker.getDimension(), tracker.itemFilter(),
+						tracker.getMode() == TrackingMode.AUTO && tracker.getTrackedItem() == null,
+						tracker.getPeriod().getTicks(), tracker.getStartTick());
+				added++;
+			}
+		} catch (IOException e) {
+			abort(e);
+			throw e;
+		}
+		return added;
+	}
+
+	/** Наблюдение observer'а (вызывается только во время записи) */
+	void observe(BlockPos pos, SlotSnapshot previous, SlotSnapshot current, long currentTick) {
+		Integer id = trackerIds.get(pos);
+		if (id == null) return;
+		IOException failure = stream.failure;
+		if (failure != null) {
+			abort(failure);
+			return;
+		}
+		try {
+			if (based.add(pos) && previous != null) {
+				// Первое наблюдение в трассе: база — предыдущий снимок, чтобы не потерять изменения этого тика
+				writer.observe(id, currentTick, null, previous);
+			}
+			writer.observe(id, currentTick, previous, current);
+		} catch (IOException e) {
+			abort(e);
+		}
+	}
+
+	/** Остановить запись; null — запись не шла. Хвост трассы дописывается в фоне */
+	public Result stop() {
+		if (writer == null) return null;
+		Result result = new Result(file, trackerIds.size(), writer.getObservations(), writer.getBytes());
+		try {
+			writer.close();
+		} catch (IOException e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: не удалось дописать трассу {}: {}", file, e.getMessage());
+		}
+		reset();
+		return result;
+	}
+
+	/** Остановка сервера: закрыть трассу и дождаться, пока фоновый поток её допишет */
+	public void shutdown() {
+		BackgroundStream closing = stream;
+		stop();
+		if (closing == null) return;
+		try {
+			if (!closing.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				ItemFlowMonitor.LOGGER.warn("IFM: трасса {} не дописана за {} с", closing.file, SHUTDOWN_TIMEOUT_SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/** Ошибка записи — трасса обрывается, прочитанная часть остаётся пригодной для воспроизведения */
+	private void abort(IOException e) {
+		ItemFlowMonitor.LOGGER.warn("IFM: запись трассы {} остановлена: {}", file, e.getMessage());
+		try {
+			writer.close();
+		} catch (IOException ignored) {
+			// Файл уже повреждён — читатель остановится на обрыве
+		}
+		reset();
+	}
+
+	private void reset() {
+		writer = null;
+		stream = null;
+		file = null;
+		trackerIds.clear();
+		based.clear();
+	}
+
+	/**
+	 * Поток файла трассы с записью в фоновом потоке. Сюда приходят блоки буфера TraceWriter (64 КБ) —
+	 * серверный поток только копирует блок и ставит его в очередь. Ошибка фоновой записи сохраняется
+	 * в failure, дальнейшие блоки отбрасываются.
+	 */
+	private static final class BackgroundStream extends OutputStream {
+		private final OutputStream out;
+		private final Path file;
+		private final ExecutorService executor;
+		/** Байт в очереди на запись */
+		private final AtomicLong pending = new AtomicLong();
+		private volatile IOException failure;
+
+		BackgroundStream(OutputStream out, Path file) {
+			this.out = out;
+			this.file = file;
+			this.executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "IFM-Trace");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			if (failure != null) throw failure;
+			if (pending.addAndGet(len) > MAX_PENDING_BYTES) {
+				pending.addAndGet(-len);
+				throw new IOException("диск не успевает за записью трассы");
+			}
+			// BufferedOutputStream переиспользует свой буфер — блок копируется
+			byte[] block = Arrays.copyOfRange(b, off, off + len);
+			executor.execute(() -> {
+				try {
+					if (failure == null) {
+						out.write(block);
+					}
+				} catch (IOException e) {
+					failure = e;
+				} finally {
+					pending.addAndGet(-block.length);
+				}
+			});
+		}
+
+		@Override
+		public void close() {
+			executor.execute(() -> {
+				try {
+					out.close();
+				} catch (IOException e) {
+					ItemFlowMonitor.LOGGER.warn("IFM: не удалось закрыть трассу {}: {}", file, e.getMessage());
+				}
+				if (failure != null) {
+					ItemFlowMonitor.LOGGER.warn("IFM: трасса {} оборвана: {}", file, failure.getMessage());
+				}
+			});
+			executor.shutdown();
+		}
+	}
+}
@@ -1,15 +1,22 @@
 package com.itemflowmonitor.tracker;
 
+import com.itemflowmonitor.core.SpatialIndex;
+import com.itemflowmonitor.core.TimerWheel;
+import com.itemflowmonitor.core.TrackerRegistry;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.core.BlockPos;
 
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Глобальный реестр трекеров контейнеров.
- * Синглтон, хранит все активные трекеры по позициям блоков.
+ * Синглтон поверх TrackerRegistry из core: хранит все активные трекеры по позициям блоков
+ * и добавляет побочные эффекты мода (хранилище регионов).
+ * Трекеры меняются только на серверном потоке; другим потокам — getSummaries().
  */
 public class TrackerManager {
 	private static final TrackerManager INSTANCE = new TrackerManager();
@@ -17,9 +24,22 @@ public class TrackerManager {
 	/** Максимальное количество трекеров на одного игрока */
 	public static final int MAX_TRACKERS_PER_PLAYER = 100;
 
-	private final Map<BlockPos, ContainerTracker> trackers = new HashMap<>();
-	/** Игроки, которые сейчас смотрят в контейнер с трекером */
-	private final Map<UUID, BlockPos> activeViewers = new HashMap<>();
+	/** Наибольший интервал между проверками трекера: валидация блока, ghost-таймаут, гибернация (10 секунд) */
+	public static final int CHECK_INTERVAL_TICKS = 200;
+
+	private final TrackerRegistry<BlockPos, ContainerTracker> trackers = new TrackerRegistry<>();
+
+	/** Упакованные позиции трекеров — проверка из LevelChunkMixin на каждую смену блока без BlockPos-хеширования */
+	private final LongOpenHashSet positions = new LongOpenHashSet();
+
+	/** Трекеры по чанкам — запросы по области не обходят все трекеры */
+	private final SpatialIndex<BlockPos> spatial = new SpatialIndex<>();
+
+	/** Расписание проверок: каждый трекер в своей фазе интервала — нагрузка ровно распределена по тикам */
+	private final TimerWheel<BlockPos> checks = new TimerWheel<>();
+
+	/** Снимок сводок трекеров для чтения с других потоков */
+	private final TrackerSummaries summaries = new TrackerSummaries();
 
 	private TrackerManager() {}
 
@@ -29,7 +49,16 @@ public class TrackerManager {
 
 	/** Получить трекер для позиции или создать новый */
 	public ContainerTracker getOrCreate(BlockPos pos) {
-		return trackers.computeIfAbsent(pos, ContainerTracker::new);
+		ContainerTracker tracker = trackers.get(pos);
+		if (tracker == null) {
+			tracker = trackers.getOrCreate(pos, ContainerTracker::new);
+			positions.add(pos.asLong());
+			spatial.add(pos, pos.getX(), pos.getZ());
+			summaries.added(tracker);
+			tracker.setStateListener(summaries::stateChanged);
+			checks.scheduleAfter(pos, checkPhase(pos));
+		}
+		return tracker;
 	}
 
 	/** Получить трекер для позиции (null если нет) */
@@ -37,28 +66,89 @@ public class TrackerManager {
 		return trackers.get(pos);
 	}
 
-	/** Удалить трекер для позиции */
+	/** Удалить трекер для позиции (регион хранилища будет перезаписан без него) */
 	public void remove(BlockPos pos) {
-		trackers.remove(pos);
+		ContainerTracker tracker = trackers.remove(pos);
+		positions.remove(pos.asLong());
+		spatial.remove(pos, pos.getX(), pos.getZ());
+		checks.cancel(pos);
+		if (tracker != null) {
+			tracker.setStateListener(null);
+			summaries.removed(pos, tracker);
+			TrackerStorage.markRemoved(tracker.getDimension(), pos);
+		}
 	}
 
 	/** Есть ли трекер для данной позиции */
 	public boolean hasTracker(BlockPos pos) {
-		return trackers.containsKey(pos);
+		return trackers.contains(pos);
+	}
+
+	/** Есть ли трекер на упакованной позиции (BlockPos.asLong) — для hot path смены блоков */
+	public boolean isTrackedPosition(long packedPos) {
+		return positions.contains(packedPos);
 	}
 
 	/** Перенести трекер с одной позиции на другую (при разрушении половины двойного сундука) */
 	public boolean moveTracker(BlockPos from, BlockPos to) {
-		ContainerTracker tracker = trackers.remove(from);
+		ContainerTracker tracker = trackers.move(from, to);
 		if (tracker == null) return false;
+		positions.remove(from.asLong());
+		positions.add(to.asLong());
+		spatial.remove(from, from.getX(), from.getZ());
+		spatial.add(to, to.getX(), to.getZ());
+		summaries.moved(from, to);
+		checks.cancel(from);
+		checks.scheduleAfter(to, checkPhase(to));
+		// История выгруженного трекера лежит в регионе по старой позиции — поднимаем её до переноса
+		PackedHistory.Packed baseline = TrackerStorage.wake(tracker);
+		// Старая позиция могла лежать в другом регионе хранилища
+		TrackerStorage.markRemoved(tracker.getDimension(), from);
 		tracker.setPos(to);
-		trackers.put(to, tracker);
+		// Снимок observer'а на момент гибернации — база для первого сравнения на новой позиции
+		ContainerObserver.getInstance().importSnapshot(to, baseline);
 		return true;
 	}
 
+	/** Трекеры измерения внутри параллелепипеда между углами a и b (границы включительно) */
+	public List<ContainerTracker> getTrackersInBox(String dimension, BlockPos a, BlockPos b) {
+		int minX = Math.min(a.getX(), b.getX());
+		int minY = Math.min(a.getY(), b.getY());
+		int minZ = Math.min(a.getZ(), b.getZ());
+		int maxX = Math.max(a.getX(), b.getX());
+		int maxY = Math.max(a.getY(), b.getY());
+		int maxZ = Math.max(a.getZ(), b.getZ());
+		List<ContainerTracker> result = new ArrayList<>();
+		spatial.query(minX, minZ, maxX, maxZ, pos -> {
+			if (pos.getX() < minX || pos.getX() > maxX || pos.getY() < minY || pos.getY() > maxY
+					|| pos.getZ() < minZ || pos.getZ() > maxZ) return;
+			addIfInDimension(result, pos, dimension);
+		});
+		return result;
+	}
+
+	/** Трекеры измерения не дальше radius блоков от center (по центрам блоков) */
+	public List<ContainerTracker> getTrackersInRadius(String dimension, BlockPos center, double radius) {
+		int r = (int) Math.ceil(radius);
+		double radiusSq = radius * radius;
+		List<ContainerTracker> result = new ArrayList<>();
+		spatial.query(center.getX() - r, center.getZ() - r, center.getX() + r, center.getZ() + r, pos -> {
+			if (pos.distSqr(center) > radiusSq) return;
+			addIfInDimension(result, pos, dimension);
+		});
+		return result;
+	}
+
+	private void addIfInDimension(List<ContainerTracker> result, BlockPos pos, String dimension) {
+		ContainerTracker tracker = trackers.get(pos);
+		if (tracker != null && tracker.getDimension().equals(dimension)) {
+			result.add(tracker);
+		}
+	}
+
 	/** Все трекеры (для сериализации) */
 	public Map<BlockPos, ContainerTracker> getAllTrackers() {
-		return Collections.unmodifiableMap(trackers);
+		return trackers.all();
 	}
 
 	/** Есть ли хотя бы один трекер (для оптимизации hot path в миксине) */
@@ -66,34 +156,88 @@ public class TrackerManager {
 		return !trackers.isEmpty();
 	}
 
-	/** Количество трекеров, принадлежащих игроку */
+	/** Количество трекеров, принадлежащих игроку (по индексу владельцев) */
 	public int countTrackersByOwner(UUID ownerUuid) {
-		int count = 0;
-		for (ContainerTracker tracker : trackers.values()) {
-			if (ownerUuid.equals(tracker.getOwnerUuid())) {
-				count++;
-			}
-		}
-		return count;
+		return trackers.ownerCount(ownerUuid);
+	}
+
+	/** Назначить владельца трекера — только через менеджер, чтобы индекс владельцев не расходился */
+	public void setOwner(ContainerTracker tracker, UUID ownerUuid) {
+		tracker.setOwnerUuid(ownerUuid);
+		trackers.setOwner(tracker.getPos(), ownerUuid);
+		summaries.invalidate(tracker.getPos());
 	}
 
 	/** Очистить все трекеры (при смене мира) */
 	public void clear() {
+		for (ContainerTracker tracker : trackers.all().values()) {
+			tracker.setStateListener(null);
+		}
 		trackers.clear();
-		activeViewers.clear();
+		positions.clear();
+		spatial.clear();
+		checks.clear();
+		summaries.clear();
+	}
+
+	// --- Сводки для других потоков ---
+
+	/** Последний опубликованный снимок сводок — безопасен вне серверного потока, как и peekSummaries() */
+	public TrackerSummaries.Snapshot getSummaries() {
+		return summaries.current();
+	}
+
+	/** Счётчики состояний из последнего снимка — чтение не считается потребителем сводок */
+	public TrackerSummaries.Snapshot peekSummaries() {
+		return summaries.peek();
+	}
+
+	/** Опубликовать снимок сводок (серверный поток, раз в тик); exporterRunning — снимок нужен экспортёру */
+	public void publishSummaries(long currentTick, boolean exporterRunning) {
+		summaries.publish(trackers.all(), currentTick, exporterRunning);
+	}
+
+	/** Настройки трекера изменены — сводка обновится на ближайшей публикации, а не в своём срезе */
+	public void markSummaryDirty(BlockPos pos) {
+		summaries.invalidate(pos);
+	}
+
+	// --- Расписание проверок ---
+
+	/**
+	 * Продвинуть расписание до currentTick; onDue вызывается для трекеров, чья проверка наступила.
+	 * Наступившая проверка снимается с расписания — колбэк планирует следующую (scheduleCheck) или удаляет трекер.
+	 */
+	public void advanceChecks(long currentTick, Consumer<BlockPos> onDue) {
+		checks.advance(currentTick, onDue);
+	}
+
+	/** Запланировать следующую проверку трекера на тик */
+	public void scheduleCheck(BlockPos pos, long tick) {
+		checks.schedule(pos, tick);
+	}
+
+	/** Фаза первой проверки по хешу позиции: трекеры, созданные одним тиком (загрузка мира), не проверяются разом */
+	private static int checkPhase(BlockPos pos) {
+		return 1 + (int) Math.floorMod(pos.asLong() * 0x9E3779B97F4A7C15L >>> 32, (long) CHECK_INTERVAL_TICKS);
 	}
 
 	// --- Зрители ---
 
 	public void setViewer(UUID playerId, BlockPos pos) {
-		activeViewers.put(playerId, pos);
+		trackers.setViewer(playerId, pos);
 	}
 
 	public void removeViewer(UUID playerId) {
-		activeViewers.remove(playerId);
+		trackers.removeViewer(playerId);
+	}
+
+	/** Смотрит ли кто-нибудь в контейнер (по индексу числа зрителей) */
+	public boolean hasViewers(BlockPos pos) {
+		return trackers.hasViewers(pos);
 	}
 
 	public Map<UUID, BlockPos> getActiveViewers() {
-		return Collections.unmodifiableMap(activeViewers);
+		return trackers.viewers();
 	}
 }
@@ -14,20 +14,30 @@ import net.minecraft.world.item.Item;
 import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.saveddata.SavedDataType;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
- * Сохраняемые данные трекеров — настройки + буфер событий + состояние rate.
- * Сериализуется через Codec, автосохраняется при сохранении мира.
+ * Формат записи трекера и прежнее хранилище в SavedData мира.
+ * Сейчас трекеры хранятся в TrackerStorage; SavedData только читается для миграции
+ * и очищается после первой успешной записи нового хранилища.
+ * Буфер событий хранится в упакованном виде (PackedHistory): палитра + байтовый массив.
+ * Старый формат (список EventEntry) читается для миграции и больше не записывается.
  */
 public class TrackerSavedData extends SavedData {
 
 	/** Прямая ссылка на текущий экземпляр (надёжнее, чем DataStorage.get) */
 	private static TrackerSavedData instance;
 
-	/** Запись одного события для сериализации (короткие имена полей для компактности) */
+	/** Байтовый массив как ByteArrayTag в NBT */
+	private static final Codec<byte[]> BYTES_CODEC = Codec.BYTE_BUFFER.xmap(buffer -> {
+		byte[] bytes = new byte[buffer.remaining()];
+		buffer.get(bytes);
+		return bytes;
+	}, ByteBuffer::wrap);
+
+	/** Запись одного события в старом формате — только для чтения сохранений до упаковки */
 	public record EventEntry(long tick, String itemId, int count) {
 		public static final Codec<EventEntry> CODEC = RecordCodecBuilder.create(inst ->
 			inst.group(
@@ -38,11 +48,16 @@ public class TrackerSavedData extends SavedData {
 		);
 	}
 
-	/** Одна запись трекера — настройки + полное состояние */
+	/**
+	 * Одна запись трекера — настройки + полное состояние.
+	 * hibernated — трекер в холодном хранилище: при загрузке в памяти остаётся только заглушка,
+	 * история и снимок observer'а (baseline) читаются из файла при пробуждении.
+	 */
 	public record TrackerEntry(
 			BlockPos pos, int mode, int period, int rateMode, String itemId,
 			long startTick, double smoothedRate, List<EventEntry> events,
-			String ownerUuid, String dimension
+			String ownerUuid, String dimension, List<String> palette, byte[] history,
+			boolean hibernated, double hibernatedRate, List<String> baselinePalette, byte[] baseline
 	) {
 		public static final Codec<TrackerEntry> CODEC = RecordCodecBuilder.create(inst ->
 			inst.group(
@@ -55,13 +70,29 @@ public class TrackerSavedData extends SavedData {
 				Codec.DOUBLE.optionalFieldOf("smoothedRate", -1.0).forGetter(TrackerEntry::smoothedRate),
 				EventEntry.CODEC.listOf().optionalFieldOf("events", List.of()).forGetter(TrackerEntry::events),
 				Codec.STRING.optionalFieldOf("owner", "").forGetter(TrackerEntry::ownerUuid),
-				Codec.STRING.optionalFieldOf("dim", "minecraft:overworld").forGetter(TrackerEntry::dimension)
+				Codec.STRING.optionalFieldOf("dim", "minecraft:overworld").forGetter(TrackerEntry::dimension),
+				Codec.STRING.listOf().optionalFieldOf("palette", List.of()).forGetter(TrackerEntry::palette),
+				BYTES_CODEC.optionalFieldOf("history", new byte[0]).forGetter(TrackerEntry::history),
+				Codec.BOOL.optionalFieldOf("hibernated", false).forGetter(TrackerEntry::hibernated),
+				Codec.DOUBLE.optionalFieldOf("hibernatedRate", 0.0).forGetter(TrackerEntry::hibernatedRate),
+				Codec.STRING.listOf().optionalFieldOf("baselinePalette", List.of()).forGetter(TrackerEntry::baselinePalette),
+				BYTES_CODEC.optionalFieldOf("baseline", new byte[0]).forGetter(TrackerEntry::baseline)
 			).apply(inst, TrackerEntry::new)
 		);
+
+		/** Упакованная история записи */
+		public PackedHistory.Packed packedHistory() {
+			return new PackedHistory.Packed(palette, history);
+		}
+
+		/** Снимок observer'а (пустой, если не сохранялся) */
+		public PackedHistory.Packed packedBaseline() {
+			return new PackedHistory.Packed(baselinePalette, baseline);
+		}
 	}
 
-	/** Записи, загруженные с диска (используются только при первой загрузке) */
-	private List<TrackerEntry> loadedEntries;
+	/** Записи, загруженные с диска (пусто после миграции) */
+	private final List<TrackerEntry> loadedEntries;
 
 	public static final Codec<TrackerSavedData> CODEC = RecordCodecBuilder.create(inst ->
 		inst.group(
@@ -80,136 +111,125 @@ public class TrackerSavedData extends SavedData {
 		this.loadedEntries = new ArrayList<>(entries);
 	}
 
-	/**
-	 * Вызывается Codec при сериализации — строит полный снимок из TrackerManager.
-	 */
+	/** Вызывается Codec при сериализации — только ещё не мигрированные записи */
 	public List<TrackerEntry> getEntries() {
-		TrackerManager manager = TrackerManager.getInstance();
-		List<TrackerEntry> result = new ArrayList<>();
-		for (Map.Entry<BlockPos, ContainerTracker> entry : manager.getAllTrackers().entrySet()) {
-			ContainerTracker tracker = entry.getValue();
-			String itemId = "";
-			if (tracker.getTrackedItem() != null) {
-				itemId = BuiltInRegistries.ITEM.getKey(tracker.getTrackedItem()).toString();
-			}
-
-			// Сериализация буфера событий
-			List<EventEntry> eventEntries = new ArrayList<>();
-			for (ContainerTracker.ItemEvent event : tracker.getEvents()) {
-				String eventItemId = BuiltInRegistries.ITEM.getKey(event.item()).toString();
-				eventEntries.add(new EventEntry(event.tick(), eventItemId, event.count()));
-			}
-
-			String ownerUuid = tracker.getOwnerUuid() != null ? tracker.getOwnerUuid().toString() : "";
-
-			result.add(new TrackerEntry(
-				entry.getKey(),
-				tracker.getMode().ordinal(),
-				tracker.getPeriod().ordinal(),
-				tracker.getRateMode().ordinal(),
-				itemId,
-				tracker.getStartTick(),
-				tracker.getSmoothedRate(),
-				eventEntries,
-				ownerUuid,
-				tracker.getDimension()
-			));
-		}
-		ItemFlowMonitor.LOGGER.debug("IFM: сериализация {} трекеров для сохранения", result.size());
-		return result;
+		return loadedEntries;
 	}
 
-	/** Инициализировать из DataStorage при старте сервера */
-	public static void init(MinecraftServer server) {
-		TrackerManager.getInstance().clear();
+	/** Прочитать записи прежнего формата из DataStorage (пустой список, если их нет) */
+	public static List<TrackerEntry> loadLegacy(MinecraftServer server) {
 		try {
 			instance = server.overworld().getDataStorage().computeIfAbsent(TYPE);
-			instance.loadIntoManager(server.overworld().getGameTime());
+			return List.copyOf(instance.loadedEntries);
 		} catch (Exception e) {
 			// Повреждённые данные — создаём пустой экземпляр, мир загружается
-			ItemFlowMonitor.LOGGER.warn("IFM: ошибка загрузки данных трекеров, настройки сброшены: {}", e.getMessage());
+			ItemFlowMonitor.LOGGER.warn("IFM: ошибка чтения прежних данных трекеров: {}", e.getMessage());
 			instance = new TrackerSavedData();
+			return List.of();
 		}
 	}
 
-	/** Загрузить сохранённые данные в TrackerManager */
-	public void loadIntoManager(long currentGameTime) {
-		TrackerManager manager = TrackerManager.getInstance();
-		int loaded = 0;
+	/** Очистить прежнее хранилище — вызывается после того, как записи надёжно легли в TrackerStorage */
+	public static void clearLegacy() {
+		if (instance != null && !instance.loadedEntries.isEmpty()) {
+			instance.loadedEntries.clear();
+			instance.setDirty();
+			ItemFlowMonitor.LOGGER.info("IFM: данные трекеров перенесены из SavedData мира");
+		}
+	}
 
-		for (TrackerEntry entry : loadedEntries) {
-			try {
-				ContainerTracker tracker = manager.getOrCreate(entry.pos());
-				// Ghost-check: отсчёт с момента загрузки мира
-				tracker.setLastViewerTick(currentGameTime);
+	/** Запись из упакованных истории и снимка observer'а (вызывается и из фонового потока) */
+	public static TrackerEntry toEntry(BlockPos pos, int mode, int period, int rateMode, String itemId,
+									   long startTick, double smoothedRate, PackedHistory.Packed history,
+									   String ownerUuid, String dimension,
+									   boolean hibernated, double hibernatedRate, PackedHistory.Packed baseline) {
+		return new TrackerEntry(pos, mode, period, rateMode, itemId, startTick, smoothedRate,
+				List.of(), ownerUuid, dimension, history.palette(), history.data(),
+				hibernated, hibernatedRate, baseline.palette(), baseline.data());
+	}
 
-				TrackingMode[] modes = TrackingMode.values();
-				if (entry.mode() >= 0 && entry.mode() < modes.length) {
-					tracker.setMode(modes[entry.mode()]);
-				}
+	/**
+	 * Применить запись к TrackerManager.
+	 * @return true если трекер восстановлен, false если запись повреждена
+	 */
+	public static boolean applyEntry(TrackerManager manager, TrackerEntry entry, long currentGameTime) {
+		try {
+			ContainerTracker tracker = manager.getOrCreate(entry.pos());
+			// Ghost-check: отсчёт с момента загрузки мира
+			tracker.setLastViewerTick(currentGameTime);
 
-				TrackingPeriod[] periods = TrackingPeriod.values();
-				if (entry.period() >= 0 && entry.period() < periods.length) {
-					tracker.setPeriod(periods[entry.period()]);
-				}
+			TrackingMode[] modes = TrackingMode.values();
+			if (entry.mode() >= 0 && entry.mode() < modes.length) {
+				tracker.setMode(modes[entry.mode()]);
+			}
 
-				RateMode[] rateModes = RateMode.values();
-				if (entry.rateMode() >= 0 && entry.rateMode() < rateModes.length) {
-					tracker.setRateMode(rateModes[entry.rateMode()]);
-				}
+			TrackingPeriod[] periods = TrackingPeriod.values();
+			if (entry.period() >= 0 && entry.period() < periods.length) {
+				tracker.setPeriod(periods[entry.period()]);
+			}
 
-				if (!entry.itemId().isEmpty()) {
-					try {
-						Item item = BuiltInRegistries.ITEM.get(Identifier.parse(entry.itemId()))
-							.map(ref -> ref.value()).orElse(null);
-						tracker.setTrackedItem(item);
-					} catch (Exception e) {
-						// Невалидный itemId — пропускаем предмет
-					}
-				}
+			RateMode[] rateModes = RateMode.values();
+			if (entry.rateMode() >= 0 && entry.rateMode() < rateModes.length) {
+				tracker.setRateMode(rateModes[entry.rateMode()]);
+			}
 
-				// Восстановление буфера событий и состояния rate
-				List<ContainerTracker.ItemEvent> loadedEvents = new ArrayList<>();
-				for (EventEntry eventEntry : entry.events()) {
-					try {
-						Item eventItem = BuiltInRegistries.ITEM.get(Identifier.parse(eventEntry.itemId()))
-							.map(ref -> ref.value()).orElse(null);
-						if (eventItem != null) {
-							loadedEvents.add(new ContainerTracker.ItemEvent(
-								eventEntry.tick(), eventItem, eventEntry.count()));
-						}
-					} catch (Exception e) {
-						// Невалидное событие — пропускаем
-					}
-				}
-				tracker.restoreState(entry.startTick(), entry.smoothedRate(), loadedEvents);
-
-				// Восстановление владельца трекера
-				if (!entry.ownerUuid().isEmpty()) {
-					try {
-						tracker.setOwnerUuid(java.util.UUID.fromString(entry.ownerUuid()));
-					} catch (IllegalArgumentException e) {
-						// Невалидный UUID — игнорируем
-					}
+			if (!entry.itemId().isEmpty()) {
+				try {
+					Item item = BuiltInRegistries.ITEM.get(Identifier.parse(entry.itemId()))
+						.map(ref -> ref.value()).orElse(null);
+					tracker.setTrackedItem(item);
+				} catch (Exception e) {
+					// Невалидный itemId — пропускаем предмет
 				}
+			}
 
-				// Восстановление dimension
-				tracker.setDimension(entry.dimension());
-				loaded++;
-			} catch (Exception e) {
-				// Повреждённая запись — пропускаем, продолжаем с остальными
-				ItemFlowMonitor.LOGGER.warn("IFM: пропущен повреждённый трекер при загрузке: {}", e.getMessage());
+			// Восстановление состояния rate. Упакованная история не распаковывается до первого обращения —
+			// время загрузки не зависит от объёма сохранённой истории
+			if (entry.hibernated()) {
+				// Холодный трекер — история остаётся на диске до пробуждения
+				tracker.restoreState(entry.startTick(), entry.smoothedRate(), currentGameTime, List.of());
+				tracker.hibernate(entry.hibernatedRate());
+			} else if (entry.history().length > 0) {
+				tracker.restoreState(entry.startTick(), entry.smoothedRate(), currentGameTime, entry.packedHistory());
+			} else {
+				tracker.restoreState(entry.startTick(), entry.smoothedRate(), currentGameTime, decodeLegacyEvents(entry.events()));
 			}
-		}
 
-		ItemFlowMonitor.LOGGER.debug("IFM: загружено {}/{} трекеров из сохранения", loaded, loadedEntries.size());
+			// Восстановление владельца трекера
+			if (!entry.ownerUuid().isEmpty()) {
+				try {
+					manager.setOwner(tracker, java.util.UUID.fromString(entry.ownerUuid()));
+				} catch (IllegalArgumentException e) {
+					// Невалидный UUID — игнорируем
+				}
+			}
+
+			// Восстановление dimension
+			tracker.setDimension(entry.dimension());
+			return true;
+		} catch (Exception e) {
+			// Повреждённая запись — пропускаем, продолжаем с остальными
+			ItemFlowMonitor.LOGGER.warn("IFM: пропущен повреждённый трекер при загрузке: {}", e.getMessage());
+			return false;
+		}
 	}
 
-	/** Пометить dirty (вызывать при изменении настроек или записи событий) */
-	public static void markDirty() {
-		if (instance != null) {
-			instance.setDirty();
+	/** Старый формат: по записи с полным id предмета на событие */
+	private static List<ContainerTracker.ItemEvent> decodeLegacyEvents(List<EventEntry> entries) {
+		List<ContainerTracker.ItemEvent> loadedEvents = new ArrayList<>();
+		for (EventEntry eventEntry : entries) {
+			try {
+				Item eventItem = BuiltInRegistries.ITEM.get(Identifier.parse(eventEntry.itemId()))
+					.map(ref -> ref.value()).orElse(null);
+				if (eventItem != null) {
+					loadedEvents.add(new ContainerTracker.ItemEvent(
+						eventEntry.tick(), eventItem, eventEntry.count()));
+				}
+			} catch (Exception e) {
+				// Невалидное событие — пропускаем
+			}
 		}
+		return loadedEvents;
 	}
 
 	/** Очистить ссылку при остановке сервера */
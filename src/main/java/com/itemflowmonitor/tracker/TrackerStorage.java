@@ -0,0 +1,519 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.ItemFlowMonitor;
+import com.itemflowmonitor.metrics.Phase;
+import com.itemflowmonitor.metrics.StorageSaveEvent;
+import com.itemflowmonitor.metrics.TickMetrics;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtAccounter;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtOps;
+import net.minecraft.nbt.Tag;
+import net.minecraft.resources.Identifier;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Хранилище трекеров в собственных файлах мира, по одному на измерение и регион 32x32 чанка:
+ * data/itemflowmonitor/{namespace}/{path}/r.{x}.{z}.dat (например minecraft/overworld/r.0.-1.dat).
+ * При сохранении перезаписываются только регионы с изменившимися трекерами (или удалёнными из них),
+ * поэтому объём записи зависит от активности, а не от общего числа трекеров.
+ * Трекеры, долго простаивающие без viewer'ов, выгружаются в холодное хранилище: история и снимок observer'а
+ * остаются только в файле региона и читаются обратно, когда контейнер снова открывают.
+ * На серверном потоке снимается дешёвый неизменяемый снимок (настройки + копия списка событий),
+ * упаковка истории, кодирование в NBT, сжатие и атомарная запись файлов идут в фоновом потоке.
+ */
+public class TrackerStorage {
+	private static final String DIRECTORY = "itemflowmonitor";
+	private static final String JOURNAL_DIRECTORY = "journal";
+	private static final int FORMAT_VERSION = 1;
+	/** Сдвиг координаты блока к региону: 32 чанка × 16 блоков */
+	private static final int REGION_SHIFT = 9;
+	/** Сколько ждать завершения записи при остановке сервера */
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+	/** На сколько тиков разносятся первые сканы загруженных трекеров */
+	private static final int WARMUP_SPREAD_TICKS = 100;
+	/** Число блокировок файлов регионов (регион → блокировка по хешу) */
+	private static final int REGION_LOCKS = 64;
+
+	private static TrackerStorage instance;
+
+	private final MinecraftServer server;
+	private final Path directory;
+	private final ExecutorService executor;
+	/**
+	 * Блокировки файлов регионов: фоновый поток держит её только на время замены файла,
+	 * пробуждение — на время чтения. Пробуждение не ждёт очередь записи.
+	 */
+	private final Object[] regionLocks = new Object[REGION_LOCKS];
+	/** Регионы, из которых удалены или перенесены трекеры (только серверный поток) */
+	private final Set<ShardKey> dirtyShards = new HashSet<>();
+	/** После первой успешной записи нужно очистить прежний SavedData */
+	private boolean legacyCleanupPending;
+	/** Фоновый поток успешно записал мигрированные данные */
+	private volatile boolean legacyMigrated;
+
+	/** Файл хранилища: измерение + регион 32x32 чанка */
+	private record ShardKey(String dimension, int regionX, int regionZ) {
+		static ShardKey of(String dimension, BlockPos pos) {
+			return new ShardKey(dimension, pos.getX() >> REGION_SHIFT, pos.getZ() >> REGION_SHIFT);
+		}
+
+		Path resolve(Path root) {
+			Identifier id = Identifier.tryParse(dimension);
+			Path dimensionDir = id != null
+					? root.resolve(id.getNamespace()).resolve(id.getPath())
+					: root.resolve("unknown");
+			return dimensionDir.resolve("r." + regionX + "." + regionZ + ".dat");
+		}
+	}
+
+	/**
+	 * Неизменяемый снимок трекера — всё, что нужно фоновому потоку.
+	 * cold — трекер уже в холодном хранилище: его история и baseline переносятся из прежнего файла региона.
+	 */
+	private record TrackerSnapshot(
+			BlockPos pos, int mode, int period, int rateMode, String itemId,
+			long startTick, double smoothedRate, List<ContainerTracker.ItemEvent> events,
+			PackedHistory.Packed packed, String ownerUuid, String dimension,
+			boolean cold, boolean hibernated, double hibernatedRate, PackedHistory.Packed baseline
+	) {
+		static TrackerSnapshot capture(BlockPos pos, ContainerTracker tracker) {
+			// Снимок observer'а — база для первого сравнения после перезапуска
+			PackedHistory.Packed baseline = tracker.isHibernated()
+					? PackedHistory.Packed.EMPTY
+					: ContainerObserver.getInstance().exportSnapshot(pos);
+			return capture(pos, tracker, tracker.isHibernated(), tracker.getHibernatedRate(), baseline);
+		}
+
+		static TrackerSnapshot capture(BlockPos pos, ContainerTracker tracker,
+									   boolean hibernated, double hibernatedRate, PackedHistory.Packed baseline) {
+			String itemId = "";
+			if (tracker.getTrackedItem() != null) {
+				itemId = BuiltInRegistries.ITEM.getKey(tracker.getTrackedItem()).toString();
+			}
+			String ownerUuid = tracker.getOwnerUuid() != null ? tracker.getOwnerUuid().toString() : "";
+			boolean cold = tracker.isHibernated();
+			// Нераспакованная история записывается как есть — без распаковки и повторной упаковки
+			PackedHistory.Packed packed = tracker.getPackedHistory();
+			return new TrackerSnapshot(
+					pos,
+					tracker.getMode().ordinal(),
+					tracker.getPeriod().ordinal(),
+					tracker.getRateMode().ordinal(),
+					itemId,
+					tracker.getStartTick(),
+					tracker.getSmoothedRate(),
+					// ItemEvent неизменяем — достаточно скопировать ссылки
+					cold || packed != null ? List.of() : List.copyOf(tracker.getEvents()),
+					packed,
+					ownerUuid,
+					tracker.getDimension(),
+					cold,
+					hibernated,
+					hibernatedRate,
+					baseline
+			);
+		}
+
+		/** @param previous запись этого трекера в прежнем файле региона (нужна только для cold) */
+		TrackerSavedData.TrackerEntry toEntry(TrackerSavedData.TrackerEntry previous) {
+			PackedHistory.Packed history;
+			PackedHistory.Packed savedBaseline = baseline;
+			if (cold) {
+				if (previous == null) {
+					ItemFlowMonitor.LOGGER.warn("IFM: история выгруженного трекера {} не найдена при перезаписи региона", pos);
+				}
+				history = previous != null ? previous.packedHistory() : PackedHistory.Packed.EMPTY;
+				savedBaseline = previous != null ? previous.packedBaseline() : PackedHistory.Packed.EMPTY;
+			} else {
+				history = packed != null ? packed : PackedHistory.encode(events);
+			}
+			return TrackerSavedData.toEntry(pos, mode, period, rateMode, itemId, startTick, smoothedRate,
+					history, ownerUuid, dimension, hibernated, hibernatedRate, savedBaseline);
+		}
+	}
+
+	private TrackerStorage(MinecraftServer server, Path directory) {
+		this.server = server;
+		this.directory = directory;
+		for (int i = 0; i < REGION_LOCKS; i++) {
+			regionLocks[i] = new Object();
+		}
+		this.executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "IFM-Storage");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** Загрузить трекеры при старте сервера (файлы регионов или миграция из SavedData) */
+	public static void init(MinecraftServer server) {
+		long start = TickMetrics.start();
+		TrackerManager manager = TrackerManager.getInstance();
+		manager.clear();
+
+		Path directory = server.getWorldPath(LevelResource.ROOT).resolve("data").resolve(DIRECTORY);
+		instance = new TrackerStorage(server, directory);
+		long gameTime = server.overworld().getGameTime();
+
+		List<TrackerSavedData.TrackerEntry> entries = instance.readShards();
+		boolean migrating = entries == null;
+		if (migrating) {
+			// Файлов регионов ещё нет — переносим данные из SavedData мира
+			entries = TrackerSavedData.loadLegacy(server);
+			instance.legacyCleanupPending = !entries.isEmpty();
+		}
+
+		ContainerObserver observer = ContainerObserver.getInstance();
+		Map<BlockPos, PackedHistory.Packed> baselines = new HashMap<>();
+		int loaded = 0;
+		for (TrackerSavedData.TrackerEntry entry : entries) {
+			if (!TrackerSavedData.applyEntry(manager, entry, gameTime)) continue;
+			if (!entry.hibernated()) {
+				baselines.put(entry.pos(), entry.packedBaseline());
+				// Первые сканы (и таймеры ghost-паузы) разнесены по тикам, а не все в первом тике
+				long warmupTick = gameTime + loaded % WARMUP_SPREAD_TICKS;
+				observer.scheduleWarmup(entry.pos(), warmupTick);
+				manager.getTracker(entry.pos()).setLastViewerTick(warmupTick);
+			}
+			loaded++;
+		}
+		if (!migrating) {
+			// Загруженное уже лежит на диске; мигрированные трекеры остаются dirty и запишутся при первом сохранении
+			for (ContainerTracker tracker : manager.getAllTrackers().values()) {
+				tracker.clearPersistDirty();
+			}
+		}
+		ItemFlowMonitor.LOGGER.debug("IFM: загружено {}/{} трекеров из сохранения", loaded, entries.size());
+
+		// События после последнего сохранения (сервер остановился аварийно) — из журнала.
+		// Проигранные трекеры становятся dirty; сегменты удалятся после их записи
+		Path journal = directory.resolve(JOURNAL_DIRECTORY);
+		Set<BlockPos> replayed = EventJournal.replay(journal, manager);
+		for (var baseline : baselines.entrySet()) {
+			// База проигранных трекеров старше их событий — сравнение с ней посчитало бы события повторно.
+			// Для остальных сравнение с сохранённой базой учтёт предметы, пришедшие пока мир был выгружен
+			if (!replayed.contains(baseline.getKey())) {
+				observer.importSnapshot(baseline.getKey(), baseline.getValue());
+			}
+		}
+		if (!replayed.isEmpty()) {
+			ItemFlowMonitor.LOGGER.info("IFM: события {} трекеров восстановлены из журнала", replayed.size());
+		}
+		EventJournal.open(journal);
+		TickMetrics.stop(Phase.STORAGE_LOAD, start, loaded);
+	}
+
+	/** Трекер удалён или перенесён — его прежний регион нужно перезаписать без него */
+	public static void markRemoved(String dimension, BlockPos pos) {
+		if (instance != null) {
+			instance.dirtyShards.add(ShardKey.of(dimension, pos));
+		}
+	}
+
+	/**
+	 * Сохранение вместе с миром: на серверном потоке только снимок трекеров из изменившихся регионов,
+	 * всё остальное — в фоновом потоке. Записи выполняются строго по очереди.
+	 */
+	public static void save(MinecraftServer server) {
+		if (instance == null) return;
+
+		long start = System.nanoTime();
+		Set<ShardKey> shardKeys = new HashSet<>(instance.dirtyShards);
+		for (var entry : TrackerManager.getInstance().getAllTrackers().entrySet()) {
+			if (entry.getValue().isPersistDirty()) {
+				shardKeys.add(ShardKey.of(entry.getValue().getDimension(), entry.getKey()));
+			}
+		}
+		if (shardKeys.isEmpty()) return;
+		// Все события до этого момента попадут в снимок — журнал до него можно будет удалить
+		long journalSegment = EventJournal.rotate();
+		Map<ShardKey, List<TrackerSnapshot>> shards = instance.captureShards(shardKeys, Map.of(), Map.of());
+		long snapshotNanos = System.nanoTime() - start;
+		TickMetrics.record(Phase.STORAGE_SNAPSHOT, snapshotNanos, shardKeys.size());
+
+		boolean cleanupLegacy = instance.legacyCleanupPending;
+		instance.legacyCleanupPending = false;
+		TrackerStorage storage = instance;
+		storage.submitWrites(shards, writeNanos -> {
+			ItemFlowMonitor.LOGGER.debug("IFM: сохранено {} регионов (снимок {} мкс на серверном потоке, запись {} мс в фоне)",
+					shards.size(), snapshotNanos / 1000, writeNanos / 1_000_000);
+			if (journalSegment >= 0) {
+				EventJournal.deleteBefore(storage.directory.resolve(JOURNAL_DIRECTORY), journalSegment);
+			}
+			if (cleanupLegacy) {
+				storage.legacyMigrated = true;
+				server.execute(TrackerSavedData::clearLegacy);
+			}
+		}, () -> storage.legacyCleanupPending |= cleanupLegacy);
+	}
+
+	/**
+	 * Выгрузить историю простаивающих трекеров в холодное хранилище.
+	 * Их регионы записываются сразу — с флагом гибернации и снимком observer'а; только после успешной записи
+	 * история освобождается и в памяти остаётся заглушка с настройками.
+	 * @param baselines кандидаты и их снимки observer'а
+	 * @param onHibernated вызывается на серверном потоке для каждого выгруженного трекера
+	 */
+	public static void hibernate(Map<BlockPos, PackedHistory.Packed> baselines, long currentTick,
+								 Consumer<BlockPos> onHibernated) {
+		if (instance == null || baselines.isEmpty()) return;
+		TrackerManager manager = TrackerManager.getInstance();
+
+		Map<BlockPos, ContainerTracker> candidates = new HashMap<>();
+		Map<BlockPos, Double> rates = new HashMap<>();
+		Set<ShardKey> shardKeys = new HashSet<>();
+		for (BlockPos pos : baselines.keySet()) {
+			ContainerTracker tracker = manager.getTracker(pos);
+			if (tracker == null || tracker.isHibernated()) continue;
+			candidates.put(pos, tracker);
+			rates.put(pos, tracker.getRate(currentTick));
+			shardKeys.add(ShardKey.of(tracker.getDimension(), pos));
+		}
+		if (candidates.isEmpty()) return;
+		Map<ShardKey, List<TrackerSnapshot>> shards = instance.captureShards(shardKeys, baselines, rates);
+
+		TrackerStorage storage = instance;
+		storage.submitWrites(shards, writeNanos -> storage.server.execute(() -> {
+			int hibernated = 0;
+			for (var candidate : candidates.entrySet()) {
+				ContainerTracker tracker = candidate.getValue();
+				// Трекер могли открыть, изменить или удалить, пока шла запись — тогда оставляем в памяти
+				if (manager.getTracker(candidate.getKey()) != tracker || !tracker.isPaused()
+						|| tracker.isPersistDirty() || tracker.isHibernated()) continue;
+				tracker.hibernate(rates.get(candidate.getKey()));
+				onHibernated.accept(candidate.getKey());
+				hibernated++;
+			}
+			ItemFlowMonitor.LOGGER.debug("IFM: {} трекеров выгружено в холодное хранилище", hibernated);
+		}), () -> {});
+	}
+
+	/**
+	 * Пробудить трекер из холодного хранилища: история читается из файла региона напрямую, не через очередь записи.
+	 * Запись гибернации к этому моменту уже на диске (флаг ставится после неё), а последующие перезаписи региона
+	 * переносят запись спящего трекера из прежнего файла; файл заменяется атомарно под блокировкой региона —
+	 * серверный поток ждёт только чтения одного файла, а не всю очередь (например, автосохранение).
+	 * @return снимок observer'а на момент гибернации (пустой, если трекер не спал или снимка нет)
+	 */
+	public static PackedHistory.Packed wake(ContainerTracker tracker) {
+		if (!tracker.isHibernated()) return PackedHistory.Packed.EMPTY;
+		long start = TickMetrics.start();
+		BlockPos pos = tracker.getPos();
+		TrackerSavedData.TrackerEntry entry = null;
+		if (instance != null) {
+			ShardKey key = ShardKey.of(tracker.getDimension(), pos);
+			synchronized (instance.regionLock(key)) {
+				entry = findEntry(key.resolve(instance.directory), pos);
+			}
+		}
+		if (entry == null) {
+			ItemFlowMonitor.LOGGER.warn("IFM: история трекера {} не найдена в хранилище, продолжаем с пустой", pos);
+			tracker.wake(tracker.getStartTick(), -1, PackedHistory.Packed.EMPTY);
+			TickMetrics.stop(Phase.STORAGE_WAKE, start);
+			return PackedHistory.Packed.EMPTY;
+		}
+		tracker.wake(entry.startTick(), entry.smoothedRate(), entry.packedHistory());
+		TickMetrics.stop(Phase.STORAGE_WAKE, start);
+		return entry.packedBaseline();
+	}
+
+	/**
+	 * Снять все трекеры указанных регионов (регион перезаписывается целиком, в том числе неизменённые трекеры).
+	 * Удаления из этих регионов покрываются снимком.
+	 */
+	private Map<ShardKey, List<TrackerSnapshot>> captureShards(Set<ShardKey> shardKeys,
+															   Map<BlockPos, PackedHistory.Packed> hibernating,
+															   Map<BlockPos, Double> rates) {
+		dirtyShards.removeAll(shardKeys);
+		Map<ShardKey, List<TrackerSnapshot>> shards = new HashMap<>();
+		for (ShardKey key : shardKeys) {
+			shards.put(key, new ArrayList<>());
+		}
+		for (var entry : TrackerManager.getInstance().getAllTrackers().entrySet()) {
+			BlockPos pos = entry.getKey();
+			ContainerTracker tracker = entry.getValue();
+			List<TrackerSnapshot> shard = shards.get(ShardKey.of(tracker.getDimension(), pos));
+			if (shard == null) continue;
+			Double rate = rates.get(pos);
+			shard.add(rate != null
+					? TrackerSnapshot.capture(pos, tracker, true, rate, hibernating.get(pos))
+					: TrackerSnapshot.capture(pos, tracker));
+			tracker.clearPersistDirty();
+		}
+		return shards;
+	}
+
+	/**
+	 * Записать регионы в фоновом потоке.
+	 * @param onWritten все регионы записаны (фоновый поток, аргумент — время записи в нс)
+	 * @param onFailed часть регионов не записана — они повторятся при следующем сохранении (серверный поток)
+	 */
+	private void submitWrites(Map<ShardKey, List<TrackerSnapshot>> shards, LongConsumer onWritten, Runnable onFailed) {
+		executor.execute(() -> {
+			StorageSaveEvent event = StorageSaveEvent.TYPE.isEnabled() ? new StorageSaveEvent() : null;
+			if (event != null) {
+				event.begin();
+			}
+			long writeStart = System.nanoTime();
+			List<ShardKey> failed = new ArrayList<>();
+			int entries = 0;
+			for (var shard : shards.entrySet()) {
+				entries += shard.getValue().size();
+				if (!writeShard(shard.getKey(), shard.getValue())) {
+					failed.add(shard.getKey());
+				}
+			}
+			if (event != null && event.shouldCommit()) {
+				event.regions = shards.size();
+				event.entries = entries;
+				event.failedRegions = failed.size();
+				event.commit();
+			}
+			if (!failed.isEmpty()) {
+				server.execute(() -> {
+					dirtyShards.addAll(failed);
+					onFailed.run();
+				});
+				return;
+			}
+			long writeNanos = System.nanoTime() - writeStart;
+			TickMetrics.record(Phase.STORAGE_WRITE, writeNanos, shards.size());
+			onWritten.accept(writeNanos);
+		});
+	}
+
+	/**
+	 * Финальное сохранение при остановке — дожидаемся завершения фоновой записи.
+	 * Вызывается до финального сохранения мира, чтобы очищенный SavedData успел записаться.
+	 */
+	public static void shutdown(MinecraftServer server) {
+		if (instance == null) return;
+		save(server);
+		instance.executor.shutdown();
+		try {
+			if (!instance.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				ItemFlowMonitor.LOGGER.warn("IFM: сохранение трекеров не завершилось за {} с", SHUTDOWN_TIMEOUT_SECONDS);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		EventJournal.close();
+		// Очередь задач сервера уже не обрабатывается — очищаем напрямую
+		if (instance.legacyMigrated) {
+			TrackerSavedData.clearLegacy();
+		}
+		instance = null;
+	}
+
+	/** Прочитать все файлы регионов. null — хранилище ещё не создано */
+	private List<TrackerSavedData.TrackerEntry> readShards() {
+		if (!Files.isDirectory(directory)) return null;
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(directory)) {
+			files = stream.filter(TrackerStorage::isShardFile).toList();
+		} catch (IOException e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: ошибка чтения каталога трекеров: {}", e.getMessage());
+			return List.of();
+		}
+		if (files.isEmpty()) return null;
+
+		List<TrackerSavedData.TrackerEntry> entries = new ArrayList<>();
+		for (Path file : files) {
+			entries.addAll(readShard(file));
+		}
+		return entries;
+	}
+
+	/** Найти запись трекера в файле региона (под блокировкой региона) */
+	private static TrackerSavedData.TrackerEntry findEntry(Path file, BlockPos pos) {
+		if (!Files.exists(file)) return null;
+		for (TrackerSavedData.TrackerEntry entry : readShard(file)) {
+			if (entry.pos().equals(pos)) return entry;
+		}
+		return null;
+	}
+
+	private Object regionLock(ShardKey key) {
+		return regionLocks[Math.floorMod(key.hashCode(), REGION_LOCKS)];
+	}
+
+	private static boolean isShardFile(Path file) {
+		String name = file.getFileName().toString();
+		return name.startsWith("r.") && name.endsWith(".dat") && Files.isRegularFile(file);
+	}
+
+	/** Прочитать один файл региона; повреждённый файл пропускается, остальные регионы загружаются */
+	private static List<TrackerSavedData.TrackerEntry> readShard(Path file) {
+		try {
+			CompoundTag root = NbtIo.readCompressed(file, NbtAccounter.unlimitedHeap());
+			Tag trackers = root.get("trackers");
+			if (trackers == null) return List.of();
+			return TrackerSavedData.TrackerEntry.CODEC.listOf().parse(NbtOps.INSTANCE, trackers)
+					.resultOrPartial(error -> ItemFlowMonitor.LOGGER.warn("IFM: ошибка чтения трекеров {}: {}", file, error))
+					.orElse(List.of());
+		} catch (Exception e) {
+			ItemFlowMonitor.LOGGER.warn("IFM: ошибка загрузки региона трекеров {}, его трекеры сброшены: {}", file, e.getMessage());
+			return List.of();
+		}
+	}
+
+	/** Упаковать снимки региона, закодировать и атомарно заменить файл; пустой регион удаляется (фоновый поток) */
+	private boolean writeShard(ShardKey key, List<TrackerSnapshot> snapshots) {
+		Path file = key.resolve(directory);
+		try {
+			if (snapshots.isEmpty()) {
+				synchronized (regionLock(key)) {
+					Files.deleteIfExists(file);
+				}
+				return true;
+			}
+			// Выгруженные трекеры переносятся из прежнего файла — в памяти их истории нет
+			Map<BlockPos, TrackerSavedData.TrackerEntry> previous = new HashMap<>();
+			if (snapshots.stream().anyMatch(TrackerSnapshot::cold) && Files.exists(file)) {
+				for (TrackerSavedData.TrackerEntry entry : readShard(file)) {
+					previous.put(entry.pos(), entry);
+				}
+			}
+			List<TrackerSavedData.TrackerEntry> entries = new ArrayList<>(snapshots.size());
+			for (TrackerSnapshot snapshot : snapshots) {
+				entries.add(snapshot.toEntry(previous.get(snapshot.pos())));
+			}
+			CompoundTag root = new CompoundTag();
+			root.putInt("version", FORMAT_VERSION);
+			root.put("trackers", TrackerSavedData.TrackerEntry.CODEC.listOf()
+					.encodeStart(NbtOps.INSTANCE, entries).getOrThrow());
+
+			Files.createDirectories(file.getParent());
+			Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+			NbtIo.writeCompressed(root, temp);
+			synchronized (regionLock(key)) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			return true;
+		} catch (IOException | RuntimeException e) {
+			ItemFlowMonitor.LOGGER.error("IFM: не удалось сохранить регион трекеров {}", file, e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,255 @@
+package com.itemflowmonitor.tracker;
+
+import com.itemflowmonitor.RateMode;
+import com.itemflowmonitor.TrackingMode;
+import com.itemflowmonitor.TrackingPeriod;
+import it.unimi.dsi.fastutil.HashCommon;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Неизменяемые сводки трекеров для чтения с любого потока (экспортёры, дашборды, фоновое сохранение).
+ * Серверный поток раз в тик публикует новый версионированный снимок через volatile-поле; читатели
+ * берут ссылку и работают с ней без блокировок — тик их не ждёт.
+ *
+ * Copy-on-write по сегментам: трекеры разложены по SEGMENTS картам по хешу позиции, публикация
+ * пересобирает только свой срез сегментов (полный обход за REFRESH_TICKS тиков) и сегменты с
+ * созданными, удалёнными или перенастроенными трекерами; остальные переходят в новый снимок по ссылке.
+ * Состав сегментов и счётчики состояний ведутся инкрементально (создание, удаление, смена состояния
+ * трекера) — публикация не обходит все трекеры.
+ *
+ * Сегменты пересобираются, только пока у снимка есть потребитель: работает экспортёр или снимок читали
+ * не дольше IDLE_TICKS назад. Без потребителя публикуются только счётчики; первая публикация после
+ * простоя пересобирает все сегменты. Счётчики точны на тик публикации, rate и заполненность при
+ * активном потребителе — не старше REFRESH_TICKS.
+ */
+public class TrackerSummaries {
+	/** Число сегментов — степень двойки, маска грязных сегментов помещается в long */
+	private static final int SEGMENTS = 64;
+	/** Сегментов пересобирается за тик */
+	private static final int SEGMENTS_PER_TICK = 4;
+	/** За сколько тиков пересобираются все сегменты */
+	public static final int REFRESH_TICKS = SEGMENTS / SEGMENTS_PER_TICK;
+	/** Сколько публикаций без чтения снимка считать, что потребителя нет (10 секунд) */
+	private static final int IDLE_TICKS = 200;
+
+	/** Сводка одного трекера на тик сборки. fill — null без снимка */
+	public record Summary(BlockPos pos, String dimension, UUID owner, TrackingMode mode, RateMode rateMode,
+						  TrackingPeriod period, String item, boolean paused, boolean hibernated,
+						  double rate, ContainerObserver.FillLevel fill, long tick) {}
+
+	/** Опубликованный снимок: неизменяем, безопасно читается с любого потока */
+	public static final class Snapshot {
+		private final long version;
+		private final long tick;
+		private final Map<BlockPos, Summary>[] segments;
+		private final int active;
+		private final int paused;
+		private final int hibernated;
+
+		private Snapshot(long version, long tick, Map<BlockPos, Summary>[] segments,
+						 int active, int paused, int hibernated) {
+			this.version = version;
+			this.tick = tick;
+			this.segments = segments;
+			this.active = active;
+			this.paused = paused;
+			this.hibernated = hibernated;
+		}
+
+		/** Номер публикации: растёт на единицу каждый тик */
+		public long version() { return version; }
+		/** Игровой тик публикации */
+		public long tick() { return tick; }
+		public int active() { return active; }
+		public int paused() { return paused; }
+		public int hibernated() { return hibernated; }
+
+		public int size() {
+			return active + paused + hibernated;
+		}
+
+		/** Сводка трекера (null — трекера нет) */
+		public Summary get(BlockPos pos) {
+			return segments[segmentOf(pos)].get(pos);
+		}
+
+		public void forEach(Consumer<Summary> action) {
+			for (Map<BlockPos, Summary> segment : segments) {
+				segment.values().forEach(action);
+			}
+		}
+
+		/** Все сводки списком (копия — для сортировки и повторных проходов) */
+		public List<Summary> list() {
+			List<Summary> all = new ArrayList<>(size());
+			forEach(all::add);
+			return all;
+		}
+	}
+
+	private volatile Snapshot current = empty(0, -1);
+
+	/** Версия снимка при последнем чтении — по ней публикация понимает, есть ли потребитель */
+	private volatile long lastReadVersion = Long.MIN_VALUE / 2;
+
+	// Состояние публикации — только серверный поток
+	/** Позиции трекеров по сегментам — пересборка сегмента обходит только его трекеры */
+	@SuppressWarnings("unchecked")
+	private final Set<BlockPos>[] members = new Set[SEGMENTS];
+	/** Число трекеров по ContainerTracker.State */
+	private final int[] counts = new int[ContainerTracker.State.values().length];
+	/** Сегменты, которые нужно пересобрать на ближайшей публикации, битовая маска */
+	private long dirtySegments;
+	private int cursor;
+	/** Прошлая публикация была без потребителя — сегменты могли устареть целиком */
+	private boolean idle;
+
+	TrackerSummaries() {
+		for (int i = 0; i < SEGMENTS; i++) {
+			members[i] = new HashSet<>();
+		}
+	}
+
+	/** Последний опубликованный снимок — с любого потока */
+	public Snapshot current() {
+		Snapshot snapshot = current;
+		lastReadVersion = snapshot.version();
+		return snapshot;
+	}
+
+	/** Последний снимок без отметки о чтении — когда нужны только счётчики, сегменты из простоя не выводятся */
+	public Snapshot peek() {
+		return current;
+	}
+
+	/** Трекер добавлен в реестр */
+	void added(ContainerTracker tracker) {
+		BlockPos pos = tracker.getPos();
+		members[segmentOf(pos)].add(pos);
+		counts[tracker.getState().ordinal()]++;
+		invalidate(pos);
+	}
+
+	/** Трекер удалён из реестра */
+	void removed(BlockPos pos, ContainerTracker tracker) {
+		members[segmentOf(pos)].remove(pos);
+		counts[tracker.getState().ordinal()]--;
+		invalidate(pos);
+	}
+
+	/** Трекер перенесён на другую позицию */
+	void moved(BlockPos from, BlockPos to) {
+		members[segmentOf(from)].remove(from);
+		members[segmentOf(to)].add(to);
+		invalidate(from);
+		invalidate(to);
+	}
+
+	/** Трекер сменил состояние (пауза, гибернация) */
+	void stateChanged(ContainerTracker.State from, ContainerTracker.State to) {
+		counts[from.ordinal()]--;
+		counts[to.ordinal()]++;
+	}
+
+	/** Трекер создан, удалён или перенастроен — его сегмент пересобирается на ближайшей публикации */
+	void invalidate(BlockPos pos) {
+		dirtySegments |= 1L << segmentOf(pos);
+	}
+
+	/** Сбросить все сводки (при смене мира) */
+	void clear() {
+		for (Set<BlockPos> segment : members) {
+			segment.clear();
+		}
+		Arrays.fill(counts, 0);
+		dirtySegments = 0;
+		cursor = 0;
+		idle = false;
+		current = empty(current.version() + 1, -1);
+	}
+
+	/**
+	 * Собрать и опубликовать снимок (серверный поток, раз в тик).
+	 * @param exporterRunning снимок читает экспортёр — сегменты пересобираются, даже если его давно не опрашивали
+	 */
+	void publish(Map<BlockPos, ContainerTracker> trackers, long currentTick, boolean exporterRunning) {
+		Snapshot previous = current;
+		int active = counts[ContainerTracker.State.ACTIVE.ordinal()];
+		int paused = counts[ContainerTracker.State.PAUSED.ordinal()];
+		int hibernated = counts[ContainerTracker.State.HIBERNATED.ordinal()];
+
+		if (!exporterRunning && previous.version() - lastReadVersion > IDLE_TICKS) {
+			// Читать некому — только счётчики; созданные и удалённые копятся в dirtySegments
+			idle = true;
+			current = new Snapshot(previous.version() + 1, currentTick, previous.segments, active, paused, hibernated);
+			return;
+		}
+
+		long rebuild;
+		if (idle) {
+			// Сегменты не пересобирались весь простой — обновляем всё разом
+			rebuild = -1L;
+			idle = false;
+		} else {
+			rebuild = dirtySegments;
+			for (int i = 0; i < SEGMENTS_PER_TICK; i++) {
+				rebuild |= 1L << ((cursor + i) & (SEGMENTS - 1));
+			}
+			cursor = (cursor + SEGMENTS_PER_TICK) & (SEGMENTS - 1);
+		}
+		dirtySegments = 0;
+
+		ContainerObserver observer = ContainerObserver.getInstance();
+		Map<BlockPos, Summary>[] segments = previous.segments.clone();
+		for (int i = 0; i < SEGMENTS; i++) {
+			if ((rebuild >>> i & 1) == 0) continue;
+			if (members[i].isEmpty()) {
+				segments[i] = Map.of();
+				continue;
+			}
+			Map<BlockPos, Summary> segment = new HashMap<>();
+			for (BlockPos pos : members[i]) {
+				ContainerTracker tracker = trackers.get(pos);
+				if (tracker != null) {
+					segment.put(pos, summarize(tracker, observer, currentTick));
+				}
+			}
+			segments[i] = Collections.unmodifiableMap(segment);
+		}
+		current = new Snapshot(previous.version() + 1, currentTick, segments, active, paused, hibernated);
+	}
+
+	private static Summary summarize(ContainerTracker tracker, ContainerObserver observer, long currentTick) {
+		String item = tracker.getTrackedItem() == null ? ""
+				: BuiltInRegistries.ITEM.getKey(tracker.getTrackedItem()).toString();
+		return new Summary(tracker.getPos(), tracker.getDimension(), tracker.getOwnerUuid(),
+				tracker.getMode(), tracker.getRateMode(), tracker.getPeriod(), item,
+				tracker.isPaused(), tracker.isHibernated(), tracker.peekRate(currentTick),
+				observer.getFillLevel(tracker.getPos()), currentTick);
+	}
+
+	private static int segmentOf(BlockPos pos) {
+		return HashCommon.mix(pos.hashCode()) & (SEGMENTS - 1);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Snapshot empty(long version, long tick) {
+		Map<BlockPos, Summary>[] segments = new Map[SEGMENTS];
+		for (int i = 0; i < SEGMENTS; i++) {
+			segments[i] = Map.of();
+		}
+		return new Snapshot(version, tick, segments, 0, 0, 0);
+	}
+}
@@ -21,18 +21,22 @@ public class ChestUtil {
 	 * Для одинарных контейнеров возвращает ту же позицию.
 	 */
 	public static BlockPos getCanonicalPos(Level level, BlockPos pos) {
-		BlockState state = level.getBlockState(pos);
+		BlockPos otherPos = getOtherHalf(pos, level.getBlockState(pos));
+		return otherPos != null ? smallerPos(pos, otherPos) : pos;
+	}
+
+	/** Позиция второй половины двойного сундука по его состоянию (null — не двойной сундук) */
+	public static BlockPos getOtherHalf(BlockPos pos, BlockState state) {
 		if (state.getBlock() instanceof ChestBlock && state.hasProperty(ChestBlock.TYPE)) {
 			ChestType type = state.getValue(ChestBlock.TYPE);
 			if (type != ChestType.SINGLE) {
 				Direction facing = state.getValue(ChestBlock.FACING);
 				Direction connectedDir = (type == ChestType.LEFT)
 						? facing.getClockWise() : facing.getCounterClockWise();
-				BlockPos otherPos = pos.relative(connectedDir);
-				return smallerPos(pos, otherPos);
+				return pos.relative(connectedDir);
 			}
 		}
-		return pos;
+		return null;
 	}
 
 	/**
@@ -67,18 +71,12 @@ public class ChestUtil {
 		BlockState state = level.getBlockState(pos);
 
 		// Двойные сундуки — объединяем обе половины
-		if (state.getBlock() instanceof ChestBlock && state.hasProperty(ChestBlock.TYPE)) {
-			ChestType type = state.getValue(ChestBlock.TYPE);
-			if (type != ChestType.SINGLE) {
-				Direction facing = state.getValue(ChestBlock.FACING);
-				Direction connectedDir = (type == ChestType.LEFT)
-						? facing.getClockWise() : facing.getCounterClockWise();
-				BlockPos otherPos = pos.relative(connectedDir);
-				BlockEntity be = level.getBlockEntity(pos);
-				BlockEntity otherBe = level.getBlockEntity(otherPos);
-				if (be instanceof Container c1 && otherBe instanceof Container c2) {
-					return new CompoundContainer(c1, c2);
-				}
+		BlockPos otherPos = getOtherHalf(pos, state);
+		if (otherPos != null) {
+			BlockEntity be = level.getBlockEntity(pos);
+			BlockEntity otherBe = level.getBlockEntity(otherPos);
+			if (be instanceof Container c1 && otherBe instanceof Container c2) {
+				return new CompoundContainer(c1, c2);
 			}
 		}
 